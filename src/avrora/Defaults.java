@@ -112,6 +112,7 @@ public class Defaults {
             monitorMap.addClass("spi", SPIMonitor.class);
             monitorMap.addClass("call-time", CallTimeMonitor.class);
             monitorMap.addClass("call-profile", CallTreeProfiler.class);
+            monitorMap.addClass("sample-profile", SampleProfiler.class);
             monitorMap.addClass("trip-time", TripTimeMonitor.class);
             monitorMap.addClass("ioregs", IORegMonitor.class);
             monitorMap.addClass("virgil", VirgilMonitor.class);
@@ -137,8 +138,13 @@ public class Defaults {
             harnessMap.addClass("simulator", SimTestHarness.class);
             harnessMap.addClass("simplifier", SimplifierTestHarness.class);
             harnessMap.addClass("probes", ProbeTestHarness.class);
+            harnessMap.addClass("eventqueue", EventQueueTestHarness.class);
             harnessMap.addClass("disassembler", DisassemblerTestHarness.class);
             harnessMap.addClass("interrupt", InterruptTestHarness.class);
+            harnessMap.addClass("distributed", DistributedTestHarness.class);
+            harnessMap.addClass("medium", MediumTestHarness.class);
+            harnessMap.addClass("profile", ProfileTestHarness.class);
+            harnessMap.addClass("neighbor", NeighborTestHarness.class);
         }
     }
 
@@ -177,6 +183,8 @@ public class Defaults {
             actions.addClass("isea", ISEAAction.class);
             actions.addClass("odpp", ODPPAction.class);
             actions.addClass("elf-dump", ELFDumpAction.class);
+            actions.addClass("noise-convert", NoiseConvertAction.class);
+            actions.addClass("trace-dump", TraceDumpAction.class);
 
             // plug in a new help category for actions accesible with "-help actions"
             HelpCategory hc = new HelpCategory("actions", "Help for Avrora actions.");
@@ -404,15 +412,23 @@ public class Defaults {
     }
 
     public static Simulator newSimulator(int id, Program p) {
-        return newSimulator(id, "atmega128", 8000000, 8000000, p);
+        return newSimulator(id, new SingleSimulation(), p);
+    }
+
+    public static Simulator newSimulator(int id, Simulation sim, Program p) {
+        return newSimulator(id, "atmega128", 8000000, 8000000, sim, p);
     }
 
     public static Simulator newSimulator(int id, String mcu, long hz, long exthz, Program p) {
+        return newSimulator(id, mcu, hz, exthz, new SingleSimulation(), p);
+    }
+
+    public static Simulator newSimulator(int id, String mcu, long hz, long exthz, Simulation sim, Program p) {
         MicrocontrollerFactory f = getMicrocontroller(mcu);
-        ClockDomain cd = new ClockDomain(hz);
+        ClockDomain cd = new ClockDomain(hz, sim.newEventQueue());
         cd.newClock("external", exthz);
 
-        return f.newMicrocontroller(id, new SingleSimulation(), cd, p).getSimulator();
+        return f.newMicrocontroller(id, sim, cd, p).getSimulator();
     }
 
     public static class AutoProgramReader extends ProgramReader {
@@ -0,0 +1,48 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.actions;
+
+import avrora.Main;
+import avrora.sim.radio.NoiseTrace;
+import cck.text.Terminal;
+import cck.util.Util;
+
+/**
+ * The <code>NoiseConvertAction</code> class implements an action that converts a noise trace in the
+ * text format into the binary format, which the sensor network simulation maps into memory instead of
+ * parsing it.
+ */
+public class NoiseConvertAction extends Action {
+
+    public static final String HELP = "The \"noise-convert\" action converts a noise trace from the text " +
+            "format, with one sample per line, into a binary trace that can be passed to the \"Noise\" " +
+            "option of the sensor network simulation. Binary traces are mapped into memory rather than " +
+            "parsed, which allows traces larger than the available memory to be used. The first argument " +
+            "is the name of the input trace and the second is the name of the binary trace to write.";
+
+    /**
+     * The default constructor of the <code>NoiseConvertAction</code> class simply creates an empty
+     * instance with the appropriate name and help string.
+     */
+    public NoiseConvertAction() {
+        super(HELP);
+    }
+
+    /**
+     * The <code>run()</code> method loads the input trace and writes it in the binary format.
+     *
+     * @param args the command line arguments, which are the input and output file names
+     * @throws Exception if the input cannot be read or the output cannot be written
+     */
+    public void run(String[] args) throws Exception {
+        if (args.length != 2)
+            Util.userError("Usage: avrora -action=noise-convert <input> <output>");
+        Main.checkFileExists(args[0]);
+        NoiseTrace trace = NoiseTrace.load(args[0]);
+        NoiseTrace.writeBinary(trace, args[1]);
+        Terminal.println("Wrote " + trace.size() + " samples to " + args[1]);
+    }
+}
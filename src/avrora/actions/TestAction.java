@@ -36,6 +36,7 @@ import avrora.Defaults;
 import cck.test.TestEngine;
 import cck.text.Status;
 import cck.util.Option;
+import java.util.Properties;
 
 /**
  * The <code>TestAction</code> class represents an action to invoke the built-in automated testing framework
@@ -50,6 +51,8 @@ public class TestAction extends Action {
 
     public final Option.Bool DETAIL = newOption("detail", false, "This option selects whether " +
             "the automated testing framework will report detailed information for failed test cases.");
+    public final Option.Str INTERPRETER = newOption("interpreter", "default", "This option selects " +
+            "the interpreter used to execute AVR programs in simulator test cases.");
 
     public TestAction() {
         super(HELP);
@@ -63,7 +66,9 @@ public class TestAction extends Action {
     public void run(String[] args) throws Exception {
         TestEngine.LONG_REPORT = DETAIL.get();
         Status.ENABLED = false;
-        TestEngine engine = new TestEngine(Defaults.getTestHarnessMap());
+        Properties defs = new Properties();
+        defs.setProperty("Interpreter", INTERPRETER.get());
+        TestEngine engine = new TestEngine(Defaults.getTestHarnessMap(), defs);
         boolean r = engine.runTests(args);
         if (!r) System.exit(1);
     }
@@ -0,0 +1,142 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.actions;
+
+import avrora.Main;
+import avrora.arch.AbstractInstr;
+import avrora.core.Program;
+import avrora.core.SourceMapping;
+import avrora.monitors.BinaryTrace;
+import cck.text.*;
+import cck.util.Option;
+import cck.util.Util;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The <code>TraceDumpAction</code> class implements an action that decodes an instruction trace written
+ * in the binary format by the "trace" monitor, disassembling each instruction and naming the nearest
+ * label before it using the program that was traced.
+ */
+public class TraceDumpAction extends Action {
+
+    public static final String HELP = "The \"trace-dump\" action decodes an instruction trace written by the " +
+            "\"trace\" monitor with the \"trace-file\" option. The first argument is the program that was " +
+            "traced and the second is the trace file. Each instruction is printed with the node, the cycle " +
+            "at which it was executed, its address, its disassembly, and the nearest label before it.";
+
+    public final Option.Long NODE = newOption("node", -1,
+            "This option selects the node whose instructions are printed. When this option is " +
+            "negative, the instructions of all nodes are printed in the order in which they were written, " +
+            "which interleaves the nodes in blocks of several thousand instructions.");
+
+    protected Program program;
+    protected TreeMap<Integer, String> labels;
+
+    /**
+     * The default constructor of the <code>TraceDumpAction</code> class simply creates an empty instance
+     * with the appropriate name and help string.
+     */
+    public TraceDumpAction() {
+        super(HELP);
+    }
+
+    /**
+     * The <code>run()</code> method loads the program and prints each record in the trace.
+     *
+     * @param args the command line arguments, which are the program and the trace file
+     * @throws Exception if the program or the trace cannot be read
+     */
+    public void run(String[] args) throws Exception {
+        if (args.length != 2)
+            Util.userError("Usage: avrora -action=trace-dump <program> <trace>");
+        Main.checkFilesExist(args);
+        program = Main.loadProgram(new String[] { args[0] });
+        buildLabels();
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args[1]), 64 * 1024));
+        try {
+            if (in.readInt() != BinaryTrace.MAGIC || in.readInt() != BinaryTrace.VERSION)
+                Util.userError("Not a binary trace", args[1]);
+            dump(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    private void dump(DataInputStream in) throws IOException {
+        long node = NODE.get();
+        StringBuffer buf = new StringBuffer(100);
+        while (true) {
+            int id;
+            try {
+                id = in.readInt();
+            } catch (EOFException e) {
+                return;
+            }
+            int count = in.readInt();
+            if (node >= 0 && id != node) {
+                in.skipBytes(count * BinaryTrace.RECORD_SIZE);
+                continue;
+            }
+            for (int cntr = 0; cntr < count; cntr++) {
+                long cycle = in.readLong();
+                int pc = in.readInt();
+                int opcode = in.readShort() & 0xffff;
+                buf.setLength(0);
+                StringUtil.justify(true, buf, id, 4);
+                buf.append("  ");
+                StringUtil.justify(true, buf, cycle, 12);
+                buf.append("  ");
+                appendInstr(buf, pc, opcode);
+                Terminal.println(buf.toString());
+            }
+        }
+    }
+
+    private void appendInstr(StringBuffer buf, int pc, int opcode) {
+        Terminal.append(Terminal.COLOR_CYAN, buf, StringUtil.to0xHex(pc, 4));
+        buf.append(": ");
+        AbstractInstr i = program.readInstr(pc);
+        if (i == null || readWord(pc) != opcode) {
+            // the program does not match what was executed at this address
+            buf.append(StringUtil.to0xHex(opcode, 4));
+            buf.append(" ?");
+        } else {
+            buf.append(i.toString());
+        }
+        Map.Entry<Integer, String> label = labels.floorEntry(pc);
+        if (label != null) {
+            buf.append("  ; ");
+            buf.append(label.getValue());
+            int offset = pc - label.getKey();
+            if (offset > 0) {
+                buf.append('+');
+                buf.append(offset);
+            }
+        }
+    }
+
+    private int readWord(int pc) {
+        if (pc + 1 >= program.program_end) return -1;
+        return (program.readProgramByte(pc) & 0xff) | ((program.readProgramByte(pc + 1) & 0xff) << 8);
+    }
+
+    private void buildLabels() {
+        labels = new TreeMap<Integer, String>();
+        SourceMapping map = program.getSourceMapping();
+        if (map == null) return;
+        Iterator<SourceMapping.Location> i = map.getIterator();
+        while (i.hasNext()) {
+            SourceMapping.Location l = i.next();
+            if (program.readInstr(l.lma_addr) == null) continue;
+            // prefer the same name for an address regardless of the order of the labels
+            String prev = labels.get(l.lma_addr);
+            if (prev == null || l.name.compareTo(prev) < 0) labels.put(l.lma_addr, l.name);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.arch.legacy;
+
+import avrora.arch.avr.AVRProperties;
+import avrora.core.Program;
+import avrora.sim.Simulator;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The <code>LegacyBlockInterpreter</code> class is a variant of the legacy interpreter that executes
+ * basic blocks of simple instructions without advancing the clock after each instruction. A simple
+ * instruction is one that only reads and writes the general purpose registers and the status flags,
+ * and therefore cannot observe the passage of time or cause any side effects outside of the CPU.
+ * <p/>
+ * The basic blocks are discovered lazily from the instructions in the flash. Before a run of basic
+ * blocks is executed, the interpreter asks the clock how many cycles remain until the next event.
+ * It then executes simple instructions, accumulating the consumed cycles, until either an instruction
+ * is reached that is not simple or the next instruction would begin after the next event is due,
+ * and only then advances the clock. Since no event can fire in the middle of such a run, the timing
+ * of events, interrupts and IO is identical to that of the default interpreter.
+ * <p/>
+ * Instructions that are not simple, such as loads and stores, IO instructions, calls, returns and
+ * probed instructions, are executed one at a time as in the default interpreter. When the code in
+ * the flash is updated, the discovered basic blocks are discarded. Like the
+ * <code>LegacyFastInterpreter</code>, this interpreter does not record the registers accessed by each
+ * instruction.
+ */
+public class LegacyBlockInterpreter extends LegacyFastInterpreter {
+
+    /**
+     * The <code>STRAIGHT</code> set contains the classes of simple instructions that always continue
+     * with the next instruction.
+     */
+    protected static final Set<Class<?>> STRAIGHT = classes(new Class<?>[] {
+        LegacyInstr.ADC.class, LegacyInstr.ADD.class, LegacyInstr.ADIW.class, LegacyInstr.AND.class,
+        LegacyInstr.ANDI.class, LegacyInstr.ASR.class, LegacyInstr.BLD.class, LegacyInstr.BST.class,
+        LegacyInstr.CBR.class, LegacyInstr.CLC.class, LegacyInstr.CLH.class, LegacyInstr.CLN.class,
+        LegacyInstr.CLR.class, LegacyInstr.CLS.class, LegacyInstr.CLT.class, LegacyInstr.CLV.class,
+        LegacyInstr.CLZ.class, LegacyInstr.COM.class, LegacyInstr.CP.class, LegacyInstr.CPC.class,
+        LegacyInstr.CPI.class, LegacyInstr.DEC.class, LegacyInstr.EOR.class, LegacyInstr.FMUL.class,
+        LegacyInstr.FMULS.class, LegacyInstr.FMULSU.class, LegacyInstr.INC.class, LegacyInstr.LDI.class,
+        LegacyInstr.LSL.class, LegacyInstr.LSR.class, LegacyInstr.MOV.class, LegacyInstr.MOVW.class,
+        LegacyInstr.MUL.class, LegacyInstr.MULS.class, LegacyInstr.MULSU.class, LegacyInstr.NEG.class,
+        LegacyInstr.NOP.class, LegacyInstr.OR.class, LegacyInstr.ORI.class, LegacyInstr.ROL.class,
+        LegacyInstr.ROR.class, LegacyInstr.SBC.class, LegacyInstr.SBCI.class, LegacyInstr.SBIW.class,
+        LegacyInstr.SBR.class, LegacyInstr.SEC.class, LegacyInstr.SEH.class, LegacyInstr.SEN.class,
+        LegacyInstr.SER.class, LegacyInstr.SES.class, LegacyInstr.SET.class, LegacyInstr.SEV.class,
+        LegacyInstr.SEZ.class, LegacyInstr.SUB.class, LegacyInstr.SUBI.class, LegacyInstr.SWAP.class,
+        LegacyInstr.TST.class
+    });
+
+    /**
+     * The <code>BRANCH</code> set contains the classes of simple instructions that may transfer
+     * control to an instruction other than the next one. These instructions end a basic block.
+     */
+    protected static final Set<Class<?>> BRANCH = classes(new Class<?>[] {
+        LegacyInstr.BRBC.class, LegacyInstr.BRBS.class, LegacyInstr.BRCC.class, LegacyInstr.BRCS.class,
+        LegacyInstr.BREQ.class, LegacyInstr.BRGE.class, LegacyInstr.BRHC.class, LegacyInstr.BRHS.class,
+        LegacyInstr.BRID.class, LegacyInstr.BRIE.class, LegacyInstr.BRLO.class, LegacyInstr.BRLT.class,
+        LegacyInstr.BRMI.class, LegacyInstr.BRNE.class, LegacyInstr.BRPL.class, LegacyInstr.BRSH.class,
+        LegacyInstr.BRTC.class, LegacyInstr.BRTS.class, LegacyInstr.BRVC.class, LegacyInstr.BRVS.class,
+        LegacyInstr.CPSE.class, LegacyInstr.SBRC.class, LegacyInstr.SBRS.class, LegacyInstr.RJMP.class,
+        LegacyInstr.JMP.class, LegacyInstr.IJMP.class
+    });
+
+    /**
+     * The <code>blocks</code> array stores, for each address, the number of simple instructions in the
+     * basic block beginning at that address, or -1 if the block has not been discovered yet. A value of
+     * zero means that the instruction at that address is not simple.
+     */
+    protected int[] blocks;
+
+    /**
+     * The <code>version</code> field stores the version of the flash from which the basic blocks in
+     * the <code>blocks</code> array were discovered.
+     */
+    protected int version;
+
+    protected LegacyBlockInterpreter(Simulator s, Program p, AVRProperties pr) {
+        super(s, p, pr);
+        blocks = new int[shared_instr.length];
+        Arrays.fill(blocks, -1);
+        version = flash.getVersion();
+    }
+
+    private static Set<Class<?>> classes(Class<?>[] c) {
+        return new HashSet<Class<?>>(Arrays.asList(c));
+    }
+
+    protected void fastLoop() {
+        innerLoop = true;
+        while (innerLoop) {
+            if (version != flash.getVersion()) {
+                Arrays.fill(blocks, -1);
+                version = flash.getVersion();
+            }
+
+            int length = getBlockLength(nextPC);
+            if (length == 0) {
+                // not a simple instruction; execute it as the default interpreter does
+                shared_instr[nextPC].accept(this);
+                commit();
+                continue;
+            }
+
+            long budget = clock.getFirstEventDelta();
+            if (budget < 0) budget = Long.MAX_VALUE;
+
+            // execute basic blocks until the next event is due
+            do {
+                shared_instr[nextPC].accept(this);
+                while (--length > 0 && cyclesConsumed < budget) {
+                    pc = nextPC;
+                    shared_instr[nextPC].accept(this);
+                }
+                if (length > 0 || cyclesConsumed >= budget) break;
+                length = getBlockLength(nextPC);
+                pc = nextPC;
+            } while (length > 0 && innerLoop);
+
+            commit();
+        }
+    }
+
+    /**
+     * The <code>getBlockLength()</code> method returns the number of simple instructions in the basic
+     * block starting at the specified address, discovering the block if necessary.
+     * @param address the byte address of the first instruction in the block
+     * @return the number of instructions in the block; zero if the instruction at the address is not
+     * simple
+     */
+    protected int getBlockLength(int address) {
+        int length = blocks[address];
+        if (length < 0) {
+            length = discoverBlock(address);
+            blocks[address] = length;
+        }
+        return length;
+    }
+
+    private int discoverBlock(int address) {
+        int length = 0;
+        while (address < shared_instr.length) {
+            LegacyInstr i = shared_instr[address];
+            Class<?> c = i.getClass();
+            if (STRAIGHT.contains(c)) {
+                length++;
+                address += i.getSize();
+            } else {
+                if (BRANCH.contains(c)) length++;
+                break;
+            }
+        }
+        return length;
+    }
+}
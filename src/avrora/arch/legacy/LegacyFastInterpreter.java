@@ -0,0 +1,61 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.arch.legacy;
+
+import avrora.arch.avr.AVRProperties;
+import avrora.core.Program;
+import avrora.sim.Simulator;
+import cck.util.Arithmetic;
+
+/**
+ * The <code>LegacyFastInterpreter</code> class is a variant of the legacy interpreter whose register
+ * accessors read and write the register file directly. The default interpreter records the last
+ * registers read and written in the <code>registerRead</code> and <code>registerWritten</code> fields
+ * on every access so that the GUI or a debugger can highlight them; this interpreter leaves those
+ * fields untouched. The factory uses this variant when neither the GUI nor a gdb monitor is attached.
+ */
+public class LegacyFastInterpreter extends LegacyInterpreter {
+
+    protected LegacyFastInterpreter(Simulator s, Program p, AVRProperties pr) {
+        super(s, p, pr);
+    }
+
+    public byte getRegisterByte(LegacyRegister reg) {
+        return sram[reg.getNumber()];
+    }
+
+    public byte getRegisterByte(int reg) {
+        return sram[reg];
+    }
+
+    public int getRegisterUnsigned(LegacyRegister reg) {
+        return sram[reg.getNumber()] & 0xff;
+    }
+
+    public int getRegisterUnsigned(int reg) {
+        return sram[reg] & 0xff;
+    }
+
+    public int getRegisterWord(LegacyRegister reg) {
+        int number = reg.getNumber();
+        return Arithmetic.uword(sram[number], sram[number + 1]);
+    }
+
+    public int getRegisterWord(int reg) {
+        return Arithmetic.uword(sram[reg], sram[reg + 1]);
+    }
+
+    protected void writeRegisterByte(LegacyRegister reg, byte val) {
+        sram[reg.getNumber()] = val;
+    }
+
+    protected void writeRegisterWord(LegacyRegister reg, int val) {
+        int number = reg.getNumber();
+        sram[number] = Arithmetic.low(val);
+        sram[number + 1] = Arithmetic.high(val);
+    }
+}
@@ -34,9 +34,11 @@ package avrora.arch.legacy;
 
 import avrora.arch.avr.AVRProperties;
 import avrora.core.Program;
+import avrora.gui.AvroraGui;
 import avrora.sim.*;
 import avrora.sim.mcu.MCUProperties;
 import cck.util.Arithmetic;
+import cck.util.Util;
 
 /**
  * The <code>LegacyInterpreter</code> class is largely generated from the instruction specification. The
@@ -50,9 +52,29 @@ public class LegacyInterpreter extends AtmelInterpreter implements LegacyInstrVi
 
     public static final Factory FACTORY = new Factory();
 
+    /**
+     * The <code>Factory</code> class creates the interpreter selected by the <code>"interpreter"</code>
+     * option of the simulation. The <code>"default"</code> variant is this interpreter, or the
+     * <code>LegacyFastInterpreter</code> when neither the GUI nor a gdb monitor is attached to show the
+     * registers accessed by each instruction; the <code>"blocks"</code> variant is the <code>LegacyBlockInterpreter</code>, which
+     * executes basic blocks of simple instructions without advancing the clock after each instruction;
+     * the <code>"lazy"</code> variant is the <code>LegacyLazyInterpreter</code>, which in addition
+     * computes the status flags lazily.
+     */
     public static class Factory extends InterpreterFactory {
         public Interpreter newInterpreter(Simulator s, Program p, MCUProperties pr) {
-            return new LegacyInterpreter(s, p, (AVRProperties)pr);
+            Simulation sim = s.getSimulation();
+            String variant = sim.INTERPRETER.get();
+            if ("default".equals(variant)) {
+                // only the GUI or a debugger needs to know which registers each instruction accessed
+                if (AvroraGui.instance != null || sim.MONITORS.get().contains("gdb"))
+                    return new LegacyInterpreter(s, p, (AVRProperties)pr);
+                return new LegacyFastInterpreter(s, p, (AVRProperties)pr);
+            }
+            if ("blocks".equals(variant)) return new LegacyBlockInterpreter(s, p, (AVRProperties)pr);
+            if ("lazy".equals(variant)) return new LegacyLazyInterpreter(s, p, (AVRProperties)pr);
+            Util.userError("Unknown interpreter variant", variant);
+            return null;
         }
     }
 
@@ -319,7 +341,7 @@ public class LegacyInterpreter extends AtmelInterpreter implements LegacyInstrVi
         }
     }
 
-    private void fastLoop() {
+    protected void fastLoop() {
         innerLoop = true;
         while (innerLoop) {
             LegacyInstr i = shared_instr[nextPC];
@@ -0,0 +1,514 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.arch.legacy;
+
+import avrora.arch.avr.AVRProperties;
+import avrora.core.Program;
+import avrora.sim.Simulator;
+
+/**
+ * The <code>LegacyLazyInterpreter</code> class is a variant of the block interpreter that computes
+ * the H, C, N, Z, V and S flags lazily. Instead of computing all six flags after every addition,
+ * subtraction or comparison, the interpreter records the kind of the operation, its operands and its
+ * result, and computes the flags only when they are needed.
+ * <p/>
+ * A branch computes only the flag that it tests. Instructions that read or write only some of the
+ * flags, as well as accesses to the status register from outside of the instructions, such as reads
+ * and writes of the SREG register, <code>getFlag()</code>, <code>setFlag()</code> and probes that
+ * inspect the state, first compute all of the flags from the recorded operation. The flag values
+ * observed by the program and by monitors are therefore identical to those of the default
+ * interpreter.
+ */
+public class LegacyLazyInterpreter extends LegacyBlockInterpreter {
+
+    protected static final int LAZY_NONE = 0;
+    protected static final int LAZY_ADD = 1;
+    protected static final int LAZY_SUB = 2;
+    protected static final int LAZY_SUBC = 3;
+
+    /**
+     * The <code>lazyOp</code> field stores the kind of the last operation whose flags have not been
+     * computed yet, or <code>LAZY_NONE</code> if the flag fields are up to date. A <code>LAZY_SUBC</code>
+     * operation is a subtraction with carry, which preserves the previous value of the Z flag if the
+     * result is zero.
+     */
+    protected int lazyOp;
+    protected int lazyA;
+    protected int lazyB;
+    protected int lazyCarry;
+    protected int lazyR;
+    protected boolean lazyZ;
+
+    protected LegacyLazyInterpreter(Simulator s, Program p, AVRProperties pr) {
+        super(s, p, pr);
+    }
+
+    protected void materializeFlags() {
+        if (lazyOp != LAZY_NONE) {
+            H = lazyH();
+            C = lazyC();
+            N = lazyN();
+            Z = lazyZ();
+            V = lazyV();
+            S = (N != V);
+            lazyOp = LAZY_NONE;
+        }
+    }
+
+    private boolean lazyH() {
+        if (lazyOp == LAZY_ADD) {
+            return ((lazyA & 0x0000000F) + (lazyB & 0x0000000F) + lazyCarry & 16) != 0;
+        }
+        boolean a3 = ((lazyA & 8) != 0);
+        boolean b3 = ((lazyB & 8) != 0);
+        boolean r3 = ((lazyR & 8) != 0);
+        return !a3 && b3 || b3 && r3 || r3 && !a3;
+    }
+
+    private boolean lazyC() {
+        if (lazyOp == LAZY_ADD) {
+            return (lazyR & 256) != 0;
+        }
+        boolean a7 = ((lazyA & 128) != 0);
+        boolean b7 = ((lazyB & 128) != 0);
+        boolean r7 = ((lazyR & 128) != 0);
+        return !a7 && b7 || b7 && r7 || r7 && !a7;
+    }
+
+    private boolean lazyN() {
+        return (lazyR & 128) != 0;
+    }
+
+    private boolean lazyZ() {
+        if (lazyOp == LAZY_SUBC) {
+            return low(lazyR) == 0 && lazyZ;
+        }
+        return low(lazyR) == 0;
+    }
+
+    private boolean lazyV() {
+        boolean a7 = ((lazyA & 128) != 0);
+        boolean b7 = ((lazyB & 128) != 0);
+        boolean r7 = ((lazyR & 128) != 0);
+        if (lazyOp == LAZY_ADD) {
+            return a7 && b7 && !r7 || !a7 && !b7 && r7;
+        }
+        return a7 && !b7 && !r7 || !a7 && b7 && r7;
+    }
+
+    private boolean lazyS() {
+        return lazyN() != lazyV();
+    }
+
+    private void add(int a, int b, int carry, int r) {
+        lazyOp = LAZY_ADD;
+        lazyA = a;
+        lazyB = b;
+        lazyCarry = carry;
+        lazyR = r;
+    }
+
+    private void sub(int a, int b, int r) {
+        lazyOp = LAZY_SUB;
+        lazyA = a;
+        lazyB = b;
+        lazyR = r;
+    }
+
+    private int subc(int a, int b) {
+        // the carry and zero flags of the previous operation are inputs to this one
+        int carry;
+        boolean z;
+        if (lazyOp == LAZY_NONE) {
+            carry = bit(C);
+            z = Z;
+        } else {
+            carry = bit(lazyC());
+            z = lazyZ();
+        }
+        int r = a - b - carry;
+        lazyOp = LAZY_SUBC;
+        lazyA = a;
+        lazyB = b;
+        lazyR = r;
+        lazyZ = z;
+        return r;
+    }
+
+    public void visit(LegacyInstr.ADD i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterUnsigned(i.r1);
+        int tmp_1 = getRegisterUnsigned(i.r2);
+        int tmp_3 = tmp_0 + tmp_1;
+        add(tmp_0, tmp_1, 0, tmp_3);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.ADC i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterUnsigned(i.r1);
+        int tmp_1 = getRegisterUnsigned(i.r2);
+        int tmp_2 = bit(lazyOp == LAZY_NONE ? C : lazyC());
+        int tmp_3 = tmp_0 + tmp_1 + tmp_2;
+        add(tmp_0, tmp_1, tmp_2, tmp_3);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.LSL i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_2 = tmp_0 << 1;
+        // a left shift computes the same flags as adding the register to itself
+        add(tmp_0, tmp_0, 0, tmp_2);
+        writeRegisterByte(i.r1, low(tmp_2));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.SUB i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = getRegisterByte(i.r2);
+        int tmp_3 = tmp_0 - tmp_1;
+        sub(tmp_0, tmp_1, tmp_3);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.SUBI i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = i.imm1;
+        int tmp_3 = tmp_0 - tmp_1;
+        sub(tmp_0, tmp_1, tmp_3);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.NEG i) {
+        nextPC = pc + 2;
+        int tmp_1 = getRegisterByte(i.r1);
+        int tmp_3 = -tmp_1;
+        sub(0, tmp_1, tmp_3);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.CP i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = getRegisterByte(i.r2);
+        sub(tmp_0, tmp_1, tmp_0 - tmp_1);
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.CPI i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = i.imm1;
+        sub(tmp_0, tmp_1, tmp_0 - tmp_1);
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.CPSE i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = getRegisterByte(i.r2);
+        sub(tmp_0, tmp_1, tmp_0 - tmp_1);
+        if (tmp_0 == tmp_1) {
+            int tmp_13 = getInstrSize(nextPC);
+            nextPC = nextPC + tmp_13;
+            if (tmp_13 == 4) {
+                cyclesConsumed = cyclesConsumed + 2;
+            } else {
+                cyclesConsumed = cyclesConsumed + 1;
+            }
+        }
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.CPC i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = getRegisterByte(i.r2);
+        subc(tmp_0, tmp_1);
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.SBC i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = getRegisterByte(i.r2);
+        int tmp_3 = subc(tmp_0, tmp_1);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    public void visit(LegacyInstr.SBCI i) {
+        nextPC = pc + 2;
+        int tmp_0 = getRegisterByte(i.r1);
+        int tmp_1 = i.imm1;
+        int tmp_3 = subc(tmp_0, tmp_1);
+        writeRegisterByte(i.r1, low(tmp_3));
+        cyclesConsumed++;
+    }
+
+    // the branches compute only the flag that they test; the recorded operation remains pending
+
+    public void visit(LegacyInstr.BRCC i) {
+        if (lazyOp != LAZY_NONE) C = lazyC();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRCS i) {
+        if (lazyOp != LAZY_NONE) C = lazyC();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BREQ i) {
+        if (lazyOp != LAZY_NONE) Z = lazyZ();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRGE i) {
+        if (lazyOp != LAZY_NONE) S = lazyS();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRHC i) {
+        if (lazyOp != LAZY_NONE) H = lazyH();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRHS i) {
+        if (lazyOp != LAZY_NONE) H = lazyH();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRLO i) {
+        if (lazyOp != LAZY_NONE) C = lazyC();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRLT i) {
+        if (lazyOp != LAZY_NONE) S = lazyS();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRMI i) {
+        if (lazyOp != LAZY_NONE) N = lazyN();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRNE i) {
+        if (lazyOp != LAZY_NONE) Z = lazyZ();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRPL i) {
+        if (lazyOp != LAZY_NONE) N = lazyN();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRSH i) {
+        if (lazyOp != LAZY_NONE) C = lazyC();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRVC i) {
+        if (lazyOp != LAZY_NONE) V = lazyV();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.BRVS i) {
+        if (lazyOp != LAZY_NONE) V = lazyV();
+        super.visit(i);
+    }
+
+    // the remaining instructions read or write only some of the flags
+
+    public void visit(LegacyInstr.ADIW i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.AND i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.ANDI i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.ASR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CBR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLC i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLH i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLN i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLS i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLV i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.CLZ i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.COM i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.DEC i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.EOR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.FMUL i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.FMULS i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.FMULSU i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.INC i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.LSR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.MUL i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.MULS i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.MULSU i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.OR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.ORI i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.ROL i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.ROR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SBIW i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SBR i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SEC i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SEH i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SEN i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SES i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SEV i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.SEZ i) {
+        materializeFlags();
+        super.visit(i);
+    }
+
+    public void visit(LegacyInstr.TST i) {
+        materializeFlags();
+        super.visit(i);
+    }
+}
@@ -0,0 +1,211 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.monitors;
+
+import cck.util.Util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The <code>BinaryTrace</code> class writes an instruction trace in a compact binary format. Each node
+ * records the cycle, address, and opcode of each instruction it executes into a small ring of buffers
+ * of its own, without taking any locks; full buffers are handed to a single background thread that
+ * writes them to the file with a <code>FileChannel</code> and gives them back to the node. The trace
+ * can be decoded offline with the "trace-dump" action.
+ *
+ * <p>
+ * The file begins with the <code>MAGIC</code> and <code>VERSION</code> words, followed by blocks. Each
+ * block begins with the identifier of the node and the number of records in the block, and each record
+ * stores the cycle as a long, the address as an int, and the first word of the instruction as a short,
+ * all in big-endian order. The blocks of each node appear in order, but the blocks of different nodes
+ * are interleaved.
+ */
+public class BinaryTrace {
+
+    public static final int MAGIC = 0x41565254; // "AVRT"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int RECORD_SIZE = 14;
+
+    protected static final int RECORDS = 4096;
+    protected static final int BUFFERS = 4;
+
+    protected final String fname;
+    protected final FileChannel channel;
+    protected final LinkedBlockingQueue<Block> queue;
+    protected final Thread writer;
+    protected int open;
+    protected IOException error;
+
+    /**
+     * The <code>Block</code> class records a full buffer of a node that is waiting to be written.
+     * A block with a null buffer tells the writer to stop.
+     */
+    protected static class Block {
+        protected final Buffer owner;
+        protected final ByteBuffer data;
+
+        protected Block(Buffer o, ByteBuffer d) {
+            owner = o;
+            data = d;
+        }
+    }
+
+    /**
+     * The <code>Buffer</code> class stores the records of a single node. It must only be used
+     * from the thread of that node.
+     */
+    public class Buffer {
+        protected final int id;
+        protected final ArrayBlockingQueue<ByteBuffer> free;
+        protected ByteBuffer current;
+        protected int count;
+
+        protected Buffer(int i) {
+            id = i;
+            free = new ArrayBlockingQueue<ByteBuffer>(BUFFERS);
+            for (int cntr = 1; cntr < BUFFERS; cntr++)
+                free.add(newBuffer());
+            current = newBuffer();
+            begin();
+        }
+
+        /**
+         * The <code>record()</code> method adds a record of an executed instruction to this buffer.
+         * If the buffer is full, it is handed to the writer, and this method blocks only if the
+         * writer has not yet written any of the other buffers of this node.
+         * @param cycle the cycle at which the instruction was executed
+         * @param pc the address of the instruction
+         * @param opcode the first word of the instruction
+         */
+        public void record(long cycle, int pc, int opcode) {
+            ByteBuffer b = current;
+            b.putLong(cycle);
+            b.putInt(pc);
+            b.putShort((short) opcode);
+            if (++count == RECORDS) flush();
+        }
+
+        /**
+         * The <code>close()</code> method hands the remaining records of this buffer to the writer.
+         * When the last buffer of the trace is closed, this method waits for the writer to finish
+         * and closes the file.
+         * @throws IOException if the trace could not be written
+         */
+        public void close() throws IOException {
+            if (count > 0) flush();
+            BinaryTrace.this.release();
+        }
+
+        private void begin() {
+            current.clear();
+            current.putInt(id);
+            current.putInt(0);
+            count = 0;
+        }
+
+        private void flush() {
+            current.putInt(4, count);
+            current.flip();
+            queue.add(new Block(this, current));
+            try {
+                current = free.take();
+            } catch (InterruptedException e) {
+                throw Util.unexpected(e);
+            }
+            begin();
+        }
+    }
+
+    /**
+     * The constructor for the <code>BinaryTrace</code> class creates the specified file, writes its
+     * header, and starts the writer thread.
+     * @param fn the name of the file to write
+     * @throws IOException if the file cannot be created
+     */
+    public BinaryTrace(String fn) throws IOException {
+        fname = fn;
+        channel = new FileOutputStream(fn).getChannel();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        write(header);
+        queue = new LinkedBlockingQueue<Block>();
+        writer = new Thread() {
+            public void run() {
+                drain();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * The <code>newBuffer()</code> method creates the buffer for a new node in this trace. The
+     * trace is closed when every buffer created has been closed.
+     * @param id the identifier of the node
+     * @return a new buffer that writes records for the node to this trace
+     */
+    public synchronized Buffer newBuffer(int id) {
+        open++;
+        return new Buffer(id);
+    }
+
+    /**
+     * The <code>getFileName()</code> method returns the name of the file this trace is written to.
+     * @return the name of the file
+     */
+    public String getFileName() {
+        return fname;
+    }
+
+    protected void release() throws IOException {
+        synchronized (this) {
+            if (--open > 0) return;
+        }
+        queue.add(new Block(null, null));
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            throw Util.unexpected(e);
+        }
+        channel.close();
+        if (error != null) throw error;
+    }
+
+    protected void drain() {
+        try {
+            while (true) {
+                Block b = queue.take();
+                if (b.data == null) return;
+                if (error == null) {
+                    try {
+                        write(b.data);
+                    } catch (IOException e) {
+                        // keep returning buffers so that the nodes do not block
+                        error = e;
+                    }
+                }
+                b.owner.free.add(b.data);
+            }
+        } catch (InterruptedException e) {
+            throw Util.unexpected(e);
+        }
+    }
+
+    private void write(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) channel.write(b);
+    }
+
+    private static ByteBuffer newBuffer() {
+        return ByteBuffer.allocateDirect(HEADER_SIZE + RECORDS * RECORD_SIZE);
+    }
+}
@@ -33,6 +33,8 @@
 package avrora.monitors;
 
 import avrora.arch.AbstractInstr;
+import avrora.arch.legacy.LegacyInstr;
+import avrora.core.ControlFlowGraph;
 import avrora.core.Program;
 import avrora.sim.Simulator;
 import avrora.sim.State;
@@ -56,6 +58,12 @@ public class ProfileMonitor extends MonitorFactory {
             "This option specifies whether the profiling will be exact or periodic. When " +
             "this option is set to non-zero, then a sample of the program counter is taken at " +
             "the specified period in clock cycles, rather than through probes at each instruction.");
+    public final Option.Bool BLOCKS = newOption("basic-blocks", false,
+            "This option selects whether the profiling will place a probe at the start of each " +
+            "basic block of the program's control flow graph rather than a probe on every " +
+            "instruction. The count and cycles of each instruction are derived from the counts of " +
+            "the blocks when the report is generated, which gives the same report with far fewer " +
+            "probes executed.");
     public final Option.Bool CLASSES = newOption("instr-classes", false,
             "This option selects whether the profiling monitor will generate a report of the " +
             "types of instructions that were executed most frequently by the program.");
@@ -71,6 +79,8 @@ public class ProfileMonitor extends MonitorFactory {
         public final long[] icount;
         public final long[] itime;
 
+        protected BlockProfile blocks;
+
         Mon(Simulator s) {
             simulator = s;
             program = s.getProgram();
@@ -84,6 +94,9 @@ public class ProfileMonitor extends MonitorFactory {
             if ( period > 0 ) {
                 // insert the periodic probe
                 s.insertEvent(new PeriodicProfile(period), period);
+            } else if ( BLOCKS.get() ) {
+                // insert a probe at the start of each basic block
+                blocks = new BlockProfile();
             } else if ( CYCLES.get() ) {
                 // insert the count and cycles probe
                 s.insertProbe(new CCProbe());
@@ -111,6 +124,214 @@ public class ProfileMonitor extends MonitorFactory {
             }
         }
 
+        /**
+         * The <code>Segment</code> class represents a range of instructions that are always executed
+         * together, starting with the first. It is a probe at its first instruction that counts how many
+         * times the range has been entered. If the last instruction is a conditional branch or skip,
+         * the segment also counts how many times the next segment entered was the target of the branch,
+         * since the branch then consumes more cycles.
+         */
+        protected class Segment extends Simulator.Probe.Empty {
+            protected final int start;
+            protected int end;
+            protected long count;
+
+            protected int branch = -1;
+            protected int target = -1;
+            protected int extra;
+            protected long taken;
+
+            protected Segment(int s, int e) {
+                start = s;
+                end = e;
+            }
+
+            public void fireBefore(State state, int pc) {
+                count++;
+                Segment l = blocks.last;
+                if ( l != null && l.target == start ) l.taken++;
+                blocks.last = this;
+            }
+        }
+
+        /**
+         * The <code>BlockProfile</code> class profiles the program with a probe at the start of each
+         * basic block in the control flow graph of the program. Since the control flow graph does not
+         * include the targets of indirect jumps and calls, those instructions and the returns are also
+         * probed, and the segment they jump into is split if it does not begin at the target. Interrupts
+         * can resume a segment in the middle; that does not enter it again, but the segment that was
+         * entered last is saved while the handler executes.
+         */
+        protected class BlockProfile {
+            protected final Segment[] segments;
+            protected Segment last;
+
+            protected Segment[] savedLast = new Segment[8];
+            protected int[] savedPC = new int[8];
+            protected int saved;
+
+            protected BlockProfile() {
+                segments = new Segment[program.program_end];
+                ControlFlowGraph cfg = program.getCFG();
+                ArrayList<ControlFlowGraph.Block> list = new ArrayList<ControlFlowGraph.Block>();
+                Iterator<ControlFlowGraph.Block> bi = cfg.getSortedBlockIterator();
+                int pc = program.program_start;
+                while ( bi.hasNext() ) {
+                    ControlFlowGraph.Block b = bi.next();
+                    // calls into a bootloader can target addresses beyond the program
+                    if ( b.getAddress() >= program.program_end ) break;
+                    while ( pc < b.getAddress() ) pc = program.getNextPC(pc);
+                    // a branch decoded from data can target the middle of an instruction
+                    if ( pc == b.getAddress() ) list.add(b);
+                }
+                for ( int cntr = 0; cntr < list.size(); cntr++ ) {
+                    ControlFlowGraph.Block b = list.get(cntr);
+                    int end = cntr + 1 < list.size() ? list.get(cntr + 1).getAddress() : program.program_end;
+                    Segment seg = new Segment(b.getAddress(), end);
+                    findBranch(seg, b);
+                    addSegment(seg);
+                }
+                insertGuards();
+            }
+
+            private void findBranch(Segment seg, ControlFlowGraph.Block b) {
+                int lastpc = -1;
+                for ( int pc = seg.start; pc < seg.end; pc = program.getNextPC(pc) ) {
+                    if ( program.readInstr(pc) != null ) lastpc = pc;
+                }
+                if ( lastpc < 0 || !isConditional(program.readInstr(lastpc)) ) return;
+                AbstractInstr i = program.readInstr(lastpc);
+                int npc = lastpc + i.getSize();
+                Iterator<ControlFlowGraph.Edge> ei = b.getEdgeIterator();
+                while ( ei.hasNext() ) {
+                    ControlFlowGraph.Edge e = ei.next();
+                    ControlFlowGraph.Block t = e.getTarget();
+                    if ( t == null || !"".equals(e.getType()) || t.getAddress() == npc ) continue;
+                    // a conditional branch or skip consumes more cycles when taken
+                    seg.branch = lastpc;
+                    seg.target = t.getAddress();
+                    seg.extra = isSkip(i) ? t.getAddress() - npc > 2 ? 2 : 1 : 1;
+                }
+            }
+
+            private boolean isConditional(AbstractInstr i) {
+                String name = i.getName();
+                return isSkip(i) || name.startsWith("br") && !name.equals("break");
+            }
+
+            private boolean isSkip(AbstractInstr i) {
+                return i instanceof LegacyInstr.CPSE || i instanceof LegacyInstr.SBRC || i instanceof LegacyInstr.SBRS
+                        || i instanceof LegacyInstr.SBIC || i instanceof LegacyInstr.SBIS;
+            }
+
+            private void addSegment(Segment seg) {
+                segments[seg.start] = seg;
+                simulator.insertProbe(seg, seg.start);
+            }
+
+            private void insertGuards() {
+                Simulator.Probe guard = new Simulator.Probe.Empty() {
+                    public void fireAfter(State state, int pc) {
+                        enter(state.getPC());
+                    }
+                };
+                Simulator.Probe reti = new Simulator.Probe.Empty() {
+                    public void fireAfter(State state, int pc) {
+                        if ( saved > 0 ) {
+                            saved--;
+                            last = savedLast[saved];
+                        }
+                    }
+                };
+                for ( int pc = program.program_start; pc < program.program_end; pc = program.getNextPC(pc) ) {
+                    AbstractInstr i = program.readInstr(pc);
+                    if ( i instanceof LegacyInstr.RETI ) simulator.insertProbe(reti, pc);
+                    else if ( i instanceof LegacyInstr.RET || i instanceof LegacyInstr.IJMP
+                            || i instanceof LegacyInstr.ICALL || i instanceof LegacyInstr.EIJMP
+                            || i instanceof LegacyInstr.EICALL ) simulator.insertProbe(guard, pc);
+                }
+                simulator.getInterpreter().getInterruptTable().insertProbe(new Simulator.InterruptProbe.Empty() {
+                    public void fireBeforeInvoke(State state, int inum) {
+                        if ( saved == savedLast.length ) {
+                            savedLast = Arrays.copyOf(savedLast, saved * 2);
+                            savedPC = Arrays.copyOf(savedPC, saved * 2);
+                        }
+                        savedLast[saved] = last;
+                        savedPC[saved] = state.getPC();
+                        saved++;
+                        last = null;
+                    }
+
+                    public void fireAfterInvoke(State state, int inum) {
+                        enter(state.getPC());
+                    }
+                });
+            }
+
+            /**
+             * The <code>enter()</code> method is called when control is transferred to the specified
+             * address by an instruction whose target is not known from the control flow graph. If the
+             * address is in the middle of a segment, the segment is split there.
+             */
+            protected void enter(int addr) {
+                if ( addr >= segments.length || segments[addr] != null ) return;
+                Segment seg = findSegment(addr);
+                Segment split;
+                if ( seg == null || addr >= seg.end ) {
+                    split = new Segment(addr, program.getNextPC(addr));
+                } else {
+                    // the instructions after the split have executed as often as the segment so far
+                    for ( int pc = addr; pc < seg.end; pc = program.getNextPC(pc) ) icount[pc] += seg.count;
+                    split = new Segment(addr, seg.end);
+                    if ( seg.branch >= 0 ) {
+                        itime[seg.branch] += seg.taken * seg.extra;
+                        split.branch = seg.branch;
+                        split.target = seg.target;
+                        split.extra = seg.extra;
+                        seg.branch = seg.target = -1;
+                        seg.taken = 0;
+                    }
+                    seg.end = addr;
+                }
+                addSegment(split);
+            }
+
+            private Segment findSegment(int addr) {
+                for ( int pc = addr; pc >= 0; pc-- ) {
+                    if ( segments[pc] != null ) return segments[pc];
+                }
+                return null;
+            }
+
+            private void unexecuted(int addr) {
+                // the segment containing this address was entered but has not executed past it
+                if ( addr >= segments.length || segments[addr] != null ) return;
+                Segment seg = findSegment(addr);
+                if ( seg == null || addr >= seg.end ) return;
+                for ( int pc = addr; pc < seg.end; pc = program.getNextPC(pc) ) icount[pc]--;
+            }
+
+            /**
+             * The <code>computeProfile()</code> method computes the count and cycles of each
+             * instruction from the counts of the segments.
+             */
+            protected void computeProfile() {
+                for ( Segment seg : segments ) {
+                    if ( seg == null ) continue;
+                    for ( int pc = seg.start; pc < seg.end; pc = program.getNextPC(pc) ) icount[pc] += seg.count;
+                    if ( seg.branch >= 0 ) itime[seg.branch] += seg.taken * seg.extra;
+                    seg.count = seg.taken = 0;
+                }
+                // the segments that are still executing, including those interrupted, are not complete
+                unexecuted(simulator.getState().getPC());
+                for ( int cntr = 0; cntr < saved; cntr++ ) unexecuted(savedPC[cntr]);
+                for ( int pc = 0; pc < icount.length; pc++ ) {
+                    AbstractInstr i = program.readInstr(pc);
+                    if ( icount[pc] > 0 && i instanceof LegacyInstr ) itime[pc] += icount[pc] * ((LegacyInstr)i).getCycles();
+                }
+            }
+        }
+
         /**
          * The <code>CCProbe</code> class implements a probe that keeps track of the
          * execution count of each instruction as well as the number of cycles that
@@ -140,8 +361,19 @@ public class ProfileMonitor extends MonitorFactory {
             }
         }
 
+        /**
+         * The <code>computeProfile()</code> method completes the count and cycles of each instruction
+         * in <code>icount</code> and <code>itime</code>. When the program is profiled by basic blocks,
+         * they are derived from the counts of the blocks here, so this method must be called once, after
+         * the simulation has finished. It is called by <code>report()</code>.
+         */
+        public void computeProfile() {
+            if ( blocks != null ) blocks.computeProfile();
+        }
+
         public void report() {
 
+            computeProfile();
             computeTotals();
             reportProfile();
 
@@ -0,0 +1,294 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.monitors;
+
+import avrora.core.Program;
+import avrora.core.SourceMapping;
+import avrora.sim.Simulator;
+import avrora.sim.mcu.MCUProperties;
+import cck.text.*;
+import cck.util.Option;
+import cck.util.Util;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * The <code>SampleProfiler</code> class implements a statistical profiler. At random intervals it samples
+ * the program counter and the call stack of each node, which is maintained by probes on the call and
+ * return instructions only, and counts the samples for each call path. Since no probe is executed for
+ * every instruction, the interpreter stays on its fast path. The intervals are random so that samples do
+ * not alias with periodic activity in the program such as timer interrupts.
+ *
+ * <p>
+ * The report gives the samples spent in each function itself and in each function including its callees,
+ * and the collapsed call paths can be written to a file in the format used by flame graph tools.
+ */
+public class SampleProfiler extends MonitorFactory {
+
+    final Option.Long PERIOD = newOption("sample-period", 10000,
+            "This option specifies the average number of clock cycles between samples. The " +
+            "interval before each sample is chosen at random between half and one and a half " +
+            "times this period.");
+    final Option.Long SEED = newOption("sample-seed", 0,
+            "This option specifies the seed for the random intervals between samples. The seed " +
+            "of each node is derived from this seed and the identifier of the node, so that " +
+            "profiles are reproducible.");
+    final Option.Str FILE = newOption("flame-file", "",
+            "This option specifies the name of a file to which the sampled call paths of every " +
+            "node are written in the collapsed format, with one line per call path giving the " +
+            "functions separated by semicolons and the number of samples. This format can be " +
+            "rendered by flame graph tools.");
+
+    protected PrintWriter flameWriter;
+    protected int open;
+    protected final IdentityHashMap<Program, int[]> functionMaps = new IdentityHashMap<Program, int[]>();
+
+    /**
+     * The <code>PathNode</code> class represents a call path in the tree of sampled call paths.
+     * Each node stores the number of samples taken while the path was the complete call stack.
+     */
+    protected static class PathNode {
+        final long entry;
+        final PathNode parent;
+        PathNode sibling;
+        PathNode children;
+        long samples;
+
+        PathNode(long e, PathNode p) {
+            entry = e;
+            parent = p;
+        }
+
+        PathNode getChild(long e) {
+            PathNode n = children;
+            while (n != null) {
+                if (n.entry == e) return n;
+                n = n.sibling;
+            }
+            n = new PathNode(e, this);
+            n.sibling = children;
+            children = n;
+            return n;
+        }
+    }
+
+    /**
+     * The <code>FunctionEntry</code> class stores the samples counted for a single function.
+     */
+    protected static class FunctionEntry implements Comparable<FunctionEntry> {
+        final String name;
+        long self;
+        long total;
+        boolean active;
+
+        FunctionEntry(String n) {
+            name = n;
+        }
+
+        public int compareTo(FunctionEntry other) {
+            if (other.self != self) return other.self > self ? 1 : -1;
+            if (other.total != total) return other.total > total ? 1 : -1;
+            return name.compareTo(other.name);
+        }
+    }
+
+    public class Mon extends CallStack implements Monitor, Simulator.Event {
+
+        final Simulator simulator;
+        final SourceMapping sourceMap;
+        final MCUProperties props;
+        final Random random;
+        final long period;
+        final PathNode root;
+        final int[] functionOf;
+        long total;
+
+        Mon(Simulator s) {
+            simulator = s;
+            sourceMap = s.getProgram().getSourceMapping();
+            props = s.getMicrocontroller().getProperties();
+            random = new Random(SEED.get() * 31 + s.getID());
+            period = PERIOD.get();
+            if (period <= 0)
+                Util.userError("Sample period must be positive", Long.toString(period));
+            root = new PathNode(0, null);
+            functionOf = getFunctionMap(s.getProgram());
+            new CallTrace(s).attachMonitor(this);
+            s.insertEvent(this, nextInterval());
+        }
+
+        /**
+         * The <code>fire()</code> method of this event takes a sample of the call stack and
+         * schedules the next sample.
+         */
+        public void fire() {
+            PathNode n = root;
+            // the call sites are dropped so that each path is a sequence of functions
+            for (int cntr = 0; cntr < depth; cntr++) n = n.getChild(stack[cntr] & ~0xffffffL);
+            if (depth == 0) {
+                // no call has been seen, so use the label before the program counter as the function
+                int pc = simulator.getState().getPC();
+                int f = pc < functionOf.length ? functionOf[pc] : -1;
+                if (f >= 0) n = n.getChild(makeEntry((byte)-1, 0, f));
+            }
+            n.samples++;
+            total++;
+            simulator.insertEvent(this, nextInterval());
+        }
+
+        private long nextInterval() {
+            return period / 2 + (long)(random.nextDouble() * period) + 1;
+        }
+
+        public void report() {
+            TermUtil.printSeparator("Sampling profile for node " + simulator.getID());
+            TermUtil.reportQuantity("Samples taken", total, "");
+            Terminal.nextln();
+            reportFunctions();
+            if (!"".equals(FILE.get())) writeFlame();
+            Terminal.nextln();
+        }
+
+        private void reportFunctions() {
+            HashMap<String, FunctionEntry> functions = new HashMap<String, FunctionEntry>();
+            countFunctions(root, functions);
+            List<FunctionEntry> list = new ArrayList<FunctionEntry>(functions.values());
+            Collections.sort(list);
+
+            Terminal.printGreen("      Self   Percent     Total   Percent  Function");
+            Terminal.nextln();
+            TermUtil.printThinSeparator(Terminal.MAXLINE);
+            for (FunctionEntry e : list) {
+                Terminal.print(StringUtil.rightJustify(e.self, 10));
+                Terminal.print(StringUtil.rightJustify(percent(e.self), 10));
+                Terminal.print(StringUtil.rightJustify(e.total, 10));
+                Terminal.print(StringUtil.rightJustify(percent(e.total), 10));
+                Terminal.print("  ");
+                Terminal.printGreen(e.name);
+                Terminal.nextln();
+            }
+        }
+
+        private void countFunctions(PathNode n, HashMap<String, FunctionEntry> functions) {
+            String name = getName(n);
+            FunctionEntry e = functions.get(name);
+            if (e == null) {
+                e = new FunctionEntry(name);
+                functions.put(name, e);
+            }
+            e.self += n.samples;
+            // a recursive function is only counted once per sample in its total
+            boolean outer = !e.active;
+            e.active = true;
+            e.total += sum(n, outer);
+            for (PathNode c = n.children; c != null; c = c.sibling) countFunctions(c, functions);
+            if (outer) e.active = false;
+        }
+
+        private long sum(PathNode n, boolean count) {
+            // the samples in this path that are not already counted for an enclosing call
+            if (!count) return 0;
+            long s = n.samples;
+            for (PathNode c = n.children; c != null; c = c.sibling) s += sum(c, true);
+            return s;
+        }
+
+        private String percent(long samples) {
+            float p = total == 0 ? 0 : 100.0f * samples / total;
+            return StringUtil.toFixedFloat(p, 2) + " %";
+        }
+
+        private String getName(PathNode n) {
+            if (n == root) return "node" + simulator.getID();
+            int target = (int)((n.entry >> 24) & 0xffffff);
+            byte inum = (byte)((n.entry >> 48) & 0xff);
+            String name = sourceMap == null ? null : sourceMap.getName(target);
+            if (name == null) name = StringUtil.addrToString(target);
+            if (inum >= 0) {
+                String iname = props.getInterruptName(inum);
+                return "#" + inum + ":" + (iname == null ? name : iname);
+            }
+            return name;
+        }
+
+        private void writeFlame() {
+            StringBuffer path = new StringBuffer();
+            synchronized (SampleProfiler.this) {
+                PrintWriter w = getFlameWriter();
+                writeFlame(w, root, path);
+                w.flush();
+                if (--open == 0) w.close();
+            }
+        }
+
+        private void writeFlame(PrintWriter w, PathNode n, StringBuffer path) {
+            int len = path.length();
+            if (len > 0) path.append(';');
+            path.append(getName(n));
+            if (n.samples > 0) {
+                w.print(path);
+                w.print(' ');
+                w.println(n.samples);
+            }
+            for (PathNode c = n.children; c != null; c = c.sibling) writeFlame(w, c, path);
+            path.setLength(len);
+        }
+    }
+
+    public SampleProfiler() {
+        super("The \"sample-profile\" monitor profiles the program by sampling the program's " +
+                "call stack at random intervals. Since it does not instrument every instruction, " +
+                "it slows the simulation much less than the \"profile\" monitor. It reports the " +
+                "samples spent in each function and can write the sampled call paths for " +
+                "rendering as a flame graph.");
+    }
+
+    public Monitor newMonitor(Simulator s) {
+        synchronized (this) {
+            open++;
+        }
+        return new Mon(s);
+    }
+
+    /**
+     * The <code>getFunctionMap()</code> method returns an array that maps each address in the
+     * specified program to the address of the nearest label at or before it, which is shared among
+     * the nodes running the same program.
+     * @param p the program
+     * @return an array that stores the address of the enclosing label, or -1, for each address
+     */
+    protected synchronized int[] getFunctionMap(Program p) {
+        int[] map = functionMaps.get(p);
+        if (map != null) return map;
+        map = new int[p.program_end];
+        Arrays.fill(map, -1);
+        SourceMapping sm = p.getSourceMapping();
+        if (sm != null) {
+            Iterator<SourceMapping.Location> i = sm.getIterator();
+            while (i.hasNext()) {
+                SourceMapping.Location l = i.next();
+                if (p.readInstr(l.lma_addr) != null) map[l.lma_addr] = l.lma_addr;
+            }
+        }
+        for (int cntr = 1; cntr < map.length; cntr++) {
+            if (map[cntr] < 0) map[cntr] = map[cntr - 1];
+        }
+        functionMaps.put(p, map);
+        return map;
+    }
+
+    private PrintWriter getFlameWriter() {
+        if (flameWriter == null) {
+            try {
+                flameWriter = new PrintWriter(new BufferedWriter(new FileWriter(FILE.get())));
+            } catch (IOException e) {
+                Util.userError("Could not create flame file", FILE.get());
+            }
+        }
+        return flameWriter;
+    }
+}
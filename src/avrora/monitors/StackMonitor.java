@@ -32,24 +32,287 @@
 
 package avrora.monitors;
 
+import avrora.arch.AbstractInstr;
 import avrora.arch.legacy.LegacyInstr;
-import avrora.core.Program;
+import avrora.core.*;
 import avrora.sim.Simulator;
 import avrora.sim.State;
 import avrora.sim.mcu.MCUProperties;
 import cck.text.*;
+import cck.util.Option;
+import java.util.*;
 
 /**
  * The <code>StackMonitor</code> class is a monitor that tracks the height of the program's stack over the
  * execution of the simulation and reports the maximum stack of the program.
  *
+ * <p>
+ * The stack pointer only decreases when a register is pushed, when a call instruction or an interrupt
+ * pushes the return address, and when the program writes the stack pointer. Rather than probing every
+ * instruction that changes the stack pointer, the monitor uses the control flow graph of the program to
+ * find, in each basic block, the single point where the stack is deepest, and inserts a probe only there
+ * and at the entry of each procedure. Within a procedure whose stack frame can be computed statically,
+ * no probe is inserted after the entry block unless the code after it can push deeper than the entry
+ * block does; since the pushes of the prologue are usually in the entry block, most procedures need
+ * only a single probe.
+ *
  * @author Ben L. Titzer
  */
 public class StackMonitor extends MonitorFactory {
 
+    public final Option.Bool PROCEDURES = newOption("procedure-depths", false,
+            "This option selects whether the stack monitor will report the maximum depth of the stack " +
+            "observed in each procedure of the program, along with the size of the procedure's own " +
+            "stack frame when it can be computed statically.");
+
+    protected final IdentityHashMap<Program, Plan> plans = new IdentityHashMap<Program, Plan>();
+
     /**
-     * The <code>Monitor</code> class implements a monitor for the stack height that inserts a probe after
-     * every instruction in the program and checks the stack height after each instruction is executed.
+     * The <code>Plan</code> class stores the points in a program where the stack monitor inserts
+     * probes, which are computed once from the control flow graph and shared among all of the nodes
+     * running the same program.
+     */
+    protected static class Plan {
+        protected final Program program;
+        protected final int spl;
+        protected final int sph;
+
+        protected int[] entries = new int[16];
+        protected int numEntries;
+        protected int[] points = new int[16];
+        protected int numPoints;
+
+        // the end of the basic block starting at each address, and the stack depth relative to the
+        // entry of its procedure; these are only used while the plan is computed
+        protected int[] blockEnd;
+        protected int[] depthIn;
+
+        /**
+         * The <code>functionOf</code> field maps each address to the index of the nearest label at
+         * or before it, or -1 if there is none.
+         */
+        protected final int[] functionOf;
+        protected String[] names;
+        protected int[] starts;
+        protected int[] frames;
+
+        protected Plan(Program p, int l, int h) {
+            program = p;
+            spl = l;
+            sph = h;
+            blockEnd = new int[p.program_end];
+            depthIn = new int[p.program_end];
+            functionOf = new int[p.program_end];
+            buildFunctions();
+            buildPlan();
+            blockEnd = null;
+            depthIn = null;
+        }
+
+        private void buildFunctions() {
+            TreeMap<Integer, String> labels = new TreeMap<Integer, String>();
+            SourceMapping map = program.getSourceMapping();
+            if ( map != null ) {
+                Iterator<SourceMapping.Location> i = map.getIterator();
+                while ( i.hasNext() ) {
+                    SourceMapping.Location l = i.next();
+                    if ( l.lma_addr >= program.program_end || program.readInstr(l.lma_addr) == null ) continue;
+                    String prev = labels.get(l.lma_addr);
+                    if ( prev == null || l.name.compareTo(prev) < 0 ) labels.put(l.lma_addr, l.name);
+                }
+            }
+            names = new String[labels.size()];
+            starts = new int[labels.size()];
+            frames = new int[labels.size()];
+            Arrays.fill(frames, -1);
+            Arrays.fill(functionOf, -1);
+            int index = 0;
+            for ( Map.Entry<Integer, String> e : labels.entrySet() ) {
+                names[index] = e.getValue();
+                starts[index] = e.getKey();
+                functionOf[e.getKey()] = index++;
+            }
+            for ( int cntr = 1; cntr < functionOf.length; cntr++ ) {
+                if ( functionOf[cntr] < 0 ) functionOf[cntr] = functionOf[cntr - 1];
+            }
+        }
+
+        private void buildPlan() {
+            ControlFlowGraph cfg = program.getCFG();
+            ProcedureMap pmap = cfg.getProcedureMap();
+            Collection<ControlFlowGraph.Block> procs = pmap.getProcedureEntrypoints();
+
+            // a branch decoded from data can begin a block in the middle of an instruction
+            ArrayList<ControlFlowGraph.Block> blocks = new ArrayList<ControlFlowGraph.Block>();
+            Iterator<ControlFlowGraph.Block> bi = cfg.getSortedBlockIterator();
+            int pc = program.program_start;
+            while ( bi.hasNext() ) {
+                ControlFlowGraph.Block b = bi.next();
+                // calls into a bootloader can target addresses beyond the program
+                if ( b.getAddress() >= program.program_end ) break;
+                while ( pc < b.getAddress() ) pc = program.getNextPC(pc);
+                if ( pc == b.getAddress() ) blocks.add(b);
+            }
+            for ( int cntr = 0; cntr < blocks.size(); cntr++ ) {
+                int end = cntr + 1 < blocks.size() ? blocks.get(cntr + 1).getAddress() : program.program_end;
+                blockEnd[blocks.get(cntr).getAddress()] = end;
+            }
+
+            // compute the frames of the procedures whose stack depth is known at every block
+            HashSet<ControlFlowGraph.Block> proven = new HashSet<ControlFlowGraph.Block>();
+            HashMap<ControlFlowGraph.Block, Integer> entryDepth = new HashMap<ControlFlowGraph.Block, Integer>();
+            for ( ControlFlowGraph.Block e : procs ) {
+                if ( !isBlock(e.getAddress()) ) continue;
+                HashSet<ControlFlowGraph.Block> pblocks = computeDepths(pmap, e);
+                if ( pblocks == null ) continue;
+                int frame = 0;
+                for ( ControlFlowGraph.Block b : pblocks )
+                    frame = Math.min(frame, deepest(b.getAddress(), depthIn[b.getAddress()]));
+                proven.addAll(pblocks);
+                entryDepth.put(e, deepest(e.getAddress(), 0));
+                int f = functionOf[e.getAddress()];
+                if ( f >= 0 && starts[f] == e.getAddress() ) frames[f] = -frame;
+            }
+
+            for ( ControlFlowGraph.Block b : blocks ) {
+                ControlFlowGraph.Block e = proven.contains(b) ? pmap.getProcedureContaining(b) : null;
+                // a deeper point in a proven procedure is always preceded by its entry block
+                int limit = e == null || e == b ? Integer.MAX_VALUE : entryDepth.get(e) - depthIn[b.getAddress()];
+                addPoints(b.getAddress(), procs.contains(b), limit);
+            }
+        }
+
+        /**
+         * The <code>computeDepths()</code> method computes the stack depth at the start of each block
+         * in the procedure, relative to its entry, and returns the blocks of the procedure. It returns
+         * null if the depth cannot be determined statically.
+         */
+        private HashSet<ControlFlowGraph.Block> computeDepths(ProcedureMap pmap, ControlFlowGraph.Block entry) {
+            if ( pmap.getProcedureContaining(entry) != entry ) return null;
+            HashSet<ControlFlowGraph.Block> seen = new HashSet<ControlFlowGraph.Block>();
+            ArrayList<ControlFlowGraph.Block> work = new ArrayList<ControlFlowGraph.Block>();
+            depthIn[entry.getAddress()] = 0;
+            seen.add(entry);
+            work.add(entry);
+            while ( !work.isEmpty() ) {
+                ControlFlowGraph.Block b = work.remove(work.size() - 1);
+                int start = b.getAddress();
+                int out = netDepth(start, depthIn[start]);
+                if ( out == Integer.MIN_VALUE ) return null;
+                Iterator<ControlFlowGraph.Edge> ei = b.getEdgeIterator();
+                while ( ei.hasNext() ) {
+                    ControlFlowGraph.Edge edge = ei.next();
+                    ControlFlowGraph.Block t = edge.getTarget();
+                    if ( !"".equals(edge.getType()) ) continue;
+                    // the blocks shared with other procedures may be entered at other depths
+                    if ( t == null || !isBlock(t.getAddress()) || pmap.getProcedureContaining(t) != entry ) return null;
+                    if ( seen.add(t) ) {
+                        depthIn[t.getAddress()] = out;
+                        work.add(t);
+                    } else if ( depthIn[t.getAddress()] != out ) {
+                        return null;
+                    }
+                }
+            }
+            return seen;
+        }
+
+        private boolean isBlock(int addr) {
+            return addr < blockEnd.length && blockEnd[addr] != 0;
+        }
+
+        private int netDepth(int start, int depth) {
+            for ( int pc = start; pc < blockEnd[start]; pc = program.getNextPC(pc) ) {
+                AbstractInstr i = program.readInstr(pc);
+                if ( i instanceof LegacyInstr.PUSH ) depth--;
+                else if ( i instanceof LegacyInstr.POP ) depth++;
+                else if ( writesSP(i) || i instanceof LegacyInstr.IJMP || i instanceof LegacyInstr.EIJMP ) return Integer.MIN_VALUE;
+                else if ( callsNext(pc, i) ) return Integer.MIN_VALUE;
+            }
+            return depth;
+        }
+
+        private int deepest(int start, int depth) {
+            int min = depth;
+            for ( int pc = start; pc < blockEnd[start]; pc = program.getNextPC(pc) ) {
+                AbstractInstr i = program.readInstr(pc);
+                if ( i instanceof LegacyInstr.PUSH && --depth < min ) min = depth;
+                else if ( i instanceof LegacyInstr.POP ) depth++;
+            }
+            return min;
+        }
+
+        /**
+         * The <code>addPoints()</code> method adds the probe points for a basic block. The block is
+         * divided into runs by the instructions that write the stack pointer, which are observed by
+         * watches, and the deepest point of each run that is deeper than the limit is probed.
+         */
+        private void addPoints(int start, boolean entry, int limit) {
+            int depth = 0;
+            int min = entry ? 0 : Integer.MAX_VALUE;
+            int point = entry ? -1 : -2;
+            for ( int pc = start; pc < blockEnd[start]; pc = program.getNextPC(pc) ) {
+                AbstractInstr i = program.readInstr(pc);
+                if ( i instanceof LegacyInstr.PUSH ) {
+                    if ( --depth < min ) {
+                        min = depth;
+                        point = pc;
+                    }
+                } else if ( i instanceof LegacyInstr.POP ) {
+                    depth++;
+                } else if ( i instanceof LegacyInstr.ICALL || i instanceof LegacyInstr.EICALL ) {
+                    // the target is not known, so the return address must be observed at the call
+                    points = add(points, numPoints++, pc);
+                } else if ( i instanceof LegacyInstr.IJMP || i instanceof LegacyInstr.EIJMP ) {
+                    // an indirect jump can return from a helper that allocated the frame of the
+                    // procedure it jumps to, such as the prologue saves in libgcc
+                    points = add(points, numPoints++, pc);
+                } else if ( writesSP(i) ) {
+                    addPoint(start, point, min, limit);
+                    depth = 0;
+                    min = Integer.MAX_VALUE;
+                    point = -2;
+                    limit = Integer.MAX_VALUE;
+                }
+            }
+            addPoint(start, point, min, limit);
+        }
+
+        private void addPoint(int start, int point, int min, int limit) {
+            // the reset vector is entered before the stack pointer is initialized
+            if ( point == -1 && min < limit && start != 0 ) entries = add(entries, numEntries++, start);
+            else if ( point >= 0 && min < limit ) points = add(points, numPoints++, point);
+        }
+
+        private boolean writesSP(AbstractInstr i) {
+            if ( i instanceof LegacyInstr.OUT ) {
+                int addr = ((LegacyInstr.OUT)i).imm1 + 32;
+                return addr == spl || addr == sph;
+            }
+            if ( i instanceof LegacyInstr.STS ) {
+                int addr = ((LegacyInstr.STS)i).imm1;
+                return addr == spl || addr == sph;
+            }
+            return false;
+        }
+
+        private boolean callsNext(int pc, AbstractInstr i) {
+            // "rcall .+0" pushes the return address to allocate space on the stack
+            if ( i instanceof LegacyInstr.RCALL ) return ((LegacyInstr.RCALL)i).imm1 == 0;
+            if ( i instanceof LegacyInstr.CALL ) return ((LegacyInstr.CALL)i).imm1 * 2 == pc + 4;
+            return false;
+        }
+
+        private static int[] add(int[] array, int index, int value) {
+            if ( index == array.length ) array = Arrays.copyOf(array, array.length * 2);
+            array[index] = value;
+            return array;
+        }
+    }
+
+    /**
+     * The <code>Monitor</code> class implements a monitor for the stack height that inserts a probe at
+     * each point in the program where the stack can become deeper and checks the stack height there.
      */
     public class Mon implements Monitor {
         private final SPWatch SPH_watch;
@@ -59,33 +322,34 @@ public class StackMonitor extends MonitorFactory {
         private int minSP = 0;
         private int maxSP = 0;
         protected final Simulator simulator;
+        protected final Plan plan;
+        protected final int[] lowest;
 
         Mon(Simulator sim) {
             SPH_watch = new SPWatch();
             SPL_watch = new SPWatch();
 
-            SPProbe probe = new SPProbe();
-
             // insert watches for SP registers
             MCUProperties props = sim.getMicrocontroller().getProperties();
             simulator = sim;
-            simulator.insertWatch(SPH_watch, props.getIOReg("SPH"));
-            sim.insertWatch(SPL_watch, props.getIOReg("SPL"));
+            int spl = props.getIOReg("SPL") + 32;
+            int sph = props.getIOReg("SPH") + 32;
+            simulator.insertWatch(SPH_watch, sph);
+            sim.insertWatch(SPL_watch, spl);
             sim.getInterpreter().getInterruptTable().insertProbe(new IntProbe());
 
-            // insert probes to catch "implicit" updates to SP for certain instructions
-            Program program = sim.getProgram();
-            for ( int pc = 0; pc < program.program_end; pc = program.getNextPC(pc)) {
-                LegacyInstr i = (LegacyInstr)program.readInstr(pc);
-                if ( i != null ) {
-                    if ( i instanceof LegacyInstr.CALL ) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.ICALL ) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.RCALL) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.RET ) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.RETI ) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.PUSH ) sim.insertProbe(probe, pc);
-                    else if ( i instanceof LegacyInstr.POP ) sim.insertProbe(probe, pc);
-                }
+            // insert probes only at the points where the stack can become deeper
+            plan = getPlan(sim.getProgram(), spl, sph);
+            EntryProbe entry = new EntryProbe();
+            SPProbe probe = new SPProbe();
+            for ( int cntr = 0; cntr < plan.numEntries; cntr++ ) sim.insertProbe(entry, plan.entries[cntr]);
+            for ( int cntr = 0; cntr < plan.numPoints; cntr++ ) sim.insertProbe(probe, plan.points[cntr]);
+
+            if ( PROCEDURES.get() ) {
+                lowest = new int[plan.names.length];
+                Arrays.fill(lowest, Integer.MAX_VALUE);
+            } else {
+                lowest = null;
             }
         }
 
@@ -101,12 +365,37 @@ public class StackMonitor extends MonitorFactory {
                 TermUtil.reportQuantity("Minimum stack pointer", StringUtil.addrToString(minSP), "");
                 TermUtil.reportQuantity("Maximum stack size", (maxSP - minSP), "bytes");
                 Terminal.nextln();
+                if ( lowest != null ) reportProcedures();
             } else {
                 Terminal.println("No stack pointer information for node "+simulator.getID()+".");
                 Terminal.nextln();
             }
         }
 
+        private void reportProcedures() {
+            ArrayList<Integer> list = new ArrayList<Integer>();
+            for ( int cntr = 0; cntr < lowest.length; cntr++ )
+                if ( lowest[cntr] != Integer.MAX_VALUE ) list.add(cntr);
+            Collections.sort(list, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    if ( lowest[a] != lowest[b] ) return lowest[a] - lowest[b];
+                    return plan.names[a].compareTo(plan.names[b]);
+                }
+            });
+            Terminal.printGreen("  Depth   Frame  Procedure");
+            Terminal.nextln();
+            TermUtil.printThinSeparator(Terminal.MAXLINE);
+            for ( Integer f : list ) {
+                int frame = plan.frames[f];
+                Terminal.print(StringUtil.rightJustify(maxSP - lowest[f], 7));
+                Terminal.print(StringUtil.rightJustify(frame < 0 ? "-" : Integer.toString(frame), 8));
+                Terminal.print("  ");
+                Terminal.printGreen(plan.names[f]);
+                Terminal.nextln();
+            }
+            Terminal.nextln();
+        }
+
         class SPWatch extends Simulator.Watch.Empty {
             boolean written;
             // fire when either SPH or SPL is written
@@ -119,27 +408,35 @@ public class StackMonitor extends MonitorFactory {
         class IntProbe extends Simulator.InterruptProbe.Empty {
             // fire when any interrupt is invoked
             public void fireAfterInvoke(State s, int inum) {
-                newSP(s.getSP());
+                newSP(s.getSP(), s.getPC());
+            }
+        }
+
+        class EntryProbe extends Simulator.Probe.Empty {
+            // fire before the entry of a procedure
+            public void fireBefore(State state, int pc) {
+                newSP(state.getSP(), pc);
             }
         }
 
         class SPProbe extends Simulator.Probe.Empty {
-            // fire after a call, push, pop, or ret instruction
+            // fire after the deepest push or an indirect call in a block
             public void fireAfter(State state, int pc) {
-                newSP(state.getSP());
+                // an indirect call or jump is observed in the procedure it entered
+                newSP(state.getSP(), state.getPC());
             }
         }
 
         void checkSPWrite(State state) {
             // only record SP values after both SPH and SPL written
             if ( SPH_watch.written && SPL_watch.written ) {
-                newSP(state.getSP());
+                newSP(state.getSP(), state.getPC());
                 SPH_watch.written = false;
                 SPL_watch.written = false;
             }
         }
 
-        void newSP(int sp) {
+        void newSP(int sp, int pc) {
             // record a new stack pointer value
             if ( !SPinit ) {
                 maxSP = sp;
@@ -148,6 +445,10 @@ public class StackMonitor extends MonitorFactory {
             }
             else if ( sp > maxSP ) maxSP = sp;
             else if ( sp < minSP ) minSP = sp;
+            if ( lowest != null && pc < plan.functionOf.length ) {
+                int f = plan.functionOf[pc];
+                if ( f >= 0 && sp < lowest[f] ) lowest[f] = sp;
+            }
         }
     }
 
@@ -171,4 +472,21 @@ public class StackMonitor extends MonitorFactory {
     public Monitor newMonitor(Simulator s) {
         return new Mon(s);
     }
+
+    /**
+     * The <code>getPlan()</code> method returns the probe points for the specified program, which are
+     * shared among the nodes running the same program.
+     * @param p the program
+     * @param spl the data address of the low byte of the stack pointer
+     * @param sph the data address of the high byte of the stack pointer
+     * @return the probe points computed from the control flow graph of the program
+     */
+    protected synchronized Plan getPlan(Program p, int spl, int sph) {
+        Plan plan = plans.get(p);
+        if ( plan == null ) {
+            plan = new Plan(p, spl, sph);
+            plans.put(p, plan);
+        }
+        return plan;
+    }
 }
@@ -41,6 +41,8 @@ import cck.text.*;
 import cck.util.Option;
 import cck.util.Util;
 
+import java.io.IOException;
+
 /**
  * The <code>ProfileMonitor</code> class represents a monitor that can collect profiling information such as
  * counts and branchcounts about the program as it executes.
@@ -58,6 +60,13 @@ public class TraceMonitor extends MonitorFactory {
             "The \"trace-start\" option specifies the time to start the instruction trace, in " +
             "clock cycles. This option can be useful for diagnosing problems in long simulations " +
             "that happens after a given time is reached.");
+    final Option.Str FILE = newOption("trace-file", "",
+            "The \"trace-file\" option specifies the name of a file to which the instruction trace " +
+            "is written in a compact binary format instead of being printed. Each node records its " +
+            "instructions into buffers of its own that are written to the file by a background thread, " +
+            "which is much faster than printing. The trace can be decoded with the \"trace-dump\" action.");
+
+    protected BinaryTrace binary;
 
     /**
      * The <code>Monitor</code> class implements the monitor for the profiler. It contains a
@@ -68,7 +77,8 @@ public class TraceMonitor extends MonitorFactory {
         public final Simulator simulator;
         public final SimPrinter printer;
         public final Program program;
-        public final GlobalProbe PROBE;
+        public final Simulator.Probe PROBE;
+        public final BinaryTrace.Buffer buffer;
         public int count;
         int nesting;
 
@@ -82,6 +92,16 @@ public class TraceMonitor extends MonitorFactory {
             }
         }
 
+        public class BinaryProbe implements Simulator.Probe {
+            public void fireBefore(State s, int addr) {
+                record(s, addr);
+            }
+
+            public void fireAfter(State s, int addr) {
+                count++;
+            }
+        }
+
         public class StartProbe extends Simulator.Probe.Empty {
             int start, end;
             int traceNum;
@@ -97,7 +117,8 @@ public class TraceMonitor extends MonitorFactory {
                 traceNum++;
                 if ( nesting == 0 ) {
                     print("trace ("+pair+") begin: "+traceNum+" --------------------------");
-                    print(s, s.getInstr(addr));
+                    if ( buffer != null ) record(s, addr);
+                    else print(s, s.getInstr(addr));
                     simulator.insertProbe(PROBE);
                 } else {
                     print("nested ("+pair+") begin: "+traceNum+" --------------------------");
@@ -149,6 +170,13 @@ public class TraceMonitor extends MonitorFactory {
             nextpc = pc + i.getSize();
         }
 
+        private void record(State s, int addr) {
+            int opcode = 0;
+            if ( addr >= program.program_start && addr + 1 < program.program_end )
+                opcode = (program.readProgramByte(addr) & 0xff) | (program.readProgramByte(addr + 1) << 8);
+            buffer.record(s.getCycles(), addr, opcode);
+        }
+
         private void print(String s) {
             printer.println(s);
         }
@@ -157,7 +185,13 @@ public class TraceMonitor extends MonitorFactory {
             simulator = s;
             printer = s.getPrinter();
             program = s.getProgram();
-            PROBE = new GlobalProbe();
+            if ( binary != null ) {
+                buffer = binary.newBuffer(s.getID());
+                PROBE = new BinaryProbe();
+            } else {
+                buffer = null;
+                PROBE = new GlobalProbe();
+            }
             long time = TIME.get();
             if ( time > 0 ) {
                 // if start time is specified, add an event to start the global probe
@@ -216,8 +250,17 @@ public class TraceMonitor extends MonitorFactory {
             TermUtil.reportQuantity("Instructions executed", count, "");
             TermUtil.reportQuantity("Program throughput", ipc, "instrs/cycle");
             TermUtil.reportQuantity("Program throughput", ipc * simulator.getClock().getHZ() / 1000000, "mips");
+            if ( buffer != null ) closeTrace();
             Terminal.nextln();
         }
+
+        private void closeTrace() {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                Util.userError("Could not write trace file", binary.getFileName());
+            }
+        }
     }
 
     /**
@@ -238,6 +281,17 @@ public class TraceMonitor extends MonitorFactory {
      *         program
      */
     public Monitor newMonitor(Simulator s) {
+        synchronized (this) {
+            if ( binary == null && !"".equals(FILE.get()) ) openTrace();
+        }
         return new Mon(s);
     }
+
+    private void openTrace() {
+        try {
+            binary = new BinaryTrace(FILE.get());
+        } catch (IOException e) {
+            Util.userError("Could not create trace file", FILE.get());
+        }
+    }
 }
@@ -76,6 +76,16 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
     protected MulticastWatch[] sram_watches;
     protected final VolatileBehavior[] sram_volatile;
 
+    /**
+     * The <code>watch_pages</code> field stores a bitmap with one bit for each page of
+     * <code>WATCH_PAGE_SIZE</code> bytes of the data memory. A bit is set when a watch may be
+     * installed on a location within the page. It is null until the first watch is inserted,
+     * so that loads and stores to unwatched memory need not consult the watches.
+     */
+    protected long[] watch_pages;
+    protected static final int WATCH_PAGE_BITS = 6;
+    protected static final int WATCH_PAGE_SIZE = 1 << WATCH_PAGE_BITS;
+
     protected final ActiveRegister[] ioregs;
 
     protected final CodeSegment flash;
@@ -193,6 +203,7 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
          */
         @Override
         public byte getSREG() {
+            materializeFlags();
             int value = 0;
             if (I) {
                 value |= LegacyState.SREG_I_MASK;
@@ -451,8 +462,12 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
         // allocate FLASH
         flash = pr.codeSegmentFactory.newCodeSegment("flash", this, p);
         // for performance, we share a reference to the LegacyInstr[] array representing flash
-        // TODO: implement share() method
-        shared_instr = flash.shareCode(null);
+        shared_instr = flash.shareCode(new CodeSegment.CodeSharer() {
+            public void update(LegacyInstr[] segment) {
+                // the flash copies a shared program image before it is first updated
+                shared_instr = segment;
+            }
+        });
 
         // initialize the interrupt table
         interrupts = new InterruptTable(this, pr.num_interrupts);
@@ -625,6 +640,13 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
             w = sram_watches[data_addr] = new MulticastWatch();
         }
         w.add(p);
+
+        // switch loads and stores within this page to the slow path
+        if (watch_pages == null) {
+            watch_pages = new long[((sram.length >> WATCH_PAGE_BITS) >> 6) + 1];
+        }
+        int page = data_addr >> WATCH_PAGE_BITS;
+        watch_pages[page >> 6] |= 1L << page;
     }
 
     /**
@@ -647,6 +669,18 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
             return;
         }
         w.remove(p);
+
+        // if no watches remain in this page, switch it back to the fast path
+        int start = data_addr & ~(WATCH_PAGE_SIZE - 1);
+        int end = Math.min(start + WATCH_PAGE_SIZE, sram_watches.length);
+        for (int addr = start; addr < end; addr++) {
+            MulticastWatch o = sram_watches[addr];
+            if (o != null && !o.isEmpty()) {
+                return;
+            }
+        }
+        int page = data_addr >> WATCH_PAGE_BITS;
+        watch_pages[page >> 6] &= ~(1L << page);
     }
 
     /**
@@ -771,6 +805,7 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
     }
 
     public boolean getFlag(int bit) {
+        materializeFlags();
         switch (bit) {
             case LegacyState.SREG_I:
                 return I;
@@ -793,6 +828,7 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
     }
 
     public void setFlag(int bit, boolean on) {
+        materializeFlags();
         switch (bit) {
             case LegacyState.SREG_I:
                 if (on) {
@@ -825,6 +861,17 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
         }
     }
 
+    /**
+     * The <code>materializeFlags()</code> method brings the flag fields of this interpreter up to date.
+     * Interpreters that defer the computation of the status flags until they are needed override this
+     * method to compute the flags from the last recorded operation. It is called before any access
+     * to the status register from outside of the instruction implementations, such as reads and
+     * writes of the SREG register and the <code>getFlag()</code> and <code>setFlag()</code> methods.
+     */
+    protected void materializeFlags() {
+        // the default interpreter computes the flags eagerly
+    }
+
     protected void setIORegBit(int ior, int bit, boolean on) {
         byte curv = readSRAM(INSTRUMENTED, toSRAM(ior));
         curv = Arithmetic.setBit(curv, bit, on);
@@ -849,13 +896,29 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
         return readSRAM(INSTRUMENTED, address);
     }
 
+    private boolean isWatched(int addr) {
+        long[] pages = watch_pages;
+        if (pages == null) {
+            return false;
+        }
+        int page = addr >> WATCH_PAGE_BITS;
+        return (pages[page >> 6] & (1L << page)) != 0;
+    }
+
     private byte readSRAM(boolean w, int addr) {
+        if (addr >= sram_start && addr < sram.length && !(w && isWatched(addr))) {
+            // the fast path: a RAM location without watches
+            return sram[addr];
+        }
+        return readWatchedSRAM(w, addr);
+    }
+
+    private byte readWatchedSRAM(boolean w, int addr) {
         if (addr < 0) {
             // an error.
             return fireReadError(w, addr);
         } else if (addr < sram.length) {
             // a valid RAM access.
-            // PERFORMANCE: consider wrapping in if(sram_watches)
             byte val;
             fireBeforeRead(w, addr);
             if (addr < sram_start) {
@@ -872,12 +935,20 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
     }
 
     private void writeSRAM(boolean w, int addr, byte val) {
+        if (addr >= sram_start && addr < sram.length && !(w && isWatched(addr))) {
+            // the fast path: a RAM location without watches
+            sram[addr] = val;
+            return;
+        }
+        writeWatchedSRAM(w, addr, val);
+    }
+
+    private void writeWatchedSRAM(boolean w, int addr, byte val) {
         if (addr < 0) {
             // an error.
             fireWriteError(w, addr, val);
         } else if (addr < sram.length) {
             // a valid RAM access.
-            // PERFORMANCE: consider wrapping in if(sram_watches)
             fireBeforeWrite(w, addr, val);
             if (addr < sram_start) {
                 sram[addr] = writeVolatile(addr, val);
@@ -928,6 +999,7 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
 
         @Override
         public int read(int cur) {
+            materializeFlags();
             int val = 0;
             if (I) {
                 val |= LegacyState.SREG_I_MASK;
@@ -958,6 +1030,7 @@ public abstract class AtmelInterpreter extends Interpreter implements LegacyInst
 
         @Override
         public int write(int cur, int nv) {
+            materializeFlags();
             boolean enabled = (nv & LegacyState.SREG_I_MASK) != 0;
             if (enabled) {
                 enableInterrupts();
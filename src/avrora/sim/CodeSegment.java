@@ -37,6 +37,8 @@ import avrora.core.Program;
 import avrora.sim.util.MulticastProbe;
 import cck.util.Util;
 import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * The <code>CodeSegment</code> class represents a segment of memory that stores executable
@@ -99,10 +101,81 @@ public class CodeSegment extends Segment {
      */
     protected LegacyInstr[] segment_instr;
 
-    protected final NoLegacyInstr NO_INSTR = new NoLegacyInstr();
+    static LegacyInstrProperties NO_INSTR_PROPS = new LegacyInstrProperties("<none>", "<none>", 2, 1);
+
+    protected static final NoLegacyInstr NO_INSTR = new NoLegacyInstr();
+
+    /**
+     * The <code>instrShared</code> and <code>dataShared</code> fields record whether the instruction
+     * and data arrays of this segment belong to a shared program image. A shared array is copied
+     * before it is first updated, so that updates to one segment are not visible in the others.
+     */
+    protected boolean instrShared;
+    protected boolean dataShared;
+
+    private static final Map<Program, Image> images = new WeakHashMap<Program, Image>();
+
+    /**
+     * The <code>Image</code> class represents the decoded instructions and the initial contents of a code
+     * segment. The image of a program is created when the first code segment loads it and is shared by
+     * every code segment that loads the same program, such as the nodes of a sensor network simulation.
+     */
+    protected static class Image {
+        final LegacyInstr[] instr;
+        final byte[] data;
+
+        Image(int size) {
+            instr = new LegacyInstr[size];
+            data = new byte[size];
+            Arrays.fill(data, DEFAULT_VALUE);
+        }
+
+        Image(Program p, int size) {
+            this(size);
+            Arrays.fill(instr, NO_INSTR);
+            for (int cntr = p.program_start; cntr < p.program_end;) {
+                LegacyInstr i = (LegacyInstr)p.readInstr(cntr);
+                if (i != null) {
+                    instr[cntr] = i;
+                    cntr += i.getSize();
+                } else {
+                    cntr += 2;
+                }
+            }
+
+            // now initialize the flash data
+            for (int cntr = p.program_start; cntr < p.program_end; cntr++)
+                data[cntr] = p.readProgramByte(cntr);
+        }
+    }
+
+    /**
+     * The <code>getImage()</code> method returns the shared image of the specified program for a code
+     * segment of the specified size, creating it if necessary.
+     * @param p the program
+     * @param size the size of the code segment in bytes
+     * @return the image of the program
+     */
+    protected static Image getImage(Program p, int size) {
+        synchronized (images) {
+            Image img = images.get(p);
+            if (img == null || img.data.length != size) {
+                img = new Image(p, size);
+                images.put(p, img);
+            }
+            return img;
+        }
+    }
 
     protected CodeSharer codeSharer;
 
+    /**
+     * The <code>version</code> field counts the updates to the instructions stored in this segment,
+     * including the insertion of probes. Clients that cache information derived from the instructions
+     * can compare it to detect when that information has become stale.
+     */
+    protected int version;
+
     /**
      * The <code>CodeSharer</code> interface is used to allow sharing of the underlying array
      * representing the code. Only the interpreter should share this representation. If there
@@ -121,9 +194,28 @@ public class CodeSegment extends Segment {
      * @param bi the interpreter that will use this segment
      */
     public CodeSegment(String name, int size, AtmelInterpreter bi) {
-        super(name, size, DEFAULT_VALUE, bi.state);
+        this(name, size, bi, null);
+    }
+
+    /**
+     * This constructor for the <code>CodeSegment</code> class creates a new code segment that contains
+     * the specified program. The segment shares the decoded instructions and the binary contents of the
+     * program with the other segments that contain the same program until either is updated.
+     * @param name the name of the segment as a string
+     * @param size the size of the segment in bytes
+     * @param bi the interpreter that will use this segment
+     * @param p the program to be loaded into the segment; null if the segment should be empty
+     */
+    public CodeSegment(String name, int size, AtmelInterpreter bi, Program p) {
+        this(name, bi, p == null ? new Image(size) : getImage(p, size), p != null);
+    }
+
+    private CodeSegment(String name, AtmelInterpreter bi, Image img, boolean shared) {
+        super(name, img.data, DEFAULT_VALUE, bi.state);
         interpreter = bi;
-        segment_instr = new LegacyInstr[size];
+        segment_instr = img.instr;
+        instrShared = shared;
+        dataShared = shared;
     }
 
     /**
@@ -147,20 +239,14 @@ public class CodeSegment extends Segment {
      * @param p the program to be loaded into the flash memory
      */
     public void load(Program p) {
-        Arrays.fill(segment_instr, NO_INSTR);
-        for (int cntr = p.program_start; cntr < p.program_end;) {
-            LegacyInstr i = (LegacyInstr)p.readInstr(cntr);
-            if (i != null) {
-                segment_instr[cntr] = i;
-                cntr += i.getSize();
-            } else {
-                cntr += 2;
-            }
-        }
-
-        // now initialize the flash data
-        for (int cntr = p.program_start; cntr < p.program_end; cntr++)
-            segment_data[cntr] = p.readProgramByte(cntr);
+        version++;
+        Image img = getImage(p, length);
+        segment_instr = img.instr;
+        segment_data = img.data;
+        instrShared = true;
+        dataShared = true;
+        if (codeSharer != null) codeSharer.update(segment_instr);
+        if (sharer != null) sharer.update(segment_data);
     }
 
     /**
@@ -239,9 +325,36 @@ public class CodeSegment extends Segment {
     }
 
     protected void writeInstr(int address, LegacyInstr i) {
+        version++;
+        if (instrShared) {
+            // copy the shared instructions before the first update
+            segment_instr = segment_instr.clone();
+            instrShared = false;
+            if (codeSharer != null) codeSharer.update(segment_instr);
+        }
         segment_instr[address] = i;
     }
 
+    protected void direct_write(int address, byte val) {
+        if (dataShared && segment_data[address] != val) {
+            // copy the shared contents before the first update
+            segment_data = segment_data.clone();
+            dataShared = false;
+            if (sharer != null) sharer.update(segment_data);
+        }
+        super.direct_write(address, val);
+    }
+
+    /**
+     * The <code>getVersion()</code> method returns the number of updates that have been made to the
+     * instructions in this segment. The value changes whenever an instruction is replaced, either by
+     * reprogramming the flash or by inserting or removing probes.
+     * @return the current version of the instructions in this segment
+     */
+    public int getVersion() {
+        return version;
+    }
+
     /**
      * The ProbedLegacyInstr class represents a wrapper around an instruction in the program that executes the
      * probes before executing the instruction and after the instruction. For most methods on the
@@ -303,9 +416,7 @@ public class CodeSegment extends Segment {
         }
     }
 
-    static LegacyInstrProperties NO_INSTR_PROPS = new LegacyInstrProperties("<none>", "<none>", 2, 1);
-
-    private class NoLegacyInstr extends LegacyInstr {
+    private static class NoLegacyInstr extends LegacyInstr {
 
         NoLegacyInstr() {
             super(NO_INSTR_PROPS);
@@ -330,7 +441,10 @@ public class CodeSegment extends Segment {
          * @param v the visitor to accept
          */
         public void accept(LegacyInstrVisitor v) {
-            throw new InterpreterError.NoSuchInstructionException(interpreter.getState().getPC());
+            if (v instanceof AtmelInterpreter) {
+                throw new InterpreterError.NoSuchInstructionException(((AtmelInterpreter)v).getState().getPC());
+            }
+            throw Util.failure("no instruction here");
         }
 
         /**
@@ -76,6 +76,23 @@ public class Segment {
         if ( defvalue != 0 ) Arrays.fill(segment_data, defvalue);
     }
 
+    /**
+     * This constructor for the <code>Segment</code> class creates a segment whose contents are stored in
+     * the specified array, which is not copied or initialized. Subclasses use it to share arrays between
+     * segments with the same initial contents.
+     * @param name the name of the segment as a string
+     * @param data the array storing the contents of the segment
+     * @param defvalue the default value of bytes in this segment
+     * @param st the state object to pass to watches when fired
+     */
+    protected Segment(String name, byte[] data, byte defvalue, State st) {
+        this.name = name;
+        this.length = data.length;
+        this.value = defvalue;
+        this.segment_data = data;
+        this.state = st;
+    }
+
     /**
      * The <code>Sharer</code> interface must be implemented by a class that needs to
      * share the underlying data representation for efficiency reasons. Whenever the
@@ -37,11 +37,14 @@ import avrora.core.LoadableProgram;
 import avrora.core.Program;
 import avrora.monitors.Monitor;
 import avrora.monitors.MonitorFactory;
+import avrora.sim.clock.EventQueue;
+import avrora.sim.clock.MainClock;
 import avrora.sim.clock.Synchronizer;
 import avrora.sim.mcu.*;
 import avrora.sim.platform.*;
 import avrora.sim.util.ClockCycleTimeout;
 import avrora.sim.util.InterruptScheduler;
+import avrora.sim.output.BufferedOutput;
 import avrora.sim.output.SimPrinter;
 import cck.help.HelpCategory;
 import cck.util.*;
@@ -113,6 +116,28 @@ public abstract class Simulation extends HelpCategory {
             "",
             "This option specifies a (binary) image file to load into EEPROM before starting "
                     + "the simulation.");
+    public final Option.Bool BUFFER_OUTPUT = newOption(
+            "buffer-output",
+            false,
+            "This option causes the output of each node in a multiple-node simulation to be "
+                    + "buffered and printed by a separate thread, rather than printed by the node "
+                    + "while holding a lock on the terminal. The lines of all nodes are printed in "
+                    + "order of simulated time, somewhat behind the simulation.");
+    public final Option.Str EVENT_QUEUE = newOption(
+            "event-queue",
+            "delta",
+            "This option selects the data structure used to store the pending events of each node. "
+                    + "The \"delta\" queue is a delta list that is efficient when few events are pending, "
+                    + "while the \"wheel\" queue is a timing wheel that inserts events in constant time "
+                    + "regardless of the number of pending events.");
+    public final Option.Str INTERPRETER = newOption(
+            "interpreter",
+            "default",
+            "This option selects the interpreter used to execute AVR programs. The \"default\" "
+                    + "interpreter advances the clock after every instruction, while the \"blocks\" interpreter "
+                    + "executes basic blocks of instructions that only access registers without advancing the "
+                    + "clock in between, which is faster but produces identical results. The \"lazy\" interpreter "
+                    + "additionally computes the arithmetic flags of the status register only when they are needed.");
 
     /**
      * The <code>GuiMonitor</code> interface represents a monitor for a simulation.
@@ -365,6 +390,7 @@ public abstract class Simulation extends HelpCategory {
     protected LinkedList<MonitorFactory> monitorFactoryList;
 
     protected Synchronizer synchronizer;
+    protected BufferedOutput output;
 
     /**
      * The constructor for the <code>Simulation</code> class creates a new
@@ -406,6 +432,16 @@ public abstract class Simulation extends HelpCategory {
      */
     public abstract void process(Options o, String[] args) throws Exception;
 
+    /**
+     * The <code>newEventQueue()</code> method creates the event queue for the main clock of a new
+     * node, as selected by the options of this simulation.
+     *
+     * @return a new, empty event queue
+     */
+    public EventQueue newEventQueue() {
+        return MainClock.newEventQueue(EVENT_QUEUE.get());
+    }
+
     public Simulator createSimulator(int id, InterpreterFactory f,
             Microcontroller mcu, Program p) {
         return new Simulator(id, this, f, mcu, p);
@@ -413,12 +449,12 @@ public abstract class Simulation extends HelpCategory {
 
     public SimPrinter getPrinter(Simulator s, String category) {
    //    if (Verbose.isVerbose(category)) {//dakdebug
-            return new SimPrinter(s, category);
+            return new SimPrinter(s, category, output);
      //   }
      //   return null;
     }
     public SimPrinter getPrinter(Simulator s) {
-        return new SimPrinter(s, "");
+        return new SimPrinter(s, "", output);
     }
 
     /**
@@ -543,6 +579,8 @@ public abstract class Simulation extends HelpCategory {
         if (running)
             return;
 
+        if (BUFFER_OUTPUT.get())
+            output = new BufferedOutput();
         instantiateNodes();
         synchronizer.start();
         running = true;
@@ -554,6 +592,8 @@ public abstract class Simulation extends HelpCategory {
                 continue;
 
             n.instantiate(); // create the simulator and simulator thread
+            if (output != null && n.thread != null)
+                output.addNode(n.simulator, n.thread);
             n.addMonitors();
         }
     }
@@ -603,7 +643,13 @@ public abstract class Simulation extends HelpCategory {
      *             if the thread is interrupt
      */
     public synchronized void join() throws InterruptedException {
-        synchronizer.join();
+        try {
+            synchronizer.join();
+        } finally {
+            // print the remaining output before anything is reported
+            if (output != null)
+                output.finish();
+        }
     }
 
     /**
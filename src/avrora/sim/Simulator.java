@@ -34,6 +34,7 @@ package avrora.sim;
 
 import avrora.arch.legacy.LegacyInstr;
 import avrora.core.Program;
+import avrora.sim.clock.EventHandle;
 import avrora.sim.clock.MainClock;
 import avrora.sim.mcu.Microcontroller;
 import avrora.sim.output.EventBuffer;
@@ -664,6 +665,28 @@ public class Simulator {
         clock.removeEvent(e);
     }
 
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the simulator with the specified delay in clock cycles. If the handle is already pending, the
+     * event is rescheduled.
+     *
+     * @param h      the handle of the event to be inserted
+     * @param cycles the number of cycles in the future at which to fire
+     */
+    public void insertEvent(EventHandle h, long cycles) {
+        clock.insertEvent(h, cycles);
+    }
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the simulator in constant time.
+     *
+     * @param h the handle of the event to remove
+     */
+    public void removeEvent(EventHandle h) {
+        clock.removeEvent(h);
+    }
+
 
     /**
      * The <code>insertExceptionWatch()</code> method registers an <code>ExceptionWatch</code> instance.
@@ -102,6 +102,24 @@ public abstract class Clock {
      */
     public abstract void removeEvent(Simulator.Event e);
 
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the clock with the specified delay in clock cycles. If the handle is already pending, the event
+     * is rescheduled. The event can later be removed in constant time through its handle.
+     *
+     * @param h      the handle of the event to be inserted
+     * @param cycles the number of cycles in the future at which to fire
+     */
+    public abstract void insertEvent(EventHandle h, long cycles);
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the clock in constant time. If the handle is not pending, this method does nothing.
+     *
+     * @param h the handle of the event to remove
+     */
+    public abstract void removeEvent(EventHandle h);
+
     /**
      * The <code>millisToCycles()</code> method converts the specified number of milliseconds to a cycle
      * count. The conversion factor used is the number of cycles per second of this clock. This method serves
@@ -53,8 +53,18 @@ public class ClockDomain {
      * @param mainHz the speed of the main clock in cycles per second
      */
     public ClockDomain(long mainHz) {
+        this(mainHz, new DeltaQueue());
+    }
+
+    /**
+     * This constructor for the <code>ClockDomain</code> class constructs the main clock with the
+     * specified event queue.
+     * @param mainHz the speed of the main clock in cycles per second
+     * @param q the event queue that stores the events of the main clock
+     */
+    public ClockDomain(long mainHz, EventQueue q) {
         clockMap = new HashMap<String, Clock>();
-        mainClock = new MainClock("main", mainHz);
+        mainClock = new MainClock("main", mainHz, q);
         clockMap.put("main", mainClock);
     }
 
@@ -114,9 +114,24 @@ public class ClockPrescaler extends Clock {
      * @param delta the number of (scaled) cycles in the future at which to fire
      */
     public void insertEvent(Simulator.Event e, long delta) {
+        driveClock.insertEvent(e, driveDelta(delta));
+    }
+
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the clock with the specified delay in (scaled) clock cycles.
+     *
+     * @param h     the handle of the event to be inserted
+     * @param delta the number of (scaled) cycles in the future at which to fire
+     */
+    public void insertEvent(EventHandle h, long delta) {
+        driveClock.insertEvent(h, driveDelta(delta));
+    }
+
+    private long driveDelta(long delta) {
         long driverCount = driveClock.getCount() - base;
         long nextTick = ((driverCount / divider) + 1) * divider;
-        driveClock.insertEvent(e, nextTick - driverCount);
+        return nextTick - driverCount;
     }
 
     /**
@@ -129,6 +144,16 @@ public class ClockPrescaler extends Clock {
         driveClock.removeEvent(e);
     }
 
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the clock in constant time.
+     *
+     * @param h the handle of the event to remove
+     */
+    public void removeEvent(EventHandle h) {
+        driveClock.removeEvent(h);
+    }
+
     /**
      * The <code>reset()</code> method resets the internal clock prescaler to zero. Thus, the prescaler's
      * previous phase is broken, and the clock signal continues with the same frequency, only that the first
@@ -54,14 +54,18 @@ import avrora.sim.Simulator;
  * than is required to store the maximum encountered simultaneous events. It does not use standard libraries,
  * casts, virtual dispatch, etc.
  */
-public class DeltaQueue {
+public class DeltaQueue extends EventQueue {
 
     /**
      * The <code>EventList</code> class represents a link in the list of events for a given <code>Link</code>
-     * in the delta queue chain.
+     * in the delta queue chain. The list is doubly linked and each element knows its link, so that an
+     * event inserted through an <code>EventHandle</code> can be removed in constant time.
      */
     private static class EventList {
         Simulator.Event event;
+        EventHandle handle;
+        Link link;
+        EventList prev;
         EventList next;
 
         /**
@@ -85,41 +89,53 @@ public class DeltaQueue {
     private class Link {
         EventList events;
 
+        Link prev;
         Link next;
         long delta;
 
         Link(Simulator.Event t, long d) {
-            events = newEventList(t, null);
+            add(t);
             delta = d;
         }
 
         void add(Simulator.Event t) {
-            events = newEventList(t, events);
+            EventList l = newEventList(t, events);
+            if (events != null) events.prev = l;
+            l.link = this;
+            events = l;
         }
 
         void remove(Simulator.Event t) {
-            EventList prev = null;
             EventList pos = events;
             while (pos != null) {
                 EventList next = pos.next;
-
                 if (pos.event == t) {
-                    if (prev == null)
-                    // remove the whole thing.
-                        events = pos.next;
-                    else
-                    // remove the "pos" link
-                        prev.next = pos.next;
-
+                    unlink(pos);
+                    release(pos.handle);
                     free(pos);
-                } else {
-                    prev = pos;
                 }
                 pos = next;
             }
         }
 
+        void unlink(EventList l) {
+            if (l.prev == null)
+                // remove the whole thing.
+                events = l.next;
+            else
+                // remove the "l" link
+                l.prev.next = l.next;
+            if (l.next != null) l.next.prev = l.prev;
+        }
+
         void fire() {
+            // events in this link are no longer pending once the link has been detached
+            for (EventList pos = events; pos != null; pos = pos.next) {
+                if (pos.handle != null) {
+                    release(pos.handle);
+                    pos.handle = null;
+                }
+            }
             for (EventList pos = events; pos != null; pos = pos.next) {
                 pos.event.fire();
             }
@@ -157,10 +173,48 @@ public class DeltaQueue {
      * @param cycles the number of clock cycles in the future
      */
     public void insertEvent(Simulator.Event t, long cycles) {
+        insert(t, cycles);
+    }
+
+    /**
+     * The <code>insertEntry()</code> method inserts the event of the specified handle and returns the
+     * element of the event list that stores it.
+     *
+     * @param h      the handle of the event to add
+     * @param cycles the number of clock cycles in the future
+     * @return the internal entry of the queue that stores the event
+     */
+    protected Object insertEntry(EventHandle h, long cycles) {
+        EventList l = insert(h.event, cycles).events;
+        l.handle = h;
+        return l;
+    }
+
+    /**
+     * The <code>removeEntry()</code> method removes the pending entry of the specified handle in constant
+     * time, removing its link from the chain if it becomes empty.
+     *
+     * @param h the handle of the event to remove
+     */
+    protected void removeEntry(EventHandle h) {
+        EventList l = (EventList)h.entry;
+        release(h);
+        Link pos = l.link;
+        pos.unlink(l);
+        free(l);
+
+        if (pos.events == null) {
+            // the link became empty because of removing this event
+            unlink(pos);
+            free(pos);
+        }
+    }
+
+    private Link insert(Simulator.Event t, long cycles) {
         // degenerate case, nothing in the queue.
         if (head == null) {
             head = newLink(t, cycles, null);
-            return;
+            return head;
         }
 
         // search for first link that is "after" this cycle delta
@@ -174,21 +228,38 @@ public class DeltaQueue {
 
         if (pos == null) {
             // end of the head
-            insertAfter(prev, t, cycles, null);
+            return insertAfter(prev, t, cycles, null);
         } else if (cycles == pos.delta) {
             // exactly matched the delta of some other event
             pos.add(t);
+            return pos;
         } else {
             // insert a new link in the chain
-            insertAfter(prev, t, cycles, pos);
+            return insertAfter(prev, t, cycles, pos);
         }
     }
 
-    private void insertAfter(Link prev, Simulator.Event t, long cycles, Link next) {
+    private Link insertAfter(Link prev, Simulator.Event t, long cycles, Link next) {
+        Link l = newLink(t, cycles, next);
+        l.prev = prev;
         if (prev != null)
-            prev.next = newLink(t, cycles, next);
+            prev.next = l;
         else
-            head = newLink(t, cycles, next);
+            head = l;
+        return l;
+    }
+
+    private void unlink(Link pos) {
+        if (pos.prev == null)
+            head = pos.next;
+        else
+            pos.prev.next = pos.next;
+
+        // fixes up the delta of the next item in the queue
+        if (pos.next != null) {
+            pos.next.prev = pos.prev;
+            pos.next.delta += pos.delta;
+        }
     }
 
     /**
@@ -199,8 +270,6 @@ public class DeltaQueue {
     public void removeEvent(Simulator.Event e) {
         if (head == null) return;
 
-        // search for first link that is "after" this cycle delta
-        Link prev = null;
         Link pos = head;
         while (pos != null) {
             Link next = pos.next;
@@ -208,20 +277,8 @@ public class DeltaQueue {
 
             if (pos.events == null) {
                 // the link became empty because of removing this event
-                if (prev == null)
-                    head = pos.next;
-                else
-                    prev.next = pos.next;
-
-                // fixes up the delta of the next item in the queue
-                if (pos.next != null) {
-                    pos.next.delta += pos.delta;
-                }
-
+                unlink(pos);
                 free(pos);
-            } else {
-                // the link did not become empty, just move on
-                prev = pos;
             }
             // advance to next link in the list
             pos = next;
@@ -264,7 +321,7 @@ public class DeltaQueue {
 
         Link h = head;
         count += h.delta;
-        head = h.next;
+        chopHead(h.next);
         h.fire();
         free(h);
     }
@@ -292,7 +349,7 @@ public class DeltaQueue {
             count += delta;
 
             // chop off head
-            head = next;
+            chopHead(next);
 
             // fire all events at head
             pos.fire();
@@ -308,6 +365,11 @@ public class DeltaQueue {
         count += cycles;
     }
 
+    private void chopHead(Link next) {
+        head = next;
+        if (next != null) next.prev = null;
+    }
+
     /**
      * The <code>getHeadDelta()</code> method gets the number of clock cycles until the first event will
      * fire.
@@ -330,17 +392,23 @@ public class DeltaQueue {
     }
 
     private void free(Link l) {
+        l.prev = null;
         l.next = freeLinks;
         freeLinks = l;
 
-        if (l.events != null) {
-            free(l.events);
-            l.events = null;
+        for (EventList pos = l.events; pos != null; ) {
+            EventList next = pos.next;
+            free(pos);
+            pos = next;
         }
+        l.events = null;
     }
 
     private void free(EventList l) {
         l.event = null;
+        l.handle = null;
+        l.link = null;
+        l.prev = null;
         l.next = freeEventLists;
         freeEventLists = l;
     }
@@ -361,6 +429,7 @@ public class DeltaQueue {
         // adjust delta in the next link in the chain
         if (next != null) {
             next.delta -= cycles;
+            next.prev = l;
         }
 
         l.next = next;
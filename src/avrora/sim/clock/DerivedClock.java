@@ -95,9 +95,24 @@ public class DerivedClock extends Clock {
      * @param delta the number of cycles in the future at which to event
      */
     public void insertEvent(Simulator.Event e, long delta) {
+        driveClock.insertEvent(e, driveDelta(delta));
+    }
+
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the clock with the specified delay in clock cycles of this clock.
+     *
+     * @param h     the handle of the event to be inserted
+     * @param delta the number of cycles in the future at which to fire
+     */
+    public void insertEvent(EventHandle h, long delta) {
+        driveClock.insertEvent(h, driveDelta(delta));
+    }
+
+    private long driveDelta(long delta) {
         long driverCount = driveClock.getCount();
         long nextTick = (long)(((long)(driverCount / divider) + delta) * divider);
-        driveClock.insertEvent(e, nextTick - driverCount);
+        return nextTick - driverCount;
     }
 
     /**
@@ -109,4 +124,14 @@ public class DerivedClock extends Clock {
     public void removeEvent(Simulator.Event e) {
         driveClock.removeEvent(e);
     }
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the clock in constant time.
+     *
+     * @param h the handle of the event to remove
+     */
+    public void removeEvent(EventHandle h) {
+        driveClock.removeEvent(h);
+    }
 }
@@ -0,0 +1,430 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.clock;
+
+import avrora.sim.*;
+import cck.util.Util;
+
+import java.io.*;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The <code>DistributedSynchronizer</code> class synchronizes the nodes of a simulation that is
+ * partitioned across several processes. Within a process, the nodes are synchronized by another
+ * synchronizer; across processes, each process sends its peers the global time that all of its nodes
+ * have reached, as well as records that other components, such as the radio medium, exchange with
+ * their counterparts in the peers. A node that waits for its neighbors also waits until every peer
+ * has reached the same time.
+ *
+ * <p>
+ * The processes are connected over loopback sockets, one per process, which process <i>n</i>
+ * listens on the <i>n</i>th port. Records and times are sent over the same connections, and a
+ * process sends the records its nodes produced before a time ahead of that time, so that a node
+ * that has waited for a time has also received every record from before it.
+ */
+public class DistributedSynchronizer extends Synchronizer {
+
+    protected static final int TIME = 0;
+    protected static final int RECORD = 1;
+    protected static final int CONNECT_TIMEOUT = 30000;
+
+    /**
+     * The <code>Handler</code> interface is implemented by the components that receive records
+     * from their counterparts in the peer processes. A handler must read exactly the record its
+     * counterpart wrote.
+     */
+    public interface Handler {
+        public void receive(DataInputStream in) throws IOException;
+    }
+
+    protected final Synchronizer local;
+    protected final int rank;
+    protected final int[] ports;
+    protected final long period;
+
+    protected final ArrayList<NodeClock> clocks;
+    protected final HashMap<SimulatorThread, NodeClock> threadMap;
+    protected final HashMap<Integer, Handler> handlers;
+    protected final Peer[] peers;
+
+    protected final ReentrantLock outLock;
+    protected ByteArrayOutputStream outBuffer;
+    protected DataOutputStream out;
+    protected Sender sender;
+
+    protected final Object peerLock = new Object();
+    protected volatile int waiting;
+
+    /**
+     * The constructor for the <code>DistributedSynchronizer</code> class creates a new synchronizer
+     * for one process of a distributed simulation.
+     * @param l the synchronizer for the nodes within this process
+     * @param r the rank of this process, which is the index of its port
+     * @param p the loopback ports of all processes
+     * @param per the maximum period in clock cycles between publications of each node's clock
+     */
+    public DistributedSynchronizer(Synchronizer l, int r, int[] p, long per) {
+        if (r < 0 || r >= p.length)
+            Util.userError("Invalid rank " + r + " for " + p.length + " processes");
+        local = l;
+        rank = r;
+        ports = p;
+        period = per;
+        clocks = new ArrayList<NodeClock>();
+        threadMap = new HashMap<SimulatorThread, NodeClock>();
+        handlers = new HashMap<Integer, Handler>();
+        peers = new Peer[p.length];
+        outLock = new ReentrantLock();
+        outBuffer = new ByteArrayOutputStream();
+        out = new DataOutputStream(outBuffer);
+    }
+
+    /**
+     * The <code>NodeClock</code> class stores the global time a single node has reached. It is
+     * also the event inserted into the node's queue to periodically publish that time.
+     */
+    protected class NodeClock implements Simulator.Event {
+        protected final MainClock clock;
+        protected volatile long published;
+
+        protected NodeClock(SimulatorThread t) {
+            clock = t.getSimulator().getClock();
+        }
+
+        public void fire() {
+            if (published != Long.MAX_VALUE) {
+                publish(clock.getCount());
+                clock.insertEvent(this, period);
+            }
+        }
+
+        protected void publish(long now) {
+            published = now;
+            if (sender != null) sender.wake();
+        }
+    }
+
+    /**
+     * The <code>Peer</code> class represents the connection from another process, and stores the
+     * global time that all of its nodes have reached.
+     */
+    protected class Peer extends Thread {
+        protected final DataInputStream in;
+        protected volatile long time = Long.MIN_VALUE;
+
+        protected Peer(Socket s) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+            setDaemon(true);
+        }
+
+        public void run() {
+            try {
+                while (true) {
+                    int kind = in.read();
+                    if (kind < 0) break;
+                    if (kind == TIME) {
+                        advance(in.readLong());
+                    } else {
+                        handlers.get((int)in.readShort()).receive(in);
+                    }
+                }
+            } catch (IOException e) {
+                // the peer has terminated
+            }
+            advance(Long.MAX_VALUE);
+        }
+
+        private void advance(long t) {
+            time = t;
+            if (waiting > 0) {
+                synchronized (peerLock) {
+                    peerLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * The <code>Sender</code> class implements the thread that sends the records and the time
+     * reached by this process to all peers.
+     */
+    protected class Sender extends Thread {
+        protected final DataOutputStream[] outs;
+        protected volatile boolean sleeping;
+        protected long sent = Long.MIN_VALUE;
+
+        protected Sender(DataOutputStream[] o) {
+            outs = o;
+            setDaemon(true);
+        }
+
+        protected void wake() {
+            if (sleeping) LockSupport.unpark(this);
+        }
+
+        public void run() {
+            while (true) {
+                // the time must be computed before the records are taken
+                long floor = getFloor();
+                byte[] records = takeRecords();
+                boolean advanced = floor > sent;
+                if (records.length > 0 || advanced) {
+                    for (int i = 0; i < outs.length; i++) {
+                        if (outs[i] != null) send(i, records, floor, advanced);
+                    }
+                    sent = floor;
+                }
+                if (floor == Long.MAX_VALUE) break;
+                if (!advanced) {
+                    sleeping = true;
+                    if (getFloor() == floor) LockSupport.parkNanos(this, 1000000);
+                    sleeping = false;
+                }
+            }
+        }
+
+        private void send(int i, byte[] records, long floor, boolean advanced) {
+            try {
+                outs[i].write(records);
+                if (advanced) {
+                    outs[i].writeByte(TIME);
+                    outs[i].writeLong(floor);
+                }
+                outs[i].flush();
+            } catch (IOException e) {
+                // the peer has terminated and no longer needs this process
+                outs[i] = null;
+            }
+        }
+    }
+
+    private long getFloor() {
+        long min = Long.MAX_VALUE;
+        for (NodeClock c : clocks) {
+            long p = c.published;
+            if (p < min) min = p;
+        }
+        return min;
+    }
+
+    private byte[] takeRecords() {
+        outLock.lock();
+        try {
+            if (outBuffer.size() == 0) return EMPTY;
+            byte[] b = outBuffer.toByteArray();
+            outBuffer.reset();
+            return b;
+        } finally {
+            outLock.unlock();
+        }
+    }
+
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * The <code>addHandler()</code> method registers a handler for the records with the specified
+     * channel number. Each process must register the same handlers before the simulation starts.
+     * @param channel the channel number of the records
+     * @param h the handler for the records
+     */
+    public synchronized void addHandler(int channel, Handler h) {
+        handlers.put(channel, h);
+    }
+
+    /**
+     * The <code>beginRecord()</code> method begins a record to be sent to the handlers of the
+     * specified channel in all peers, and returns the stream to write it to. The record must be
+     * finished with <code>endRecord()</code>. This method is called from the thread of a node,
+     * and the record is sent before any time that node reaches afterwards.
+     * @param channel the channel number of the record
+     * @return the stream to write the record to
+     */
+    public DataOutputStream beginRecord(int channel) {
+        outLock.lock();
+        try {
+            out.writeByte(RECORD);
+            out.writeShort(channel);
+        } catch (IOException e) {
+            throw Util.unexpected(e);
+        }
+        return out;
+    }
+
+    /**
+     * The <code>endRecord()</code> method finishes a record begun by <code>beginRecord()</code>.
+     */
+    public void endRecord() {
+        outLock.unlock();
+    }
+
+    /**
+     * The <code>start()</code> method connects this process to its peers and then starts the
+     * nodes within this process. It returns once every peer has connected.
+     */
+    public synchronized void start() {
+        try {
+            connect();
+        } catch (IOException e) {
+            Util.userError("Could not connect distributed simulation", e.toString());
+        }
+        for (int i = 0; i < peers.length; i++) {
+            if (peers[i] != null) peers[i].start();
+        }
+        sender.start();
+        local.start();
+    }
+
+    private void connect() throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.setReuseAddress(true);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), ports[rank]));
+        DataOutputStream[] outs = new DataOutputStream[ports.length];
+        for (int i = 0; i < ports.length; i++) {
+            if (i == rank) continue;
+            Socket s = connectTo(ports[i]);
+            outs[i] = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 65536));
+            outs[i].writeInt(rank);
+            outs[i].flush();
+        }
+        for (int i = 1; i < ports.length; i++) {
+            Socket s = server.accept();
+            s.setTcpNoDelay(true);
+            int r = new DataInputStream(s.getInputStream()).readInt();
+            peers[r] = new Peer(s);
+        }
+        server.close();
+        sender = new Sender(outs);
+    }
+
+    private Socket connectTo(int port) throws IOException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+        while (true) {
+            try {
+                Socket s = new Socket(InetAddress.getLoopbackAddress(), port);
+                s.setTcpNoDelay(true);
+                return s;
+            } catch (ConnectException e) {
+                // the peer has not started listening yet
+                if (System.currentTimeMillis() > deadline) throw e;
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException ie) {
+                    throw Util.unexpected(ie);
+                }
+            }
+        }
+    }
+
+    /**
+     * The <code>join()</code> method will block the caller until all of the threads in
+     * this process have terminated and this process has told its peers so.
+     */
+    public void join() throws InterruptedException {
+        local.join();
+        if (sender != null) sender.join();
+    }
+
+    /**
+     * The <code>pause()</code> method is not supported across processes.
+     */
+    public synchronized void pause() {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>stop()</code> method will terminate all the simulation threads in this process.
+     */
+    public synchronized void stop() {
+        local.stop();
+    }
+
+    /**
+     * The <code>synch()</code> method is not supported across processes.
+     * @param globalTime the global time in clock cycles to run all threads ahead to
+     */
+    public synchronized void synch(long globalTime) {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>addNode()</code> method adds a node to this synchronization group and to the
+     * synchronizer for the nodes within this process. This method should only be called before
+     * the <code>start()</code> method is called.
+     * @param n the simulator representing the node to add to this group
+     */
+    public synchronized void addNode(Simulation.Node n) {
+        SimulatorThread st = n.getThread();
+        if (threadMap.containsKey(st)) return;
+        local.addNode(n);
+        // the thread reports its termination to this synchronizer
+        st.setSynchronizer(this);
+        NodeClock c = new NodeClock(st);
+        clocks.add(c);
+        threadMap.put(st, c);
+        c.clock.insertEvent(c, period);
+    }
+
+    /**
+     * The <code>removeNode()</code> method removes a node from this synchronization group, so
+     * that neither the nodes in this process nor the peers wait for it any longer.
+     * @param n the simulator thread to remove from this synchronization group
+     */
+    public void removeNode(Simulation.Node n) {
+        // the node sends no more records, so the peers must not wait for it while the local
+        // synchronizer waits for its neighbors, which may themselves be waiting for the peers
+        NodeClock c = threadMap.get(n.getThread());
+        if (c != null) c.publish(Long.MAX_VALUE);
+        local.removeNode(n);
+    }
+
+    /**
+     * The <code>getHorizon()</code> method returns a global time that the neighbors of the calling
+     * node within this process and all peers are known to have reached.
+     * @return a global time that all neighbors of the calling node have reached
+     */
+    public long getHorizon() {
+        long min = local.getHorizon();
+        for (Peer p : peers) {
+            if (p != null && p.time < min) min = p.time;
+        }
+        return min;
+    }
+
+    /**
+     * The <code>waitForNeighbors()</code> method is called from within the execution of a node
+     * when that node needs to wait for its neighbors to catch up to it in execution time. The node
+     * first waits for its neighbors within this process, and then for every peer to reach the
+     * specified time.
+     * @param time the global time to wait for all neighbors to reach
+     */
+    public void waitForNeighbors(long time) {
+        SimulatorThread thread = (SimulatorThread)Thread.currentThread();
+        threadMap.get(thread).publish(thread.getSimulator().getClock().getCount());
+        local.waitForNeighbors(time);
+        if (peersReached(time)) return;
+        synchronized (peerLock) {
+            waiting++;
+            try {
+                while (!peersReached(time)) peerLock.wait();
+            } catch (InterruptedException e) {
+                throw Util.unexpected(e);
+            } finally {
+                waiting--;
+            }
+        }
+    }
+
+    private boolean peersReached(long time) {
+        for (Peer p : peers) {
+            if (p != null && p.time < time) return false;
+        }
+        return true;
+    }
+}
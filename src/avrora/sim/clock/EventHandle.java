@@ -0,0 +1,64 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+
+package avrora.sim.clock;
+
+import avrora.sim.Simulator;
+
+/**
+ * The <code>EventHandle</code> class represents a reusable, cancellable slot for scheduling an event in
+ * an event queue. When an event is inserted through its handle, the handle remembers where the event is
+ * stored in the queue, so that the event can later be removed or rescheduled in constant time, rather
+ * than by searching the whole queue as <code>removeEvent(Simulator.Event)</code> does.
+ * <p/>
+ * A handle tracks at most one pending occurrence of its event. Inserting the handle again while it is
+ * still pending reschedules the event. Once the event has been taken from the queue to be fired, the
+ * handle is no longer pending and may be inserted again, even from within the <code>fire()</code>
+ * method of the event itself.
+ * <p/>
+ * Clients are expected to allocate one handle per event, typically when the event itself is created,
+ * and then reuse it for every insertion, so that scheduling through a handle creates no garbage.
+ */
+public class EventHandle {
+
+    /**
+     * The <code>event</code> field stores a reference to the event that is scheduled through this handle.
+     */
+    public final Simulator.Event event;
+
+    /**
+     * The <code>queue</code> field stores a reference to the queue in which the event is currently
+     * pending, or null if the event is not pending.
+     */
+    EventQueue queue;
+
+    /**
+     * The <code>entry</code> field stores a reference to the internal entry of the queue that stores
+     * the pending event. Its type depends on the queue implementation.
+     */
+    Object entry;
+
+    /**
+     * The constructor for the <code>EventHandle</code> class creates a new handle for the specified
+     * event. The handle is initially not pending.
+     *
+     * @param e the event to schedule through this handle
+     */
+    public EventHandle(Simulator.Event e) {
+        event = e;
+    }
+
+    /**
+     * The <code>isPending()</code> method checks whether the event of this handle is currently in an
+     * event queue waiting to be fired.
+     *
+     * @return true if the event is scheduled and has not yet been fired or removed; false otherwise
+     */
+    public boolean isPending() {
+        return queue != null;
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+
+package avrora.sim.clock;
+
+import avrora.sim.Simulator;
+
+/**
+ * The <code>EventQueue</code> class represents a queue of events that will fire at some number of clock
+ * cycles in the future. It is the interface between a <code>MainClock</code> and the data structure that
+ * actually stores the pending events, so that different implementations (e.g. a delta list or a timing
+ * wheel) can be substituted without changing the rest of the simulator.
+ * <p/>
+ * All implementations must obey the same firing semantics: events fire in order of their absolute time;
+ * events scheduled for the same cycle fire in reverse order of insertion (last in, first out); and events
+ * inserted with a delay of zero while a group of events is firing form a new group that fires after the
+ * current one.
+ */
+public abstract class EventQueue {
+
+    /**
+     * The <code>insertEvent()</code> method adds an event to be executed in the future.
+     *
+     * @param e      the event to add
+     * @param cycles the number of clock cycles in the future
+     */
+    public abstract void insertEvent(Simulator.Event e, long cycles);
+
+    /**
+     * The <code>removeEvent()</code> method removes all occurrences of the specified event within the
+     * queue. The comparison used is reference equality, not <code>.equals()</code>.
+     *
+     * @param e the event to remove
+     */
+    public abstract void removeEvent(Simulator.Event e);
+
+    /**
+     * The <code>insertEvent()</code> method adds the event of the specified handle to be executed in the
+     * future. If the handle is already pending in a queue, its event is removed first, so that the event
+     * is rescheduled rather than inserted twice.
+     *
+     * @param h      the handle of the event to add
+     * @param cycles the number of clock cycles in the future
+     */
+    public final void insertEvent(EventHandle h, long cycles) {
+        if (h.queue != null) h.queue.removeEntry(h);
+        h.entry = insertEntry(h, cycles);
+        h.queue = this;
+    }
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle in constant
+     * time. If the handle is not pending, this method does nothing.
+     *
+     * @param h the handle of the event to remove
+     */
+    public final void removeEvent(EventHandle h) {
+        if (h.queue != null) h.queue.removeEntry(h);
+    }
+
+    /**
+     * The <code>insertEntry()</code> method inserts the event of the specified handle into this queue
+     * and returns the internal entry that stores it. The entry must remember the handle, so that the
+     * handle can be released when the event is fired or removed.
+     *
+     * @param h      the handle of the event to add
+     * @param cycles the number of clock cycles in the future
+     * @return the internal entry of the queue that stores the event
+     */
+    protected abstract Object insertEntry(EventHandle h, long cycles);
+
+    /**
+     * The <code>removeEntry()</code> method removes the pending entry of the specified handle from this
+     * queue and releases the handle.
+     *
+     * @param h the handle of the event to remove; must be pending in this queue
+     */
+    protected abstract void removeEntry(EventHandle h);
+
+    /**
+     * The <code>release()</code> method marks the specified handle as no longer pending. Queue
+     * implementations call this method whenever an entry that was inserted through a handle is fired or
+     * removed.
+     *
+     * @param h the handle to release; may be null
+     */
+    protected static void release(EventHandle h) {
+        if (h != null) {
+            h.queue = null;
+            h.entry = null;
+        }
+    }
+
+    /**
+     * The <code>advance()</code> method advances timesteps through the queue by the specified number of
+     * clock cycles, processing any events.
+     *
+     * @param cycles the number of clock cycles to advance
+     */
+    public abstract void advance(long cycles);
+
+    /**
+     * The <code>skipAhead()</code> method skips ahead to the next event in the queue and fires it.
+     */
+    public abstract void skipAhead();
+
+    /**
+     * The <code>getFirstEventTime()</code> method gets the number of clock cycles until the first event
+     * will fire.
+     *
+     * @return the number of clock cycles until the first event will fire; -1 if there are no events
+     */
+    public abstract long getFirstEventTime();
+
+    /**
+     * The <code>getCount()</code> gets the total cumulative count of all the <code>advance()</code> calls
+     * on this queue.
+     *
+     * @return the total number of cycles this queue has been advanced
+     */
+    public abstract long getCount();
+}
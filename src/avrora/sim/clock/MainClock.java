@@ -33,6 +33,7 @@
 package avrora.sim.clock;
 
 import avrora.sim.Simulator;
+import cck.util.Util;
 
 /**
  * The <code>MainClock</code> class represents a clock that has an associated delta queue. This clock is
@@ -46,16 +47,41 @@ public class MainClock extends Clock {
     /**
      * The <code>eventQueue</code> field stores a reference to the event queue for this node.
      */
-    protected final DeltaQueue eventQueue;
+    protected final EventQueue eventQueue;
 
     /**
-     * The <code>MainClock()</code> method creates a main clock with the specified name and frequency.
+     * The <code>MainClock()</code> method creates a main clock with the specified name and frequency
+     * that stores its events in a <code>DeltaQueue</code>.
      * @param n the name of this clock
      * @param hz the number of cycles per second for this clock
      */
     public MainClock(String n, long hz) {
+        this(n, hz, new DeltaQueue());
+    }
+
+    /**
+     * The <code>MainClock()</code> method creates a main clock with the specified name and frequency
+     * that uses the specified event queue.
+     * @param n the name of this clock
+     * @param hz the number of cycles per second for this clock
+     * @param q the event queue that stores the events for this clock
+     */
+    public MainClock(String n, long hz, EventQueue q) {
         super(n, hz);
-        eventQueue = new DeltaQueue();
+        eventQueue = q;
+    }
+
+    /**
+     * The <code>newEventQueue()</code> method creates a new event queue of the type with the given name.
+     * @param type the name of the event queue implementation, either <code>"delta"</code> or
+     * <code>"wheel"</code>
+     * @return a new, empty event queue
+     */
+    public static EventQueue newEventQueue(String type) {
+        if ("delta".equals(type)) return new DeltaQueue();
+        if ("wheel".equals(type)) return new TimingWheelQueue();
+        Util.userError("Unknown event queue type", type);
+        return null;
     }
 
     /**
@@ -89,6 +115,28 @@ public class MainClock extends Clock {
         eventQueue.removeEvent(e);
     }
 
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the clock with the specified delay in clock cycles. If the handle is already pending, the event
+     * is rescheduled.
+     *
+     * @param h      the handle of the event to be inserted
+     * @param cycles the number of cycles in the future at which to fire
+     */
+    public void insertEvent(EventHandle h, long cycles) {
+        eventQueue.insertEvent(h, cycles);
+    }
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the clock in constant time.
+     *
+     * @param h the handle of the event to remove
+     */
+    public void removeEvent(EventHandle h) {
+        eventQueue.removeEvent(h);
+    }
+
     /**
      * The <code>advance()</code> method advances the time of the clock by the number of cycles. This may
      * happen as the result of executing an instruction, sleeping for a time, delaying, etc. This method is
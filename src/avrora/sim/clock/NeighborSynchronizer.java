@@ -0,0 +1,375 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.clock;
+
+import avrora.sim.*;
+import avrora.sim.radio.NeighborIndex;
+import avrora.sim.radio.Topology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import cck.util.Util;
+
+/**
+ * The <code>NeighborSynchronizer</code> class implements a conservative global timer among multiple
+ * simulators without a global lock. Each node publishes its progress through global time in a
+ * volatile clock that other nodes read directly. A node that needs to wait only waits for the nodes
+ * whose transmissions it can see, as determined from the positions in the topology and the maximum
+ * distance at which the radio medium makes transmissions visible, and it is woken by those nodes
+ * individually with <code>LockSupport.unpark()</code> rather than by a <code>notifyAll()</code> on a
+ * shared monitor.
+ *
+ * <p>
+ * The lookahead on each link is the one the radio medium already passes to
+ * <code>waitForNeighbors()</code>; this class only narrows the set of links that must be respected.
+ * If no topology is given, or the range is not positive, every node is considered a neighbor of every
+ * other node. When nodes move, a <code>NeighborIndex</code> observing the topology reports the pairs
+ * that come into or go out of range, and only their neighbor sets are replaced. A node is waited for
+ * from the moment it comes within the range, which is larger than the radio range, so it is a neighbor
+ * well before its transmissions can be received.
+ */
+public class NeighborSynchronizer extends Synchronizer {
+
+    /**
+     * The <code>period</code> field stores the maximum number of cycles a node runs between
+     * publications of its clock.
+     */
+    protected final long period;
+    protected final Topology topology;
+    protected final double rangeSq;
+    protected final NeighborIndex index;
+
+    protected final ArrayList<NodeLink> links;
+    protected final HashMap<SimulatorThread, NodeLink> threadMap;
+    protected final ArrayList<NodeLink> indexed;
+
+    /**
+     * The constructor for the <code>NeighborSynchronizer</code> class creates a new synchronizer
+     * with the specified publication period that computes neighbor sets from the given topology.
+     * @param p the maximum period in clock cycles between publications of each node's clock
+     * @param t the topology that stores the position of each node, or null if all nodes are neighbors
+     * @param range the maximum distance at which a node can see the transmissions of another node
+     */
+    public NeighborSynchronizer(long p, Topology t, double range) {
+        period = p;
+        topology = range > 0 ? t : null;
+        rangeSq = range * range;
+        links = new ArrayList<NodeLink>();
+        threadMap = new HashMap<SimulatorThread, NodeLink>();
+        indexed = new ArrayList<NodeLink>();
+        if (topology != null) {
+            index = new NeighborIndex(range, new NeighborIndex.Reach() {
+                public boolean isReachable(Topology.Position a, Topology.Position b) {
+                    return distanceSq(a, b) <= rangeSq;
+                }
+            });
+            index.addListener(new NeighborIndex.Listener() {
+                public void reachabilityChanged(int a, int b, boolean reachable) {
+                    updateNeighbors(indexed.get(a), indexed.get(b), reachable);
+                }
+            });
+            topology.addObserver(index);
+        } else {
+            index = null;
+        }
+    }
+
+    /**
+     * The <code>NodeLink</code> class stores the published clock of a single node and its set
+     * of neighbors. It is also the event inserted into the node's queue to periodically publish the
+     * node's clock, so that nodes waiting on it make progress even if it never waits itself.
+     */
+    protected class NodeLink implements Simulator.Event {
+
+        protected final SimulatorThread thread;
+        protected final MainClock clock;
+
+        /**
+         * The <code>neighbors</code> field stores the nodes this node waits for and wakes. The array
+         * is never modified; when nodes move, it is replaced by a new array.
+         */
+        protected volatile NodeLink[] neighbors;
+
+        /**
+         * The <code>published</code> field stores the global time this node has reached, as
+         * last published by its own thread; it is <code>Long.MAX_VALUE</code> once the node is
+         * removed.
+         */
+        protected volatile long published;
+
+        /**
+         * The <code>waitTime</code> field stores the time this node is waiting for its neighbors
+         * to reach, or <code>Long.MAX_VALUE</code> if it is not waiting.
+         */
+        protected volatile long waitTime = Long.MAX_VALUE;
+
+        protected NodeLink(SimulatorThread t) {
+            thread = t;
+            clock = t.getSimulator().getClock();
+        }
+
+        /**
+         * The <code>fire()</code> method of this event is called by the event queue of the node
+         * periodically. It publishes the clock of the node and schedules the next publication
+         * at the earliest time a neighbor is waiting for, or one period from now.
+         */
+        public void fire() {
+            if (published != Long.MAX_VALUE) {
+                long now = clock.getCount();
+                publish(now);
+                long delta = period;
+                for (NodeLink n : neighbors) {
+                    long w = n.waitTime;
+                    if (w > now && w - now < delta) delta = w - now;
+                }
+                clock.insertEvent(this, delta);
+            }
+        }
+
+        protected void publish(long now) {
+            published = now;
+            for (NodeLink n : neighbors) {
+                if (n.waitTime <= now) LockSupport.unpark(n.thread);
+            }
+        }
+
+        protected boolean neighborsReached(long time) {
+            for (NodeLink n : neighbors) {
+                if (n.published < time) return false;
+            }
+            return true;
+        }
+    }
+
+    private boolean inRange(Simulation.Node a, Simulation.Node b) {
+        if (topology == null) return true;
+        Topology.Position pa = topology.getPosition(a.id);
+        Topology.Position pb = topology.getPosition(b.id);
+        if (pa == null || pb == null) return true;
+        return distanceSq(pa, pb) <= rangeSq;
+    }
+
+    private static double distanceSq(Topology.Position a, Topology.Position b) {
+        double dx = a.x - b.x;
+        double dy = a.y - b.y;
+        double dz = a.z - b.z;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void computeNeighbors() {
+        int size = links.size();
+        List<List<NodeLink>> lists = new ArrayList<List<NodeLink>>(size);
+        for (int i = 0; i < size; i++) lists.add(new ArrayList<NodeLink>());
+        for (int i = 0; i < size; i++) {
+            NodeLink a = links.get(i);
+            for (int j = i + 1; j < size; j++) {
+                NodeLink b = links.get(j);
+                if (inRange(a.thread.getNode(), b.thread.getNode())) {
+                    lists.get(i).add(b);
+                    lists.get(j).add(a);
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            List<NodeLink> l = lists.get(i);
+            links.get(i).neighbors = l.toArray(new NodeLink[l.size()]);
+        }
+        if (index != null) {
+            for (NodeLink link : links) {
+                Topology.Position p = topology.getPosition(link.thread.getNode().id);
+                // nodes without a position stay neighbors of every node
+                if (p == null) continue;
+                index.register(p);
+                indexed.add(link);
+            }
+        }
+    }
+
+    /**
+     * The <code>updateNeighbors()</code> method is called when two nodes come into or go out of
+     * range of each other. It replaces the neighbor arrays of both nodes and then wakes either of
+     * them that is waiting, so that it checks its wait condition again against its new neighbors.
+     * @param a the first node
+     * @param b the second node
+     * @param reachable true if the nodes came into range, false if they went out of range
+     */
+    protected void updateNeighbors(NodeLink a, NodeLink b, boolean reachable) {
+        if (reachable) {
+            a.neighbors = addNeighbor(a.neighbors, b);
+            b.neighbors = addNeighbor(b.neighbors, a);
+        } else {
+            a.neighbors = removeNeighbor(a.neighbors, b);
+            b.neighbors = removeNeighbor(b.neighbors, a);
+        }
+        if (a.waitTime != Long.MAX_VALUE) LockSupport.unpark(a.thread);
+        if (b.waitTime != Long.MAX_VALUE) LockSupport.unpark(b.thread);
+    }
+
+    private static NodeLink[] addNeighbor(NodeLink[] list, NodeLink n) {
+        for (NodeLink l : list) {
+            if (l == n) return list;
+        }
+        NodeLink[] result = Arrays.copyOf(list, list.length + 1);
+        result[list.length] = n;
+        return result;
+    }
+
+    private static NodeLink[] removeNeighbor(NodeLink[] list, NodeLink n) {
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == n) {
+                NodeLink[] result = new NodeLink[list.length - 1];
+                System.arraycopy(list, 0, result, 0, i);
+                System.arraycopy(list, i + 1, result, i, result.length - i);
+                return result;
+            }
+        }
+        return list;
+    }
+
+    /**
+     * The <code>start()</code> method starts the threads executing, and the synchronizer
+     * will add whatever synchronization to their execution that is necessary to preserve
+     * the global timing properties of simulation.
+     */
+    public synchronized void start() {
+        computeNeighbors();
+        for (NodeLink link : links) {
+            link.thread.start();
+        }
+    }
+
+    /**
+     * The <code>join()</code> method will block the caller until all of the threads in
+     * this synchronization interval have terminated, either through <code>stop()</code>
+     * being called, or terminating normally such as through a timeout.
+     */
+    public void join() throws InterruptedException {
+        for (NodeLink link : links) {
+            link.thread.join();
+        }
+    }
+
+    /**
+     * The <code>stop()</code> method will terminate all the simulation threads. It is
+     * not guaranteed to stop all the simulation threads at the same global time.
+     */
+    public synchronized void stop() {
+        for (NodeLink link : links) {
+            link.thread.getSimulator().stop();
+        }
+    }
+
+    /**
+     * The <code>pause()</code> method temporarily pauses the simulation. The nodes are
+     * not guaranteed to stop at the same global time. This method will return when all
+     * threads in the simulation have been paused and will no longer make progress until
+     * the <code>start()</code> method is called again.
+     */
+    public synchronized void pause() {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>synch()</code> method will pause all of the nodes at the same global time.
+     * This method can only be called when the simulation is paused. It will run all threads
+     * forward until the global time specified and pause them.
+     * @param globalTime the global time in clock cycles to run all threads ahead to
+     */
+    public synchronized void synch(long globalTime) {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>addNode()</code> method adds a node to this synchronization group.
+     * This method should only be called before the <code>start()</code> method is
+     * called.
+     * @param t the simulator representing the node to add to this group
+     */
+    public synchronized void addNode(Simulation.Node t) {
+        // if we already have this thread, do nothing
+        SimulatorThread st = t.getThread();
+        if (threadMap.containsKey(st)) return;
+
+        st.setSynchronizer(this);
+
+        NodeLink link = new NodeLink(st);
+        links.add(link);
+        threadMap.put(st, link);
+        link.clock.insertEvent(link, period);
+    }
+
+    /**
+     * The <code>removeNode()</code> method removes a node from this synchronization
+     * group, and wakes any nodes that might be waiting on it.
+     * @param t the simulator thread to remove from this synchronization group
+     */
+    public void removeNode(Simulation.Node t) {
+        NodeLink link = threadMap.get(t.getThread());
+        if (link != null && link.neighbors != null) {
+            link.publish(Long.MAX_VALUE);
+        } else if (link != null) {
+            link.published = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * The <code>isNeighbor()</code> method checks whether one node currently waits for another
+     * node's clock. It can only be called after the synchronizer has been started.
+     * @param a the node that waits
+     * @param b the node that may be waited for
+     * @return true if the second node is a neighbor of the first
+     */
+    public boolean isNeighbor(Simulation.Node a, Simulation.Node b) {
+        NodeLink link = threadMap.get(a.getThread());
+        NodeLink other = threadMap.get(b.getThread());
+        for (NodeLink n : link.neighbors) {
+            if (n == other) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The <code>getHorizon()</code> method returns a global time that all of the neighbors of
+     * the calling node are known to have reached, which is the earliest clock published by any
+     * of them.
+     * @return a global time that all neighbors of the calling node have reached
+     */
+    public long getHorizon() {
+        NodeLink link = threadMap.get(Thread.currentThread());
+        long min = Long.MAX_VALUE;
+        for (NodeLink n : link.neighbors) {
+            long p = n.published;
+            if (p < min) min = p;
+        }
+        return min;
+    }
+
+    /**
+     * The <code>waitForNeighbors()</code> method is called from within the execution
+     * of a node when that node needs to wait for its neighbors to catch up to it
+     * in execution time. The node will be blocked until each node that can reach it
+     * has published a clock at or beyond the specified time.
+     */
+    public void waitForNeighbors(long time) {
+        SimulatorThread thread = (SimulatorThread)Thread.currentThread();
+        NodeLink link = threadMap.get(thread);
+        long now = thread.getSimulator().getClock().getCount();
+        assert time <= now;
+        link.publish(now);
+        if (link.neighborsReached(time)) return;
+        // announce the wait before checking again so that no publication is missed
+        link.waitTime = time;
+        while (!link.neighborsReached(time)) {
+            LockSupport.park(this);
+        }
+        link.waitTime = Long.MAX_VALUE;
+    }
+
+}
@@ -0,0 +1,295 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.clock;
+
+import avrora.sim.*;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import cck.util.Util;
+
+/**
+ * The <code>PooledSynchronizer</code> class implements a global timer among multiple simulators
+ * that bounds the number of nodes executing at any one time to a fixed number of execution slots,
+ * typically the number of processors available. Each node runs until its next horizon (a fixed
+ * number of cycles in the future), at which point it publishes its progress and hands its slot to
+ * the waiting node that is furthest behind in simulation time. Nodes that must wait for their
+ * neighbors give up their slot while they are blocked.
+ *
+ * <p>
+ * Because the interpreter keeps the state of a node on the stack of the thread that runs it
+ * (for example, while a radio waits for its neighbors in the middle of an event), each node
+ * still has its own <code>SimulatorThread</code>; the synchronizer multiplexes these threads
+ * onto the execution slots so that large networks no longer oversubscribe the processors.
+ */
+public class PooledSynchronizer extends Synchronizer {
+
+    /**
+     * The <code>period</code> field stores the number of cycles each node will run before
+     * reaching its horizon and offering its slot to another node.
+     */
+    protected final long period;
+    protected final HashMap<SimulatorThread, NodeLink> threadMap;
+
+    protected final ReentrantLock lock;
+    protected final PriorityQueue<NodeLink> readyQueue;
+    protected final PriorityQueue<NodeLink> waitQueue;
+    protected int freeSlots;
+
+    /**
+     * The constructor for the <code>PooledSynchronizer</code> class creates a new synchronizer
+     * with the specified horizon period and number of execution slots.
+     * @param p the period in clock cycles that each node runs before yielding its slot
+     * @param slots the number of nodes allowed to execute concurrently; if zero or negative,
+     * the number of available processors is used
+     */
+    public PooledSynchronizer(long p, int slots) {
+        period = p;
+        freeSlots = slots > 0 ? slots : Runtime.getRuntime().availableProcessors();
+        threadMap = new HashMap<SimulatorThread, NodeLink>();
+        lock = new ReentrantLock();
+        readyQueue = new PriorityQueue<NodeLink>(11, new Comparator<NodeLink>() {
+            public int compare(NodeLink a, NodeLink b) {
+                return a.time < b.time ? -1 : a.time > b.time ? 1 : a.id - b.id;
+            }
+        });
+        waitQueue = new PriorityQueue<NodeLink>(11, new Comparator<NodeLink>() {
+            public int compare(NodeLink a, NodeLink b) {
+                return a.target < b.target ? -1 : a.target > b.target ? 1 : a.id - b.id;
+            }
+        });
+    }
+
+    /**
+     * The <code>NodeLink</code> class stores the synchronization state of a single node, and is
+     * also the event inserted into the node's queue to mark each horizon. When the event fires,
+     * the node publishes its progress and, if any other node is ready to run, yields its slot.
+     */
+    protected class NodeLink implements Simulator.Event {
+
+        protected final SimulatorThread thread;
+        protected final MainClock clock;
+        protected final Condition cond;
+        protected final int id;
+        protected long time;
+        protected long target;
+        protected boolean hasSlot;
+        protected boolean removed;
+
+        protected NodeLink(SimulatorThread t) {
+            thread = t;
+            clock = t.getSimulator().getClock();
+            cond = lock.newCondition();
+            id = t.getNode().id;
+        }
+
+        /**
+         * The <code>fire()</code> method of this event is called by the event queue of the node
+         * as it reaches its horizon. The implementation publishes the node's progress and lets
+         * the waiting node that is furthest behind run in its place.
+         */
+        public void fire() {
+            if (!removed) {
+                lock.lock();
+                try {
+                    publish(this, clock.getCount());
+                    if (!hasSlot) {
+                        acquireSlot(this);
+                    } else if (!readyQueue.isEmpty()) {
+                        releaseSlot(this);
+                        acquireSlot(this);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                clock.insertEvent(this, period);
+            }
+        }
+    }
+
+    private void publish(NodeLink link, long now) {
+        link.time = now;
+        if (waitQueue.isEmpty()) return;
+        long floor = floor();
+        while (!waitQueue.isEmpty() && waitQueue.peek().target <= floor) {
+            waitQueue.poll().cond.signal();
+        }
+    }
+
+    private long floor() {
+        long min = Long.MAX_VALUE;
+        for (NodeLink link : threadMap.values()) {
+            if (!link.removed && link.time < min) min = link.time;
+        }
+        return min;
+    }
+
+    private void acquireSlot(NodeLink link) {
+        readyQueue.add(link);
+        while (freeSlots == 0 || readyQueue.peek() != link) {
+            link.cond.awaitUninterruptibly();
+        }
+        readyQueue.poll();
+        freeSlots--;
+        link.hasSlot = true;
+        signalReady();
+    }
+
+    private void releaseSlot(NodeLink link) {
+        link.hasSlot = false;
+        freeSlots++;
+        signalReady();
+    }
+
+    private void signalReady() {
+        if (freeSlots > 0 && !readyQueue.isEmpty()) {
+            readyQueue.peek().cond.signal();
+        }
+    }
+
+    /**
+     * The <code>start()</code> method starts the threads executing, and the synchronizer
+     * will add whatever synchronization to their execution that is necessary to preserve
+     * the global timing properties of simulation.
+     */
+    public void start() {
+        for (SimulatorThread thread : threadMap.keySet()) {
+            thread.start();
+        }
+    }
+
+    /**
+     * The <code>join()</code> method will block the caller until all of the threads in
+     * this synchronization interval have terminated, either through <code>stop()</code>
+     * being called, or terminating normally such as through a timeout.
+     */
+    public void join() throws InterruptedException {
+        for (SimulatorThread thread : threadMap.keySet()) {
+            thread.join();
+        }
+    }
+
+    /**
+     * The <code>stop()</code> method will terminate all the simulation threads. It is
+     * not guaranteed to stop all the simulation threads at the same global time.
+     */
+    public void stop() {
+        for (SimulatorThread thread : threadMap.keySet()) {
+            thread.getSimulator().stop();
+        }
+    }
+
+    /**
+     * The <code>pause()</code> method temporarily pauses the simulation. The nodes are
+     * not guaranteed to stop at the same global time. This method will return when all
+     * threads in the simulation have been paused and will no longer make progress until
+     * the <code>start()</code> method is called again.
+     */
+    public void pause() {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>synch()</code> method will pause all of the nodes at the same global time.
+     * This method can only be called when the simulation is paused. It will run all threads
+     * forward until the global time specified and pause them.
+     * @param globalTime the global time in clock cycles to run all threads ahead to
+     */
+    public void synch(long globalTime) {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>addNode()</code> method adds a node to this synchronization group.
+     * This method should only be called before the <code>start()</code> method is
+     * called.
+     * @param t the simulator representing the node to add to this group
+     */
+    public void addNode(Simulation.Node t) {
+        SimulatorThread st = t.getThread();
+        lock.lock();
+        try {
+            // if we already have this thread, do nothing
+            if (threadMap.containsKey(st)) return;
+            st.setSynchronizer(this);
+            NodeLink link = new NodeLink(st);
+            threadMap.put(st, link);
+            // the first horizon acquires a slot before the node makes any real progress
+            link.clock.insertEvent(link, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The <code>removeNode()</code> method removes a node from this synchronization
+     * group, and wakes any nodes that might be waiting on it.
+     * @param t the simulator thread to remove from this synchronization group
+     */
+    public void removeNode(Simulation.Node t) {
+        lock.lock();
+        try {
+            NodeLink link = threadMap.get(t.getThread());
+            if (link == null || link.removed) return;
+            link.removed = true;
+            readyQueue.remove(link);
+            waitQueue.remove(link);
+            if (link.hasSlot) releaseSlot(link);
+            // the floor may have risen now that this node no longer counts
+            if (!waitQueue.isEmpty()) publish(link, link.time);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The <code>getHorizon()</code> method returns a global time that all of the neighbors of
+     * the calling node are known to have reached. In this implementation, it is the earliest
+     * progress published by any node.
+     * @return a global time that all nodes have reached
+     */
+    public long getHorizon() {
+        lock.lock();
+        try {
+            return floor();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The <code>waitForNeighbors()</code> method is called from within the execution
+     * of a node when that node needs to wait for its neighbors to catch up to it
+     * in execution time. The node gives up its slot while it is blocked and waits
+     * for a free slot again once the other nodes have caught up in global time.
+     */
+    public void waitForNeighbors(long time) {
+        SimulatorThread thread = (SimulatorThread)Thread.currentThread();
+        NodeLink link = threadMap.get(thread);
+        long now = thread.getSimulator().getClock().getCount();
+        assert time <= now;
+        lock.lock();
+        try {
+            publish(link, now);
+            if (floor() >= time) return;
+            if (link.hasSlot) releaseSlot(link);
+            link.target = time;
+            waitQueue.add(link);
+            while (floor() < time) {
+                link.cond.awaitUninterruptibly();
+            }
+            waitQueue.remove(link);
+            acquireSlot(link);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
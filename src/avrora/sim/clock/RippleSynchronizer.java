@@ -34,7 +34,7 @@ public class RippleSynchronizer extends Synchronizer {
     protected int meet_count;
     protected int wait_count;
 
-    protected WaitLink waitListHead;
+    protected volatile WaitLink waitListHead;
 
     /**
      * The constructor for the <code>RippleSynchronizer</code> class creates a new synchronizer
@@ -289,6 +289,16 @@ public class RippleSynchronizer extends Synchronizer {
         }
     }
 
+    /**
+     * The <code>getHorizon()</code> method returns a global time that all of the neighbors of
+     * the calling node are known to have reached. In this implementation, it is the time of the
+     * latest wait link that all threads have passed.
+     * @return a global time that all threads have reached
+     */
+    public long getHorizon() {
+        return waitListHead.time;
+    }
+
     /**
      * The <code>waitForNeighbors()</code> method is called from within the execution
      * of a node when that node needs to wait for its neighbors to catch up to it
@@ -71,6 +71,17 @@ public abstract class Synchronizer {
      */
     public abstract void waitForNeighbors(long time);
 
+    /**
+     * The <code>getHorizon()</code> method returns a global time that all of the neighbors of
+     * the calling node are known to have reached. A node that needs to wait for a time at or
+     * before the horizon does not need to call <code>waitForNeighbors()</code>. The default
+     * implementation has no such knowledge and returns <code>Long.MIN_VALUE</code>.
+     * @return a global time that all neighbors of the calling node have reached
+     */
+    public long getHorizon() {
+        return Long.MIN_VALUE;
+    }
+
     /**
      * The <code>start()</code> method starts the threads executing, and the synchronizer
      * will add whatever synchronization to their execution that is necessary to preserve
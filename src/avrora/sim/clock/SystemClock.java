@@ -90,6 +90,27 @@ public class SystemClock extends Clock {
         throw Util.unimplemented();
     }
 
+    /**
+     * The <code>insertEvent()</code> method inserts the event of the specified handle into the event queue
+     * of the clock with the specified delay in clock cycles.
+     *
+     * @param h      the handle of the event to be inserted
+     * @param cycles the number of cycles in the future at which to fire
+     */
+    public void insertEvent(EventHandle h, long cycles) {
+        throw Util.unimplemented();
+    }
+
+    /**
+     * The <code>removeEvent()</code> method removes the pending event of the specified handle from the
+     * event queue of the clock.
+     *
+     * @param h the handle of the event to remove
+     */
+    public void removeEvent(EventHandle h) {
+        throw Util.unimplemented();
+    }
+
     /**
      * The <code>getFirstEventDelta()</code> method returns the number of clock cycles until
      * the first event in the event queue will fire. This method will return -1 if there are no
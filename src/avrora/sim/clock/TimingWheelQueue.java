@@ -0,0 +1,465 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+
+package avrora.sim.clock;
+
+import avrora.sim.Simulator;
+
+/**
+ * The <code>TimingWheelQueue</code> class implements an event queue as a timing wheel for events in the
+ * near future, backed by a binary heap for events that are further away than one rotation of the wheel.
+ * Inserting an event into the wheel is constant time, regardless of the number of events pending, and
+ * inserting an event into the overflow heap is logarithmic. Events migrate from the heap into the wheel
+ * as the clock advances toward them.
+ * <p/>
+ * Each slot of the wheel stores the events for exactly one absolute clock cycle, since all events in the
+ * wheel lie within one rotation of the current time. A bitmap of occupied slots allows the next event to
+ * be found without visiting every empty slot in between.
+ * <p/>
+ * This class preserves the firing semantics of the <code>DeltaQueue</code> class exactly, including the
+ * order of events that fire in the same clock cycle. Like <code>DeltaQueue</code>, it keeps an internal
+ * free list of entries so that it does not create garbage during execution.
+ */
+public class TimingWheelQueue extends EventQueue {
+
+    /**
+     * The <code>DEFAULT_SLOTS</code> field stores the default number of slots in the wheel, i.e. the
+     * number of clock cycles in the future for which insertion is constant time.
+     */
+    public static final int DEFAULT_SLOTS = 1024;
+
+    /**
+     * The <code>Entry</code> class represents one occurrence of an event in the queue. Entries for the
+     * same clock cycle are chained together in a doubly linked list in a slot, with the most recently
+     * inserted first. In the overflow heap, the <code>seq</code> field is used to preserve the insertion
+     * order of entries with the same time, and the <code>index</code> field stores the position of the
+     * entry in the heap; it is -1 for entries in the wheel.
+     */
+    private static class Entry {
+        Simulator.Event event;
+        EventHandle handle;
+        long time;
+        long seq;
+        int index;
+        Entry prev;
+        Entry next;
+    }
+
+    protected final Entry[] slots;
+    protected final long[] bitmap;
+    protected final int mask;
+
+    protected Entry[] heap;
+    protected int heapSize;
+
+    protected Entry freeEntries;
+
+    /**
+     * The <code>count</code> field stores the total number of cycles that this queue has been advanced, i.e.
+     * the sum of all <code>advance()</code> calls.
+     */
+    protected long count;
+
+    /**
+     * The <code>first</code> field stores the absolute time of the earliest event in the queue, or
+     * <code>Long.MAX_VALUE</code> if the queue is empty.
+     */
+    protected long first;
+
+    /**
+     * The <code>horizon</code> field stores the earliest absolute time at which the queue needs to do any
+     * work, either because an event fires or because an event must migrate from the heap into the wheel.
+     * Advancing the queue to any time before the horizon is a single addition.
+     */
+    protected long horizon;
+
+    protected int wheelSize;
+    protected long seq;
+
+    /**
+     * The default constructor for the <code>TimingWheelQueue</code> class creates a new queue with the
+     * default number of slots.
+     */
+    public TimingWheelQueue() {
+        this(DEFAULT_SLOTS);
+    }
+
+    /**
+     * The constructor for the <code>TimingWheelQueue</code> class creates a new queue with a wheel of the
+     * specified number of slots.
+     *
+     * @param size the number of slots in the wheel; must be a power of two and at least 64
+     */
+    public TimingWheelQueue(int size) {
+        if (size < 64 || (size & (size - 1)) != 0)
+            throw new IllegalArgumentException("timing wheel size must be a power of two >= 64: " + size);
+        slots = new Entry[size];
+        bitmap = new long[size >> 6];
+        mask = size - 1;
+        heap = new Entry[16];
+        first = Long.MAX_VALUE;
+        horizon = Long.MAX_VALUE;
+    }
+
+    /**
+     * The <code>insertEvent()</code> method adds an event to be executed in the future.
+     *
+     * @param e      the event to add
+     * @param cycles the number of clock cycles in the future
+     */
+    public void insertEvent(Simulator.Event e, long cycles) {
+        insert(e, cycles);
+    }
+
+    /**
+     * The <code>insertEntry()</code> method inserts the event of the specified handle and returns the
+     * entry that stores it.
+     *
+     * @param h      the handle of the event to add
+     * @param cycles the number of clock cycles in the future
+     * @return the internal entry of the queue that stores the event
+     */
+    protected Object insertEntry(EventHandle h, long cycles) {
+        Entry n = insert(h.event, cycles);
+        n.handle = h;
+        return n;
+    }
+
+    /**
+     * The <code>removeEntry()</code> method removes the pending entry of the specified handle. Removal
+     * from the wheel takes constant time; removal from the overflow heap is logarithmic.
+     *
+     * @param h the handle of the event to remove
+     */
+    protected void removeEntry(EventHandle h) {
+        Entry n = (Entry)h.entry;
+        release(h);
+        if (n.index < 0) {
+            int slot = (int)n.time & mask;
+            if (n.prev == null) slots[slot] = n.next;
+            else n.prev.next = n.next;
+            if (n.next != null) n.next.prev = n.prev;
+            if (slots[slot] == null) bitmap[slot >> 6] &= ~(1L << slot);
+            wheelSize--;
+        } else {
+            heapRemove(n.index);
+        }
+        if (n.time == first) computeFirst();
+        else computeHorizon();
+        free(n);
+    }
+
+    private Entry insert(Simulator.Event e, long cycles) {
+        long time = count + cycles;
+        Entry n = newEntry(e, time);
+        if (cycles <= mask) {
+            addToSlot(n);
+            if (time < horizon) horizon = time;
+        } else {
+            heapInsert(n);
+            // the event must migrate into the wheel one rotation before it fires
+            if (time - mask < horizon) horizon = time - mask;
+        }
+        if (time < first) first = time;
+        return n;
+    }
+
+    /**
+     * The <code>removeEvent()</code> method removes all occurrences of the specified event within the
+     * queue. The comparison used is reference equality, not <code>.equals()</code>.
+     *
+     * @param e the event to remove
+     */
+    public void removeEvent(Simulator.Event e) {
+        if (wheelSize > 0) {
+            for (int w = 0; w < bitmap.length; w++) {
+                long bits = bitmap[w];
+                while (bits != 0) {
+                    int slot = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                    removeFromSlot(slot, e);
+                }
+            }
+        }
+        if (heapSize > 0) {
+            int nsize = 0;
+            for (int i = 0; i < heapSize; i++) {
+                Entry n = heap[i];
+                if (n.event == e) {
+                    release(n.handle);
+                    free(n);
+                } else {
+                    n.index = nsize;
+                    heap[nsize++] = n;
+                }
+            }
+            for (int i = nsize; i < heapSize; i++) heap[i] = null;
+            if (nsize < heapSize) {
+                heapSize = nsize;
+                for (int i = (heapSize >> 1) - 1; i >= 0; i--) siftDown(i);
+            }
+        }
+        computeFirst();
+    }
+
+    /**
+     * The <code>advance()</code> method advances timesteps through the queue by the specified number of
+     * clock cycles, processing any events.
+     *
+     * @param cycles the number of clock cycles to advance
+     */
+    public void advance(long cycles) {
+        long target = count + cycles;
+        if (target < horizon) {
+            // fast path: no event fires and nothing migrates
+            count = target;
+            return;
+        }
+        advanceSlow(target);
+    }
+
+    private void advanceSlow(long target) {
+        while (count < target && first <= target) {
+            count = first;
+            migrate();
+            fireFirst();
+        }
+        count = target;
+        migrate();
+        computeHorizon();
+    }
+
+    /**
+     * The <code>skipAhead()</code> method skips ahead to the next event in the queue and fires it.
+     */
+    public void skipAhead() {
+        if (first == Long.MAX_VALUE) {
+            // nothing in the queue
+            count++;
+            migrate();
+            return;
+        }
+        count = first;
+        migrate();
+        fireFirst();
+        computeHorizon();
+    }
+
+    /**
+     * The <code>getFirstEventTime()</code> method gets the number of clock cycles until the first event
+     * will fire.
+     *
+     * @return the number of clock cycles until the first event will fire; -1 if there are no events
+     */
+    public long getFirstEventTime() {
+        if (first == Long.MAX_VALUE) return -1;
+        return first - count;
+    }
+
+    /**
+     * The <code>getCount()</code> gets the total cumulative count of all the <code>advance()</code> calls
+     * on this queue.
+     *
+     * @return the total number of cycles this queue has been advanced
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * The <code>fireFirst()</code> method detaches the events in the slot for the current time and fires
+     * them. Events inserted for the current time while these events are firing are placed in a new list
+     * in the same slot and will fire afterwards, exactly as with a <code>DeltaQueue</code>.
+     */
+    private void fireFirst() {
+        int slot = (int)count & mask;
+        Entry pos = slots[slot];
+        slots[slot] = null;
+        bitmap[slot >> 6] &= ~(1L << slot);
+        for (Entry n = pos; n != null; n = n.next) {
+            // events in this slot are no longer pending once the slot has been detached
+            release(n.handle);
+            wheelSize--;
+        }
+        computeFirst();
+
+        while (pos != null) {
+            Entry next = pos.next;
+            Simulator.Event e = pos.event;
+            free(pos);
+            e.fire();
+            pos = next;
+        }
+    }
+
+    /**
+     * The <code>migrate()</code> method moves all events in the overflow heap that now fall within one
+     * rotation of the wheel into their slots. Entries leave the heap in insertion order for the same time
+     * so that prepending them to their slot preserves the last-in, first-out order.
+     */
+    private void migrate() {
+        long limit = count + mask;
+        while (heapSize > 0 && heap[0].time <= limit) {
+            addToSlot(heapRemoveFirst());
+        }
+    }
+
+    private void addToSlot(Entry n) {
+        int slot = (int)n.time & mask;
+        Entry head = slots[slot];
+        n.index = -1;
+        n.prev = null;
+        n.next = head;
+        if (head != null) head.prev = n;
+        slots[slot] = n;
+        bitmap[slot >> 6] |= 1L << slot;
+        wheelSize++;
+    }
+
+    private void removeFromSlot(int slot, Simulator.Event e) {
+        Entry prev = null;
+        Entry pos = slots[slot];
+        while (pos != null) {
+            Entry next = pos.next;
+            if (pos.event == e) {
+                if (prev == null) slots[slot] = next;
+                else prev.next = next;
+                if (next != null) next.prev = prev;
+                wheelSize--;
+                release(pos.handle);
+                free(pos);
+            } else {
+                prev = pos;
+            }
+            pos = next;
+        }
+        if (slots[slot] == null) bitmap[slot >> 6] &= ~(1L << slot);
+    }
+
+    private void computeFirst() {
+        if (wheelSize > 0) {
+            int slot = nextSlot((int)count & mask);
+            first = count + ((slot - count) & mask);
+        } else if (heapSize > 0) {
+            first = heap[0].time;
+        } else {
+            first = Long.MAX_VALUE;
+        }
+        computeHorizon();
+    }
+
+    private void computeHorizon() {
+        horizon = first;
+        if (heapSize > 0) {
+            long m = heap[0].time - mask;
+            if (m < horizon) horizon = m;
+        }
+    }
+
+    /**
+     * The <code>nextSlot()</code> method finds the first occupied slot at or after the specified slot,
+     * wrapping around the end of the wheel. It must only be called when the wheel is not empty.
+     *
+     * @param from the slot at which to start searching
+     * @return the index of the next occupied slot
+     */
+    private int nextSlot(int from) {
+        int w = from >> 6;
+        long bits = bitmap[w] & (-1L << from);
+        for (int i = 0; i <= bitmap.length; i++) {
+            if (bits != 0) return (w << 6) + Long.numberOfTrailingZeros(bits);
+            w = (w + 1) % bitmap.length;
+            bits = bitmap[w];
+        }
+        throw new IllegalStateException("timing wheel bitmap inconsistent");
+    }
+
+    private boolean before(Entry a, Entry b) {
+        return a.time < b.time || (a.time == b.time && a.seq < b.seq);
+    }
+
+    private void heapInsert(Entry n) {
+        if (heapSize == heap.length) {
+            Entry[] nheap = new Entry[heap.length * 2];
+            System.arraycopy(heap, 0, nheap, 0, heap.length);
+            heap = nheap;
+        }
+        heap[heapSize] = n;
+        siftUp(heapSize++);
+    }
+
+    private Entry heapRemoveFirst() {
+        Entry n = heap[0];
+        heapRemove(0);
+        return n;
+    }
+
+    private void heapRemove(int i) {
+        heapSize--;
+        Entry last = heap[heapSize];
+        heap[heapSize] = null;
+        if (i < heapSize) {
+            heap[i] = last;
+            last.index = i;
+            siftDown(i);
+            siftUp(last.index);
+        }
+    }
+
+    private void siftUp(int i) {
+        Entry n = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!before(n, heap[parent])) break;
+            heap[i] = heap[parent];
+            heap[i].index = i;
+            i = parent;
+        }
+        heap[i] = n;
+        n.index = i;
+    }
+
+    private void siftDown(int i) {
+        Entry n = heap[i];
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && before(heap[child + 1], heap[child])) child++;
+            if (!before(heap[child], n)) break;
+            heap[i] = heap[child];
+            heap[i].index = i;
+            i = child;
+        }
+        heap[i] = n;
+        n.index = i;
+    }
+
+    private Entry newEntry(Simulator.Event e, long time) {
+        Entry n;
+        if (freeEntries == null) {
+            // if none in the free list, allocate one
+            n = new Entry();
+        } else {
+            // grab one from the free list
+            n = freeEntries;
+            freeEntries = n.next;
+        }
+        n.event = e;
+        n.time = time;
+        n.seq = seq++;
+        n.next = null;
+        return n;
+    }
+
+    private void free(Entry n) {
+        n.event = null;
+        n.handle = null;
+        n.prev = null;
+        n.next = freeEntries;
+        freeEntries = n;
+    }
+}
@@ -362,7 +362,7 @@ public class ATMega32 extends ATMegaFamily {
 
             protected void decode(byte val) {
                 // TODO: if there is a change, remove ticker and requeue?
-                timerClock = Arithmetic.getBit(val, AS2) ? externalClock : mainClock;
+                setTimerClock(Arithmetic.getBit(val, AS2) ? externalClock : mainClock);
             }
         }
     }
@@ -269,7 +269,7 @@ public abstract class ATMegaClassic extends ATMegaFamilyNew {
 
             protected void decode(byte val) {
                 // TODO: if there is a change, remove ticker and requeue?
-                timerClock = Arithmetic.getBit(val, AS0) ? externalClock : mainClock;
+                setTimerClock(Arithmetic.getBit(val, AS0) ? externalClock : mainClock);
             }
 
         }
@@ -286,7 +286,7 @@ public abstract class ATMegaFamily extends AtmelMicrocontroller {
 
             protected void decode(byte val) {
                 // TODO: if there is a change, remove ticker and requeue?
-                timerClock = Arithmetic.getBit(val, AS0) ? externalClock : mainClock;
+                setTimerClock(Arithmetic.getBit(val, AS0) ? externalClock : mainClock);
             }
 
 
@@ -350,8 +350,8 @@ public abstract class ATMegaFamily extends AtmelMicrocontroller {
 
             protected void decode(byte val) {
                 // TODO: if there is a change, remove ticker and requeue?
-                if (Arithmetic.getBit(val, EXCLK)) timerClock = externalClock; else 
-                timerClock = Arithmetic.getBit(val, AS2) ? externalClock : mainClock;
+                if (Arithmetic.getBit(val, EXCLK)) setTimerClock(externalClock); else 
+                setTimerClock(Arithmetic.getBit(val, AS2) ? externalClock : mainClock);
             }
 
         }
@@ -68,6 +68,7 @@ public abstract class ATMegaTimer extends AtmelInternalDevice {
 
     protected final Clock externalClock;
     Clock timerClock;
+    Clock tickClock; // the clock in which the next tick is scheduled
     int timerNumber;
     /*
      * Fields shared by all ATMega timers.
@@ -99,6 +100,17 @@ public abstract class ATMegaTimer extends AtmelInternalDevice {
 
         externalClock = m.getClock("external");
         timerClock = mainClock;
+        tickClock = mainClock;
+    }
+
+    /**
+     * The <code>setTimerClock()</code> method changes the clock source of this timer. The change
+     * takes effect after the next tick of the timer, which is still performed in the old clock.
+     *
+     * @param c the new clock source
+     */
+    protected void setTimerClock(Clock c) {
+        timerClock = c;
     }
 
     private RegisterSet.Field newPeriodField() {
@@ -132,19 +144,20 @@ public abstract class ATMegaTimer extends AtmelInternalDevice {
         if (nPeriod == 0) {
             if (timerEnabled) {
                 if (devicePrinter != null) devicePrinter.println(name + " disabled");
-                timerClock.removeEvent(mode);
+                tickClock.removeEvent(mode);
                 timerEnabled = false;
             }
             return;
         }
         if (timerEnabled) {
-            timerClock.removeEvent(mode);
+            tickClock.removeEvent(mode);
         }
         if (devicePrinter != null)
             devicePrinter.println(name + " enabled: period = " + nPeriod + " mode = " + WGMn.value);
         period = nPeriod;
         timerEnabled = true;
-        timerClock.insertEvent(mode, period);
+        tickClock = timerClock;
+        tickClock.insertEvent(mode, period);
 
     }
 
@@ -346,7 +359,10 @@ public abstract class ATMegaTimer extends AtmelInternalDevice {
             // XXX: verify the timing on this.
             compareMatchBlocked = false;
 
-            if (period != 0) timerClock.insertEvent(this, period);
+            if (period != 0) {
+                tickClock = timerClock;
+                tickClock.insertEvent(this, period);
+            }
         }
 
         protected void registerWritten(BufferedRegister reg) {
@@ -89,8 +89,7 @@ public class ReprogrammableCodeSegment extends CodeSegment {
         public CodeSegment newCodeSegment(String name, AtmelInterpreter bi, Program p) {
             CodeSegment cs;
             if ( p != null ) {
-                cs = new ReprogrammableCodeSegment(name, p.program_end, bi, pagesize);
-                cs.load(p);
+                cs = new ReprogrammableCodeSegment(name, p.program_end, bi, pagesize, p);
             } else {
                 cs = new ReprogrammableCodeSegment(name, size, bi, pagesize);
             }
@@ -211,7 +210,21 @@ public class ReprogrammableCodeSegment extends CodeSegment {
      * @param pagesize the size of the page offset field of an address into the flash
      */
     public ReprogrammableCodeSegment(String name, int size, AtmelInterpreter bi, int pagesize) {
-        super(name, size, bi);
+        this(name, size, bi, pagesize, null);
+    }
+
+    /**
+     * This constructor for the <code>ReprogrammableCodeSegment</code> creates a new instance that contains
+     * the specified program. The decoded program is shared with other code segments containing the same
+     * program until the program is reprogrammed or probes are inserted.
+     * @param name the name of the segment as a string
+     * @param size the size of the segment in bytes
+     * @param bi the the interpreter the code segment is attached to
+     * @param pagesize the size of the page offset field of an address into the flash
+     * @param p the program to load into the segment; null if the segment should be empty
+     */
+    public ReprogrammableCodeSegment(String name, int size, AtmelInterpreter bi, int pagesize, Program p) {
+        super(name, size, bi, p);
         SPMCSR = new SPMCSR_reg();
         mainClock = bi.getMainClock();
         this.pagesize = pagesize;
@@ -36,12 +36,19 @@ import avrora.sim.RWRegister;
 import avrora.sim.Simulator;
 import avrora.sim.state.BooleanView;
 import avrora.sim.clock.Clock;
+import avrora.sim.clock.EventHandle;
 
 /**
  * The <code>Timer16Bit</code> class emulates the functionality and behavior of a 16-bit timer on the
  * Atmega128. It has several control and data registers and can fire up to six different interrupts
  * depending on the mode that it has been put into. It has three output compare units and one input
  * capture unit. UNIMPLEMENTED: input capture unit.
+ * <p/>
+ * In the normal, CTC, and fast PWM modes, the timer does not fire an event for every increment of the
+ * counter. Instead, the value of TCNTn is computed on demand from the clock count, and an event is only
+ * scheduled for the next tick where the counter reaches TOP, MAX, or the value of an output compare
+ * register. Writes to TCNTn, OCRnx, ICRn and the mode and clock select bits bring the count up to date
+ * and recompute that tick.
  *
  * @author Daniel Lee
  */
@@ -184,7 +191,7 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
     final PairedRegister TCNTn_reg;
 
     final OutputCompareUnit[] compareUnits;
-    final Simulator.Event[] tickers;
+    final Ticker[] tickers;
 
     final RWRegister highTempReg;
 
@@ -192,7 +199,8 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
     final RWRegister ICRnL_reg;
     final PairedRegister ICRn_reg;
 
-    Simulator.Event ticker;
+    Ticker ticker;
+    Clock tickClock; // the clock in which the current ticker is scheduled
 
     final RegisterSet.Field WGMn;
     final RegisterSet.Field CSn;
@@ -203,6 +211,12 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
 
     boolean blockCompareMatch;
 
+    /* when counting lazily, TCNTn holds the count for the tick at nextTick,
+     * and the ticker is scheduled for the tick at boundary. */
+    boolean counting;
+    long nextTick;
+    long boundary;
+
     protected final Clock externalClock;
     Clock timerClock;
 
@@ -284,7 +298,7 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
         installIOReg("ICR"+n+"H", highTempReg);
         installIOReg("ICR"+n+"L", ICRn_reg);
 
-        tickers = new Simulator.Event[16];
+        tickers = new Ticker[16];
         installTickers();
     }
 
@@ -315,8 +329,11 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
     }
 
     void captureInput() {
+        updateCount();
         ICRnL_reg.write(TCNTnL_reg.value);
         ICRnH_reg.write(TCNTnH_reg.value);
+        // ICRn may be the TOP value of the current mode
+        if (counting) scheduleBoundary();
         xTIFR_reg.flagBit(ICFn);
         interpreter.getInterruptTable().post(inputCaptureInterrupt);
     }
@@ -360,13 +377,18 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
         }
 
         public void write(byte val) {
+            updateCount();
             low.write(val);
             high.write(highTempReg.read());
+            // the written register may be TCNTn or a compare value, so recompute the next boundary
+            if (counting) scheduleBoundary();
         }
 
         public byte read() {
+            // the low byte is read first, since reading TCNTnL brings the count up to date
+            byte val = low.read();
             highTempReg.write(high.read());
-            return low.read();
+            return val;
         }
 
     }
@@ -409,6 +431,16 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
      * blocking for one timer period.
      */
     protected class TCNTnRegister extends RWRegister {
+        public byte read() {
+            updateCount();
+            return value;
+        }
+
+        public int getValue() {
+            updateCount();
+            return value;
+        }
+
         /* expr of the blockCompareMatch corresponding to
          * this register in the array of boolean flags.  */
         public void write(byte val) {
@@ -422,22 +454,81 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
         if (nPeriod == 0) {
             // disable the timer.
             //if (devicePrinter != null) devicePrinter.println("Timer" + n + " disabled");
-            if (ticker != null) timerClock.removeEvent(ticker);
+            stopTicker();
         } else {
             // enable the timer.
             //if (devicePrinter != null)
             //    devicePrinter.println("Timer" + n + " enabled: period = " + nPeriod + " mode = " + WGMn.value);
-            if (ticker != null) timerClock.removeEvent(ticker);
+            stopTicker();
             ticker = tickers[WGMn.value];
             period = nPeriod;
-            timerClock.insertEvent(ticker, period);
+            scheduleTicker(timerClock);
         }
     }
 
-    public void resetTicker(Simulator.Event e) {
-        if (ticker != null) simulator.removeEvent(ticker);
+    public void resetTicker(Ticker e) {
+        stopTicker();
         ticker = e;
-        simulator.insertEvent(e, period);
+        scheduleTicker(mainClock);
+    }
+
+    /**
+     * The <code>updateCount()</code> method brings the value of TCNTn up to date when the timer is
+     * counting lazily. It performs all the ticks that have elapsed since the last update, except for the
+     * tick at the boundary, which is left to the ticker itself.
+     */
+    void updateCount() {
+        if (counting) {
+            long now = tickClock.getCount();
+            if (now >= boundary) now = boundary - 1;
+            if (now >= nextTick) {
+                long ticks = (now - nextTick) / period + 1;
+                int count = (((TCNTnH_reg.value & 0xff) << 8) | (TCNTnL_reg.value & 0xff)) + (int)ticks;
+                TCNTnH_reg.value = (byte)(count >> 8);
+                TCNTnL_reg.value = (byte)count;
+                nextTick += ticks * period;
+                // the tick after a write to TCNTn has passed
+                blockCompareMatch = false;
+            }
+        }
+    }
+
+    /**
+     * The <code>scheduleBoundary()</code> method computes the next tick at which the counter reaches
+     * TOP, MAX, or the value of one of the output compare registers, and schedules the ticker for that
+     * tick. Until then, the counter simply increments.
+     */
+    void scheduleBoundary() {
+        int count = ((TCNTnH_reg.value & 0xff) << 8) | (TCNTnL_reg.value & 0xff);
+        int ticks = distance(count, ticker.top(), MAX - count);
+        for ( int cntr = 0; cntr < compareUnits.length; cntr++ )
+            ticks = distance(count, compareUnits[cntr].read(), ticks);
+        boundary = nextTick + ticks * period;
+        tickClock.insertEvent(ticker.handle, Math.max(0, boundary - tickClock.getCount()));
+    }
+
+    private static int distance(int count, int target, int ticks) {
+        if (target >= count && target - count < ticks) return target - count;
+        return ticks;
+    }
+
+    private void scheduleTicker(Clock clock) {
+        tickClock = clock;
+        counting = ticker.lazy && period != 0;
+        if (counting) {
+            nextTick = tickClock.getCount() + period;
+            scheduleBoundary();
+        } else {
+            tickClock.insertEvent(ticker.handle, period);
+        }
+    }
+
+    private void stopTicker() {
+        if (ticker != null) {
+            updateCount();
+            counting = false;
+            tickClock.removeEvent(ticker.handle);
+        }
     }
 
     /**
@@ -476,13 +567,39 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
         }
     }
 
-    protected class Mode_Reserved implements Simulator.Event {
+    /**
+     * The <code>Ticker</code> class is the base class of the events that implement the behavior of the
+     * timer in each mode. A lazy ticker is only fired at ticks where the counter reaches TOP, MAX, or
+     * the value of an output compare register.
+     */
+    protected abstract class Ticker implements Simulator.Event {
+        final EventHandle handle = new EventHandle(this);
+        final boolean lazy;
+
+        protected Ticker(boolean lazy) {
+            this.lazy = lazy;
+        }
+
+        int top() {
+            return MAX;
+        }
+    }
+
+    protected class Mode_Reserved extends Ticker {
+        protected Mode_Reserved() {
+            super(false);
+        }
+
         public void fire() {
             // do nothing in the reserved mode.
         }
     }
 
-    protected class Mode_Normal implements Simulator.Event {
+    protected class Mode_Normal extends Ticker {
+        protected Mode_Normal() {
+            super(true);
+        }
+
         public void fire() {
             int ncount = read16(TCNTnH_reg, TCNTnL_reg);
             tickerStart(ncount);
@@ -493,19 +610,24 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    protected class Mode_CTC implements Simulator.Event {
+    protected class Mode_CTC extends Ticker {
         protected final RWRegister compareRegHigh;
         protected final RWRegister compareRegLow;
 
         public Mode_CTC(RWRegister compareRegH, RWRegister compareRegL) {
+            super(true);
             compareRegHigh = compareRegH;
             compareRegLow = compareRegL;
         }
 
+        int top() {
+            return compareRegHigh != null ? read16(compareRegHigh, compareRegLow) : MAX;
+        }
+
         public void fire() {
             // TODO: set OCFnA/ICFn flag when OCRnA/ICRn define TOP and TOP is reached
             int ncount = read16(TCNTnH_reg, TCNTnL_reg);
@@ -521,20 +643,26 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    protected class Mode_FastPWM implements Simulator.Event {
+    protected class Mode_FastPWM extends Ticker {
         protected final int top;
         protected final RWRegister compareRegHigh;
         protected final RWRegister compareRegLow;
 
         protected Mode_FastPWM(int t, RWRegister compareRegH, RWRegister compareRegL) {
+            super(true);
             top = t;
             compareRegHigh = compareRegH;
             compareRegLow = compareRegL;
         }
+
+        int top() {
+            return compareRegHigh != null ? read16(compareRegHigh, compareRegLow) : top;
+        }
+
         public void fire() {
             // TODO: set OCFnA/ICFn flag when OCRnA/ICRn define TOP and TOP is reached
             int ncount = read16(TCNTnH_reg, TCNTnL_reg);
@@ -555,16 +683,17 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    protected class Mode_PWM_PNF implements Simulator.Event {
+    protected class Mode_PWM_PNF extends Ticker {
         protected byte increment = 1;
         protected final RWRegister compareRegHigh;
         protected final RWRegister compareRegLow;
 
         protected Mode_PWM_PNF(RWRegister compareRegH, RWRegister compareRegL) {
+            super(false);
             compareRegHigh = compareRegH;
             compareRegLow = compareRegL;
         }
@@ -591,17 +720,18 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
                 ncount = BOTTOM-1;
             }
             ncount += increment;
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    protected class Mode_PWMPhaseCorrect implements Simulator.Event {
+    protected class Mode_PWMPhaseCorrect extends Ticker {
         protected byte increment = 1;
         protected final int top;
         protected final RWRegister compareRegHigh;
         protected final RWRegister compareRegLow;
 
         protected Mode_PWMPhaseCorrect(int t, RWRegister compareRegH, RWRegister compareRegL) {
+            super(false);
             top = t;
             compareRegHigh = compareRegH;
             compareRegLow = compareRegL;
@@ -628,7 +758,7 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
                 ncount = BOTTOM-1;
             }
             ncount += increment;
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
@@ -640,12 +770,12 @@ public abstract class Timer16Bit extends AtmelInternalDevice {
         }
     }
     
-    private void tickerFinish(Simulator.Event ticker, int ncount) {
+    private void tickerFinish(int ncount) {
         write16(ncount, TCNTnH_reg, TCNTnL_reg);
         // previous write sets the compare, so reset it now
         blockCompareMatch = false;
 
-        if (period != 0) timerClock.insertEvent(ticker, period);
+        if (period != 0) scheduleTicker(timerClock);
     }
 
     private void flushOCRnx() {
@@ -37,9 +37,15 @@ import avrora.sim.Simulator;
 import avrora.sim.state.RegisterView;
 import avrora.sim.state.RegisterUtil;
 import avrora.sim.clock.Clock;
+import avrora.sim.clock.EventHandle;
 
 /**
  * Base class of 8-bit timers. Timer0 and Timer2 are subclasses of this.
+ * <p/>
+ * In the non-PWM modes and in fast PWM mode, the timer does not fire an event for every increment of
+ * the counter. Instead, the value of TCNTn is computed on demand from the clock count, and an event is
+ * only scheduled for the next tick where something happens, i.e. a compare match or an overflow. Writes
+ * to TCNTn, OCRn and TCCRn bring the count up to date and recompute that tick.
  *
  * @author Daniel Lee
  */
@@ -59,14 +65,21 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
 
     protected final int n; // number of timer. 0 for Timer0, 2 for Timer2
 
-    protected Simulator.Event ticker;
+    protected Ticker ticker;
     protected final Clock externalClock;
     protected Clock timerClock;
+    protected Clock tickClock; // the clock in which the current ticker is scheduled
 
     protected int period;
 
+    /* when counting lazily, TCNTn holds the count for the tick at nextTick,
+     * and the ticker is scheduled for the tick at boundary. */
+    boolean counting;
+    long nextTick;
+    long boundary;
+
     final AtmelMicrocontroller.Pin outputComparePin,outputComparePinB;
-    final Simulator.Event[] tickers;
+    final Ticker[] tickers;
 
     /* pg. 93 of manual. Block compareMatch for one period after
      * TCNTn is written to. */
@@ -130,7 +143,7 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
         this.n = n;
         this.periods = periods;
 
-        tickers = new Simulator.Event[4];
+        tickers = new Ticker[4];
         installTickers();
     }
 
@@ -141,6 +154,73 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
         tickers[MODE_PWM] = new Mode_PWM();
     }
 
+    /**
+     * The <code>setTimerClock()</code> method changes the clock source of this timer. The change
+     * takes effect after the next tick of the timer, which is still performed in the old clock.
+     *
+     * @param c the new clock source
+     */
+    protected void setTimerClock(Clock c) {
+        timerClock = c;
+        if (counting) {
+            updateCount();
+            scheduleBoundary();
+        }
+    }
+
+    /**
+     * The <code>updateCount()</code> method brings the value of TCNTn up to date when the timer is
+     * counting lazily. It performs all the ticks that have elapsed since the last update, except for the
+     * tick at the boundary, which is left to the ticker itself.
+     */
+    void updateCount() {
+        if (counting) {
+            long now = tickClock.getCount();
+            if (now >= boundary) now = boundary - 1;
+            if (now >= nextTick) {
+                long ticks = (now - nextTick) / period + 1;
+                TCNTn_reg.value = (byte)(TCNTn_reg.value + ticks);
+                nextTick += ticks * period;
+                // the tick after a write to TCNTn has passed
+                blockCompareMatch = false;
+            }
+        }
+    }
+
+    /**
+     * The <code>scheduleBoundary()</code> method computes the next tick at which the counter reaches
+     * either OCRn or MAX and schedules the ticker for that tick. Until then, the counter simply
+     * increments.
+     */
+    void scheduleBoundary() {
+        int count = TCNTn_reg.value & 0xff;
+        int compare = OCRn_reg.read() & 0xff;
+        int ticks = compare >= count ? compare - count : MAX - count;
+        // perform the next tick in the old clock if the clock source has changed
+        if (tickClock != timerClock) ticks = 0;
+        boundary = nextTick + (long)ticks * period;
+        tickClock.insertEvent(ticker.handle, Math.max(0, boundary - tickClock.getCount()));
+    }
+
+    private void scheduleTicker() {
+        tickClock = timerClock;
+        counting = ticker.lazy;
+        if (counting) {
+            nextTick = tickClock.getCount() + period;
+            scheduleBoundary();
+        } else {
+            tickClock.insertEvent(ticker.handle, period);
+        }
+    }
+
+    private void stopTicker() {
+        if (ticker != null) {
+            updateCount();
+            counting = false;
+            tickClock.removeEvent(ticker.handle);
+        }
+    }
+
     protected void compareMatch() {
    //   if (devicePrinter != null)  devicePrinter.println("Timer" + n + ".compareMatch (enabled: " + TIMSK_reg.readBit(OCIEn) + ')');
         // set the compare flag for this timer
@@ -163,9 +243,21 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
      */
     protected class TCNTnRegister extends RWRegister {
 
+        public byte read() {
+            updateCount();
+            return value;
+        }
+
+        public int getValue() {
+            updateCount();
+            return value;
+        }
+
         public void write(byte val) {
+            updateCount();
             value = val;
             blockCompareMatch = true;
+            if (counting) scheduleBoundary();
         }
 
     }
@@ -183,6 +275,7 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
         }
 
         public void write(byte val) {
+            updateCount();
             super.write(val);
             if (TCCRn_reg != null) {
                 if (TCCRn_reg.mode == MODE_NORMAL || TCCRn_reg.mode == MODE_CTC) {
@@ -192,6 +285,7 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
                 flush();
            // TODO: handle AB
             }
+            if (counting) scheduleBoundary();
         }
 
         public byte readBuffer() {
@@ -237,13 +331,13 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
             int nscale = CSn.getValue();
             // if the scale or the mode has changed
             if (nmode != mode || nscale != scale) {
-                if (ticker != null) timerClock.removeEvent(ticker);
+                stopTicker();
                 mode = nmode;
                 scale = nscale;
                 ticker = tickers[mode];
                 period = periods[scale];
                 if (period != 0) {
-                    timerClock.insertEvent(ticker, period);
+                    scheduleTicker();
                 }
                 if (false && devicePrinter != null) {
                   if (period != 0)
@@ -330,13 +424,13 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
          //   System.out.println("mode is " + nmode + " CSn is " + CSn.getValue());
             // if the scale or the mode has changed
             if (nmode != mode || nscale != scale) {
-                if (ticker != null) timerClock.removeEvent(ticker);
+                stopTicker();
                 mode = nmode;
                 scale = nscale;
                 ticker = tickers[mode];
                 period = periods[scale];
                 if (period != 0) {
-                    timerClock.insertEvent(ticker, period);
+                    scheduleTicker();
                 }
                 if (false && devicePrinter != null) {
                   if (period != 0)
@@ -384,7 +478,24 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
         }
     }
 
-    class Mode_Normal implements Simulator.Event {
+    /**
+     * The <code>Ticker</code> class is the base class of the events that implement the behavior of the
+     * timer in each mode. A lazy ticker is only fired at ticks where the counter reaches OCRn or MAX.
+     */
+    abstract class Ticker implements Simulator.Event {
+        final EventHandle handle = new EventHandle(this);
+        final boolean lazy;
+
+        Ticker(boolean lazy) {
+            this.lazy = lazy;
+        }
+    }
+
+    class Mode_Normal extends Ticker {
+        Mode_Normal() {
+            super(true);
+        }
+
         public void fire() {
             int ncount = (int)TCNTn_reg.read() & 0xff;
         // System.out.println("noamalfire, ncount = " + ncount + " BOTTOM " + BOTTOM + " MAX " + MAX);
@@ -396,12 +507,17 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    class Mode_PWM implements Simulator.Event {
+    class Mode_PWM extends Ticker {
         protected byte increment = 1;
+
+        Mode_PWM() {
+            super(false);
+        }
+
         public void fire() {
             // TODO: OCn handling
             int ncount = (int)TCNTn_reg.read() & 0xff;
@@ -417,11 +533,15 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
                 ncount = BOTTOM;
             }
             ncount += increment;
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    class Mode_CTC implements Simulator.Event {
+    class Mode_CTC extends Ticker {
+        Mode_CTC() {
+            super(true);
+        }
+
         public void fire() {
             int ncount = (int)TCNTn_reg.read() & 0xff;
             tickerStart(ncount);
@@ -437,11 +557,15 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
 
-    class Mode_FastPWM implements Simulator.Event {
+    class Mode_FastPWM extends Ticker {
+        Mode_FastPWM() {
+            super(true);
+        }
+
         public void fire() {
             // TODO: OCn handling
             int ncount = (int)TCNTn_reg.read() & 0xff;
@@ -454,7 +578,7 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
             else {
                 ncount++;
             }
-            tickerFinish(this, ncount);
+            tickerFinish(ncount);
         }
     }
     
@@ -464,11 +588,10 @@ public abstract class Timer8Bit extends AtmelInternalDevice {
       }
     }
     
-    private void tickerFinish(Simulator.Event ticker, int ncount) {
-        TCNTn_reg.write((byte)ncount);
-        // previous write sets the compare, so reset it now
+    private void tickerFinish(int ncount) {
+        TCNTn_reg.value = (byte)ncount;
         blockCompareMatch = false;
 
-        timerClock.insertEvent(ticker, period);
+        scheduleTicker();
     }
 }
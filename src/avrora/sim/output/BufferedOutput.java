@@ -0,0 +1,326 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.output;
+
+import avrora.sim.Simulator;
+import cck.text.Terminal;
+import cck.util.Util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The <code>BufferedOutput</code> class collects the output of the nodes in a simulation without
+ * letting them block each other on the terminal. Each node appends its lines, stamped with the time at
+ * which they were printed, into buffers of its own; a single drain thread takes the buffers, merges the
+ * lines of all nodes in order of simulated time, and prints them. Lines printed at the same time are
+ * ordered by node and then in the order they were printed, so the output no longer depends on how the
+ * threads were scheduled.
+ *
+ * <p>
+ * Since a node may print a line at any time it has not yet passed, the drain can only print lines
+ * earlier than the time every node has reached. Each node therefore publishes its buffers and its time
+ * periodically from an event in its own queue, even if it prints nothing. Lines printed by threads
+ * other than the node's own, such as a serial forwarder, are printed immediately.
+ */
+public class BufferedOutput {
+
+    /**
+     * The <code>PERIOD</code> field stores the number of cycles between publications of each
+     * node's buffers and time, which bounds how far behind the simulation the output can fall.
+     */
+    public static final long PERIOD = 10000;
+
+    protected static final long MIN_WAIT = 1000000;
+    protected static final long MAX_WAIT = 50000000;
+    protected static final int CHUNK_LINES = 256;
+    protected static final int CHUNK_CHARS = 16 * 1024;
+
+    protected final ConcurrentHashMap<Simulator, Channel> channelMap;
+    protected final ArrayList<Channel> channels;
+    protected final Thread drain;
+    protected final StringBuilder out;
+    protected volatile boolean closing;
+
+    /**
+     * The <code>Chunk</code> class stores a number of lines printed by one node, with the time
+     * at which each line was printed.
+     */
+    protected static class Chunk {
+        protected final long[] times;
+        protected final int[] ends;
+        protected char[] text;
+        protected int lines;
+        protected int length;
+
+        protected Chunk() {
+            times = new long[CHUNK_LINES];
+            ends = new int[CHUNK_LINES];
+            text = new char[CHUNK_CHARS];
+        }
+
+        protected boolean fits(int len) {
+            return lines < CHUNK_LINES && length + len <= text.length;
+        }
+
+        protected void add(long time, CharSequence s) {
+            int len = s.length();
+            if (length + len > text.length) {
+                // a single line larger than a chunk
+                text = Arrays.copyOf(text, length + len);
+            }
+            for (int i = 0; i < len; i++) text[length + i] = s.charAt(i);
+            length += len;
+            times[lines] = time;
+            ends[lines] = length;
+            lines++;
+        }
+
+        protected void reset() {
+            lines = 0;
+            length = 0;
+        }
+    }
+
+    /**
+     * The <code>Channel</code> class stores the buffers of a single node. Lines are added only from
+     * the thread of the node, which takes no locks to do so; full buffers and the time of the node
+     * are handed to the drain through a lock-free queue and a volatile field.
+     */
+    public class Channel implements Simulator.Event {
+        protected final Simulator simulator;
+        protected final Thread owner;
+        protected final ConcurrentLinkedQueue<Chunk> full;
+        protected final ConcurrentLinkedQueue<Chunk> free;
+        protected final StringBuffer line;
+        protected Chunk current;
+
+        /**
+         * The <code>reached</code> field stores the time the node has reached, as last published
+         * by its own thread. Every line printed before this time has been handed to the drain.
+         */
+        protected volatile long reached;
+
+        // these fields are only used by the drain thread
+        protected final ArrayDeque<Chunk> pending;
+        protected int next;
+        protected boolean done;
+
+        protected Channel(Simulator s, Thread t) {
+            simulator = s;
+            owner = t;
+            full = new ConcurrentLinkedQueue<Chunk>();
+            free = new ConcurrentLinkedQueue<Chunk>();
+            line = new StringBuffer(100);
+            current = new Chunk();
+            pending = new ArrayDeque<Chunk>();
+        }
+
+        /**
+         * The <code>append()</code> method adds a line printed by the node at the current time. It
+         * fails if it is not called from the thread of the node, in which case the caller should
+         * print the line itself.
+         * @param s the line to print, without the newline
+         * @return true if the line was added; false if it must be printed directly
+         */
+        public boolean append(CharSequence s) {
+            if (Thread.currentThread() != owner || closing) return false;
+            if (!current.fits(s.length())) handOff();
+            current.add(simulator.getClock().getCount(), s);
+            return true;
+        }
+
+        /**
+         * The <code>getLine()</code> method returns a buffer that the node can use to build a line
+         * before appending it.
+         * @return an empty buffer that is reused for each line, or null if the caller is not the
+         * thread of the node and must print the line directly
+         */
+        public StringBuffer getLine() {
+            if (Thread.currentThread() != owner || closing) return null;
+            line.setLength(0);
+            return line;
+        }
+
+        /**
+         * The <code>fire()</code> method of this event is called periodically by the event queue
+         * of the node. It hands the lines printed so far to the drain and publishes the time of the node.
+         */
+        public void fire() {
+            long now = simulator.getClock().getCount();
+            if (current.lines > 0) handOff();
+            reached = now;
+            simulator.insertEvent(this, PERIOD);
+        }
+
+        private void handOff() {
+            full.offer(current);
+            Chunk c = free.poll();
+            if (c == null) c = new Chunk();
+            current = c;
+        }
+
+        /**
+         * The <code>collect()</code> method is called by the drain thread to take the published
+         * buffers of this node and return the time before which it will print no more lines.
+         */
+        protected long collect(boolean last) {
+            long time = reached;
+            boolean terminated = owner.getState() == Thread.State.TERMINATED && !owner.isAlive();
+            if (!done && (last || terminated)) {
+                // the thread has terminated, so its last buffer can be read safely
+                if (terminated && current.lines > 0) full.offer(current);
+                time = Long.MAX_VALUE;
+                done = true;
+            } else if (done) {
+                time = Long.MAX_VALUE;
+            }
+            for (Chunk c = full.poll(); c != null; c = full.poll()) pending.add(c);
+            return time;
+        }
+
+        protected long nextTime() {
+            Chunk c = pending.peekFirst();
+            return c == null ? Long.MAX_VALUE : c.times[next];
+        }
+
+        protected void emitLine() {
+            Chunk c = pending.peekFirst();
+            int start = next == 0 ? 0 : c.ends[next - 1];
+            out.append(c.text, start, c.ends[next] - start);
+            out.append('\n');
+            if (++next == c.lines) {
+                pending.removeFirst();
+                next = 0;
+                if (!done) {
+                    c.reset();
+                    free.offer(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * The constructor for the <code>BufferedOutput</code> class creates a new buffered output with
+     * no nodes and starts its drain thread.
+     */
+    public BufferedOutput() {
+        channelMap = new ConcurrentHashMap<Simulator, Channel>();
+        channels = new ArrayList<Channel>();
+        out = new StringBuilder(64 * 1024);
+        drain = new Thread("output-drain") {
+            public void run() {
+                drain();
+            }
+        };
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    /**
+     * The <code>addNode()</code> method adds a node whose output should be buffered. It must be
+     * called before the node starts executing. The nodes must be added in order of their identifiers.
+     * @param s the simulator of the node
+     * @param t the thread that will execute the node
+     */
+    public void addNode(Simulator s, Thread t) {
+        Channel c = new Channel(s, t);
+        synchronized (channels) {
+            channels.add(c);
+        }
+        channelMap.put(s, c);
+        s.insertEvent(c, PERIOD);
+    }
+
+    /**
+     * The <code>getChannel()</code> method returns the buffers of the specified node.
+     * @param s the simulator of the node
+     * @return the channel for the node, or null if its output is not buffered
+     */
+    public Channel getChannel(Simulator s) {
+        return channelMap.get(s);
+    }
+
+    /**
+     * The <code>finish()</code> method prints every line that has been buffered and stops the
+     * drain thread. It should be called after the nodes have terminated; the lines that any
+     * node still running has not yet published are lost.
+     */
+    public void finish() {
+        closing = true;
+        try {
+            drain.join();
+        } catch (InterruptedException e) {
+            throw Util.unexpected(e);
+        }
+    }
+
+    protected void drain() {
+        long wait = MIN_WAIT;
+        while (true) {
+            boolean last = closing;
+            Channel[] all;
+            synchronized (channels) {
+                all = channels.toArray(new Channel[channels.size()]);
+            }
+            long horizon = Long.MAX_VALUE;
+            for (Channel c : all) {
+                long t = c.collect(last);
+                if (t < horizon) horizon = t;
+            }
+            merge(all, horizon);
+            if (out.length() > 0) {
+                synchronized (Terminal.class) {
+                    Terminal.print(out.toString());
+                }
+                out.setLength(0);
+                wait = MIN_WAIT;
+            } else if (last) {
+                return;
+            } else {
+                // back off while the nodes are not printing
+                LockSupport.parkNanos(wait);
+                wait = Math.min(wait * 2, MAX_WAIT);
+            }
+        }
+    }
+
+    private void merge(Channel[] all, long horizon) {
+        while (true) {
+            // find the node with the earliest line, and the time of the next line of any other node
+            Channel min = null;
+            long first = horizon;
+            long second = horizon;
+            for (Channel c : all) {
+                long t = c.nextTime();
+                if (t < first) {
+                    second = first;
+                    first = t;
+                    min = c;
+                } else if (t < second) {
+                    second = t;
+                }
+            }
+            if (min == null) return;
+            // the nodes are in order of identifier, so lines at the same time as another node's
+            // can be printed before that node's lines
+            while (min.nextTime() <= second && min.nextTime() < horizon) {
+                if (min.nextTime() == second && !precedes(all, min, second)) break;
+                min.emitLine();
+            }
+        }
+    }
+
+    private boolean precedes(Channel[] all, Channel min, long time) {
+        for (Channel c : all) {
+            if (c == min) return true;
+            if (c.nextTime() == time) return false;
+        }
+        return true;
+    }
+}
@@ -46,19 +46,43 @@ import cck.text.Terminal;
 public class SimPrinter {
 
     private Simulator simulator;
+    private BufferedOutput output;
+    private BufferedOutput.Channel channel;
 
     public SimPrinter(Simulator simulator, String category) {
         this.simulator = simulator;
     }
 
+    /**
+     * This constructor creates a printer whose output is buffered, if the specified buffered
+     * output has a channel for the simulator, rather than printed while holding the terminal.
+     * @param simulator the simulator this printer is tied to
+     * @param category the category for printing
+     * @param output the buffered output of the simulation, or null if output is not buffered
+     */
+    public SimPrinter(Simulator simulator, String category, BufferedOutput output) {
+        this.simulator = simulator;
+        this.output = output;
+    }
+
     /**
      * The <code>println()</code> method prints the node ID, the time, and a message to the
-     * console, synchronizing with other threads so that output is not interleaved. This method
+     * console, synchronizing with other threads so that output is not interleaved. If the output
+     * of the simulation is buffered, the line is added to the buffers of the node instead. This method
      * SHOULD ONLY BE CALLED WHEN <code>enabled</code> IS TRUE! This is done to prevent
      * performance bugs created by string construction inside printing (and debugging code).
      * @param s the string to print
      */
     public void println(String s) {
+        BufferedOutput.Channel c = getChannel();
+        if ( c != null ) {
+            StringBuffer buf = c.getLine();
+            if ( buf != null ) {
+                SimUtil.getIDTimeString(buf, simulator);
+                buf.append(s);
+                if ( c.append(buf) ) return;
+            }
+        }
         synchronized ( Terminal.class ) {
             // synchronize on the terminal to prevent interleaved output
             StringBuffer buf = new StringBuffer(s.length() + 30);
@@ -69,12 +93,19 @@ public class SimPrinter {
     }
 
     public void printBuffer(StringBuffer buffer) {
+        BufferedOutput.Channel c = getChannel();
+        if ( c != null && c.append(buffer) ) return;
         synchronized ( Terminal.class ) {
             // synchronize on the terminal to prevent interleaved output
             Terminal.println(buffer.toString());
         }
     }
 
+    private BufferedOutput.Channel getChannel() {
+        if ( channel == null && output != null ) channel = output.getChannel(simulator);
+        return channel;
+    }
+
     public StringBuffer getBuffer() {
         StringBuffer buf = new StringBuffer(70);
         SimUtil.getIDTimeString(buf, simulator);
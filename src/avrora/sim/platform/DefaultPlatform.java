@@ -90,7 +90,7 @@ public class DefaultPlatform extends Platform {
              protected static final Simulation mysim = null;
         public Platform newPlatform(int id, Simulation sim, Program p) {
    //             public Platform newPlatform(int id, Program p) {
-            ClockDomain cd = new ClockDomain(mainClockSpeed);
+            ClockDomain cd = new ClockDomain(mainClockSpeed, sim.newEventQueue());
             cd.newClock("external", extClockSpeed);
             return new DefaultPlatform(id, mcf.newMicrocontroller(id, sim, cd, p));
         }
@@ -81,7 +81,7 @@ public class Inga extends Platform {
          */
         @Override
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(MAIN_HZ);
+            ClockDomain cd = new ClockDomain(MAIN_HZ, sim.newEventQueue());
             cd.newClock("external", 32768);
 
             return new Inga(new ATMega1284p(id, sim, cd, p));
@@ -68,7 +68,7 @@ public class Mica2 extends Platform {
          * @param p the program to load onto the node @return a new instance of the <code>Mica2</code> platform
          */
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(MAIN_HZ);
+            ClockDomain cd = new ClockDomain(MAIN_HZ, sim.newEventQueue());
             cd.newClock("external", EXT_HZ);
 
             return new Mica2(new ATMega128(id, sim, cd, p));
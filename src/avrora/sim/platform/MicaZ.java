@@ -69,7 +69,7 @@ public class MicaZ extends Platform {
          //             protected static final Simulation mysim = null;
         @Override
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(MAIN_HZ);
+            ClockDomain cd = new ClockDomain(MAIN_HZ, sim.newEventQueue());
             cd.newClock("external", 32768);
 
             return new MicaZ(new ATMega128(id, sim, cd, p));
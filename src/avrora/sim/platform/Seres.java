@@ -63,7 +63,7 @@ public class Seres extends Platform {
     public static class Factory implements PlatformFactory {
 
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(7372800);
+            ClockDomain cd = new ClockDomain(7372800, sim.newEventQueue());
             cd.newClock("external", 32768);
 
             return new Seres(new ATMega128(id, sim, cd, p));
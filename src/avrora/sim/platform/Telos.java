@@ -60,7 +60,7 @@ public class Telos extends Platform {
          *@param p the program to load onto the node @return a new instance of the <code>Mica2</code> platform
          */
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(MAIN_HZ);
+            ClockDomain cd = new ClockDomain(MAIN_HZ, sim.newEventQueue());
             cd.newClock("external", EXT_HZ);
 
             return new Telos(new F1611(id, sim, cd, p));
@@ -67,7 +67,7 @@ public class Tiny85 extends Platform {
          */
          //             protected static final Simulation mysim = null;
         public Platform newPlatform(int id, Simulation sim, Program p) {
-            ClockDomain cd = new ClockDomain(MAIN_HZ);
+            ClockDomain cd = new ClockDomain(MAIN_HZ, sim.newEventQueue());
           //  cd.newClock("external", 32768);
             return new Tiny85(new ATTiny85(id, sim, cd, p));
         }
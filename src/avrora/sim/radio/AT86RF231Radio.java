@@ -989,6 +989,7 @@ public class AT86RF231Radio implements Radio {
                     } else {//data frame
                         // length is the first byte in the FIFO buffer
                         length = trxFIFO.remove();
+                        if (medium.packetDelivery) publishFrame();
                     }
                     if (DEBUGTX && printer!=null) printer.println("RF231: Tx frame length " + length);
                     state = TX_IN_PACKET;
@@ -1075,6 +1076,28 @@ public class AT86RF231Radio implements Radio {
             return val;
         }
 
+        /**
+         * The <code>publishFrame()</code> method publishes the rest of a data frame to the medium
+         * when its length byte is sent, computing the CRC the same way <code>nextByte()</code> will.
+         * If the FIFO does not yet hold the whole frame, nothing is published.
+         */
+        private void publishFrame() {
+            boolean auto = (registers[TRX_CTRL_1] & 0x20) != 0;
+            int n = auto ? length - 2 : length;
+            if (n < 1 || trxFIFO.size() < n) return;
+            byte[] frame = new byte[length];
+            short c = 0;
+            for (int i = 0; i < n; i++) {
+                frame[i] = trxFIFO.getRelativeByte(i);
+                c = crcAccumulate(c, (byte) reverse_bits[(frame[i]) & 0xff]);
+            }
+            if (auto) {
+                frame[n] = (byte) reverse_bits[(Arithmetic.high(c)) & 0xff];
+                frame[n + 1] = (byte) reverse_bits[(Arithmetic.low(c)) & 0xff];
+            }
+            publishAhead(frame, length);
+        }
+
         void startup() {
             if (!txactive) {
                 txactive = true;
@@ -215,6 +215,9 @@ public class CC2420Radio implements Radio {
     protected byte[] IEEEAdr;
     protected static final byte[] LONG_BROADCAST_ADDR = {-1, -1, -1, -1, -1, -1, -1, -1};
 
+    //spacing in MHz between the center frequencies of the 802.15.4 channels
+    public static final double CHANNEL_SPACING = 5;
+
     //LUT from cubic spline interpolation with all transmission power values
     protected static final double [] POWER_dBm = {-37.917,-32.984,-28.697,-25,
     -21.837,-19.153,-16.893,-15,-13.42,-12.097,-10.975,-10,-9.1238,-8.3343,
@@ -948,6 +951,7 @@ public class CC2420Radio implements Radio {
                         wasAck = false;
                         txFIFO.saveState();  // save FIFO state for later refill
                         length = txFIFO.remove() & 0x7f;
+                        if (medium.packetDelivery) publishFrame();
                     }
                     state = TX_IN_PACKET;
                     counter = 0;
@@ -1041,6 +1045,29 @@ public class CC2420Radio implements Radio {
             return val;
         }
 
+        /**
+         * The <code>publishFrame()</code> method publishes the rest of a data frame to the medium
+         * when its length byte is sent, computing the CRC the same way <code>nextByte()</code> will.
+         * If the FIFO does not yet hold the whole frame, nothing is published and receivers wait
+         * for each byte as it is sent.
+         */
+        private void publishFrame() {
+            boolean auto = autoCRC.getValue();
+            int n = auto ? length - 2 : length;
+            if (n < 1 || txFIFO.size() < n) return;
+            byte[] frame = new byte[length];
+            short c = 0;
+            for (int i = 0; i < n; i++) {
+                frame[i] = txFIFO.getRelativeByte(i);
+                c = crcAccumulate(c, (byte) reverse_bits[(frame[i]) & 0xff]);
+            }
+            if (auto) {
+                frame[n] = (byte) reverse_bits[(Arithmetic.high(c)) & 0xff];
+                frame[n + 1] = (byte) reverse_bits[(Arithmetic.low(c)) & 0xff];
+            }
+            publishAhead(frame, length);
+        }
+
         private int getPreambleLength() {
             int val = registers[MDMCTRL0] & 0xf;
             return val + 1;
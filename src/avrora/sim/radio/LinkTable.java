@@ -0,0 +1,182 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.radio;
+
+import avrora.sim.radio.Topology.Position;
+
+import java.util.ArrayList;
+
+/**
+ * The <code>LinkTable</code> class caches the per-link quantities of a radio model, such as the
+ * distance and path loss between a transmitter and a receiver, so that they are computed once per
+ * pair of radios rather than once per byte delivered. Each radio is registered with its position
+ * and receives an index; links are then computed lazily the first time a receiver asks for them and
+ * recomputed only when one of the two endpoints has moved since. When a link is recomputed, the
+ * factory is given the previous link of the pair, so that state that must survive a move, such as
+ * the correlated shadowing of a channel, can be carried over.
+ *
+ * <p>
+ * For small networks, the links of each receiver are stored in an array indexed by transmitter;
+ * for large networks, each receiver keeps a small hash table of the transmitters it has actually
+ * heard, which are the only ones the transmission store lets it see. Each row is only accessed by
+ * the thread of its receiver, so no locking is needed once all radios are registered.
+ */
+public class LinkTable<L> {
+
+    /**
+     * The <code>Factory</code> interface is implemented by radio models to compute the cached
+     * quantities for a link between two positions.
+     */
+    public interface Factory<L> {
+        /**
+         * The <code>newLink()</code> method computes the link between two positions.
+         * @param prev the previous link between the same two radios before one of them moved, or
+         * null if the link is computed for the first time
+         * @param tx the position of the transmitter
+         * @param rx the position of the receiver
+         * @return the new link between the two positions
+         */
+        public L newLink(L prev, Position tx, Position rx);
+    }
+
+    protected static final int DENSE_LIMIT = 256;
+
+    protected static class Entry<L> {
+        protected final int txMoves;
+        protected final int rxMoves;
+        protected final L link;
+
+        protected Entry(int txMoves, int rxMoves, L link) {
+            this.txMoves = txMoves;
+            this.rxMoves = rxMoves;
+            this.link = link;
+        }
+    }
+
+    /**
+     * The <code>Row</code> class stores the links of a single receiver, keyed by transmitter index.
+     */
+    protected static class Row<L> {
+        protected Entry<L>[] dense;
+        protected int[] keys;
+        protected Entry<L>[] vals;
+        protected int count;
+
+        protected Entry<L> get(int tx) {
+            if (dense != null) return dense[tx];
+            int mask = keys.length - 1;
+            for (int i = hash(tx) & mask; vals[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == tx) return vals[i];
+            }
+            return null;
+        }
+
+        protected void put(int tx, Entry<L> e) {
+            if (dense != null) {
+                dense[tx] = e;
+                return;
+            }
+            int mask = keys.length - 1;
+            int i = hash(tx) & mask;
+            for (; vals[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == tx) {
+                    vals[i] = e;
+                    return;
+                }
+            }
+            keys[i] = tx;
+            vals[i] = e;
+            if (++count * 2 > keys.length) grow();
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void grow() {
+            int[] okeys = keys;
+            Entry<L>[] ovals = vals;
+            keys = new int[okeys.length * 2];
+            vals = new Entry[okeys.length * 2];
+            count = 0;
+            for (int i = 0; i < okeys.length; i++) {
+                if (ovals[i] != null) put(okeys[i], ovals[i]);
+            }
+        }
+
+        private static int hash(int x) {
+            return x * 0x9E3779B9 >>> 16 ^ x;
+        }
+    }
+
+    protected final Factory<L> factory;
+    protected final ArrayList<Position> positions;
+    protected volatile Row<L>[] rows;
+
+    /**
+     * The constructor for the <code>LinkTable</code> class creates a new, empty table that
+     * uses the specified factory to compute links.
+     * @param f the factory that computes the quantities for each link
+     */
+    public LinkTable(Factory<L> f) {
+        factory = f;
+        positions = new ArrayList<Position>();
+    }
+
+    /**
+     * The <code>register()</code> method adds a radio at the specified position to this table.
+     * All radios must be registered before the simulation starts.
+     * @param pos the position of the radio
+     * @return the index of the radio in this table
+     */
+    public int register(Position pos) {
+        positions.add(pos);
+        rows = null;
+        return positions.size() - 1;
+    }
+
+    /**
+     * The <code>get()</code> method retrieves the link between the specified transmitter and
+     * receiver, computing it if it has not been computed or if either endpoint has moved. This
+     * method must only be called from the thread of the receiver.
+     * @param tx the index of the transmitter
+     * @param rx the index of the receiver
+     * @return the cached link between the two radios
+     */
+    public L get(int tx, int rx) {
+        Row<L> row = getRow(rx);
+        Entry<L> e = row.get(tx);
+        Position a = positions.get(tx);
+        Position b = positions.get(rx);
+        if (e == null || e.txMoves != a.moves || e.rxMoves != b.moves) {
+            int am = a.moves, bm = b.moves;
+            e = new Entry<L>(am, bm, factory.newLink(e == null ? null : e.link, a, b));
+            row.put(tx, e);
+        }
+        return e.link;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Row<L> getRow(int rx) {
+        Row<L>[] r = rows;
+        if (r == null) {
+            synchronized (this) {
+                if (rows == null) rows = new Row[positions.size()];
+                r = rows;
+            }
+        }
+        Row<L> row = r[rx];
+        if (row == null) {
+            row = new Row<L>();
+            int size = positions.size();
+            if (size <= DENSE_LIMIT) {
+                row.dense = new Entry[size];
+            } else {
+                row.keys = new int[16];
+                row.vals = new Entry[16];
+            }
+            r[rx] = row;
+        }
+        return row;
+    }
+}
@@ -32,15 +32,96 @@ import avrora.sim.radio.Topology;
 public class LossyModel implements Medium.Arbitrator {
 
     protected static final double Sensitivity = -95;
-    protected int TimeBefore = 0;
     protected final Map<Object,Topology.Position> positions;
+    protected final LinkTable<Path> links;
     protected final double lambda = Math.exp(-5D/6D);
     protected final double u = Math.sqrt((1-Math.pow(lambda,2D)));
-    protected double Csf,Sf;
-    protected boolean first = true;
+    protected final NoiseTrace noise;
+
+    /**
+     * The <code>streams</code> field stores the random number stream of each receiver, indexed by
+     * its index in the link table. Each stream is only used by the thread of its receiver, so the
+     * fading drawn for a receiver does not depend on how the threads of the nodes interleave.
+     */
+    protected final ArrayList<Stream> streams;
+    protected final SplittableRandom root;
+
+    /**
+     * The <code>splits</code> field stores the generators split from the root generator so far,
+     * indexed by the identifier of the node they belong to. They are split in the order of the
+     * identifiers, so the stream of a node does not depend on the order in which the radios are
+     * registered, nor on which of the nodes are simulated in this process.
+     */
+    protected final ArrayList<SplittableRandom> splits;
+    protected final Stream shared;
 
     public LossyModel() {
+        this(NoiseTrace.constant(NoiseTrace.DEFAULT_NOISE), 0);
+    }
+
+    /**
+     * The constructor for the <code>LossyModel</code> class creates a new radio model that uses
+     * the specified trace for the noise at each receiver.
+     * @param n the noise trace for this model
+     * @param seed the seed from which the random number stream of each receiver is derived; if zero,
+     * a seed that varies from run to run is chosen
+     */
+    public LossyModel(NoiseTrace n, long seed) {
+        noise = n;
+        root = seed != 0 ? new SplittableRandom(seed) : new SplittableRandom();
+        streams = new ArrayList<Stream>();
+        shared = new Stream(root.split());
+        splits = new ArrayList<SplittableRandom>();
         positions = new HashMap<Object, Topology.Position>();
+        links = new LinkTable<Path>(new LinkTable.Factory<Path>() {
+            public Path newLink(Path prev, Topology.Position tx, Topology.Position rx) {
+                return new Path(tx, rx, prev == null ? new Shadow() : prev.shadow);
+            }
+        });
+    }
+
+    /**
+     * The <code>Shadow</code> class stores the correlated shadowing of the channel between a
+     * transmitter and a receiver. It is drawn by the receiver and kept when either node moves.
+     */
+    protected static class Shadow {
+        protected boolean first = true;
+        protected double Csf, Sf;
+        protected int TimeBefore = 0;
+    }
+
+    /**
+     * The <code>Path</code> class stores the parts of the indoor channel model that depend
+     * only on the positions of the transmitter and receiver.
+     */
+    protected static class Path {
+        //people density -number of people or obstacles over an occupied area- (m-2)
+        protected final double p;
+        //length of ray over area with moving people(m)
+        protected final double d;
+        //Time sharing between bad and good state
+        protected final double A;
+        protected final double PathLoss;
+        protected final double std;
+        protected final double mean;
+        protected final Shadow shadow;
+
+        protected Path(Topology.Position a, Topology.Position b, Shadow s) {
+            shadow = s;
+            p = densityObstacles(a, b);
+            d = distance(a, b);
+            A = Math.pow((1-p),0.2*d);
+            //Log-distance Pathloss model (d0,n)
+            double n = 3;
+            /*Reference pathloss Lo calculated with Free space formula
+            double PathLoss = 20*Math.log10((4*Math.PI*d0*t.f*1E6)/(299792458));*/
+            //Reference pathloss from measurements for d0=1m
+            double pl = 55;
+            if (d > 1) pl = pl + 10*n*Math.log10(d);
+            PathLoss = pl;
+            std = (Math.log10(55*d*p+1)/Math.log10(7)) + 0.5;
+            mean = Math.pow(3*d*p,0.7);
+        }
     }
 
     public boolean lockTransmission(Medium.Receiver receiver, Medium.Transmission trans,int Milliseconds) {
@@ -72,31 +153,62 @@ public class LossyModel implements Medium.Arbitrator {
         return (char)value;
     }
 
-    private static Random rn = new Random();
+    /**
+     * The <code>Stream</code> class draws Gaussian random numbers from a <code>SplittableRandom</code>,
+     * which, unlike <code>java.util.Random</code>, does not update a shared atomic seed for each number.
+     */
+    protected static class Stream {
+        protected final SplittableRandom random;
+        protected boolean haveNext;
+        protected double next;
+
+        protected Stream(SplittableRandom r) {
+            random = r;
+        }
 
-    public static double getGaussian(double mean, double std){
-        return mean + std*rn.nextGaussian();
+        protected double getGaussian(double mean, double std) {
+            return mean + std * nextGaussian();
+        }
+
+        private double nextGaussian() {
+            // the polar method, as used by java.util.Random
+            if (haveNext) {
+                haveNext = false;
+                return next;
+            }
+            double v1, v2, s;
+            do {
+                v1 = 2 * random.nextDouble() - 1;
+                v2 = 2 * random.nextDouble() - 1;
+                s = v1 * v1 + v2 * v2;
+            } while (s >= 1 || s == 0);
+            double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+            next = v2 * multiplier;
+            haveNext = true;
+            return v1 * multiplier;
+        }
     }
 
-    private double Rayleigh() {
-        Complex c = new Complex(getGaussian(0,1),getGaussian(0,1));
+    private double Rayleigh(Stream rn) {
+        Complex c = new Complex(rn.getGaussian(0,1),rn.getGaussian(0,1));
         return Complex.abs(c);
     }
 
-    private double Shadowing(double mean,double std,int Milliseconds){
+    private double Shadowing(Stream rn, Path path, int Milliseconds){
        //Correlated shadowing computation updating values every 1second
-        if (first) {
-            first=false;
-            return Sf = getGaussian(mean,std);
+        Shadow sh = path.shadow;
+        if (sh.first) {
+            sh.first=false;
+            return sh.Sf = rn.getGaussian(path.mean,path.std);
         } else {
             if (Milliseconds < 1000) {
-                return Csf = Sf;
+                return sh.Csf = sh.Sf;
             } else {
-                if ((Milliseconds - TimeBefore) > 1000) {
-                    TimeBefore = Milliseconds;
-                    return Csf = lambda * Csf + u * getGaussian(mean,std);
+                if ((Milliseconds - sh.TimeBefore) > 1000) {
+                    sh.TimeBefore = Milliseconds;
+                    return sh.Csf = lambda * sh.Csf + u * rn.getGaussian(path.mean,path.std);
                 } else {
-                    return Csf;
+                    return sh.Csf;
                 }
             }
         }
@@ -105,22 +217,46 @@ public class LossyModel implements Medium.Arbitrator {
     public void setPosition(Radio radio, Topology.Position pos) {
         positions.put(radio.getTransmitter(), pos);
         positions.put(radio.getReceiver(), pos);
+        int index = links.register(pos);
+        radio.getTransmitter().linkIndex = index;
+        radio.getReceiver().linkIndex = index;
+        streams.add(new Stream(split(radio.getSimulator().getID())));
+    }
+
+    private SplittableRandom split(int id) {
+        while (splits.size() <= id) splits.add(root.split());
+        return splits.get(id);
+    }
+
+    /**
+     * The <code>setPosition()</code> method sets the position of a transmitter that has no
+     * receiver, such as the stand-in for a node simulated in another process.
+     * @param t the transmitter
+     * @param pos the position of the transmitter
+     */
+    public void setPosition(Medium.Transmitter t, Topology.Position pos) {
+        positions.put(t, pos);
+        t.linkIndex = links.register(pos);
+        // keep the streams indexed by link; a transmitter does not draw from one
+        streams.add(null);
+    }
+
+    public boolean isStationary() {
+        // fading and shadowing are drawn anew for every call
+        return false;
     }
 
     public int getNoise(int index){
-        if (noise.sizeNoise() == 1) return noise.getNoise(0);
-        else {
-                index = index % noise.sizeNoise();
-        }
         return noise.getNoise(index);
-
     }
 
     protected double distance(Medium.Transmitter t, Medium.Receiver r) {
+        return distance(positions.get(t), positions.get(r));
+    }
+
+    protected static double distance(Topology.Position a, Topology.Position b) {
         //Distance computed from mote 3D coordinates of topology file
         double dist = 0;
-        Topology.Position a = (Topology.Position)positions.get(t);
-        Topology.Position b = (Topology.Position)positions.get(r);
         if ( a != null && b != null) {
             double dx = a.x - b.x;
             double dy = a.y - b.y;
@@ -131,11 +267,13 @@ public class LossyModel implements Medium.Arbitrator {
     }
 
     protected double densityObstacles(Medium.Transmitter t, Medium.Receiver r) {
+        return densityObstacles(positions.get(t), positions.get(r));
+    }
+
+    protected static double densityObstacles(Topology.Position a, Topology.Position b) {
         /*Density of obstacles computed as the maximum rho between transmitter and
         receiver motes inserted in topology file*/
         double rho = 0D;
-        Topology.Position a = (Topology.Position)positions.get(t);
-        Topology.Position b = (Topology.Position)positions.get(r);
         if ( a != null && b != null) {
             rho = Math.max(a.rho,b.rho);
         }
@@ -151,32 +289,34 @@ public class LossyModel implements Medium.Arbitrator {
      */
     public double computeReceivedPower(Medium.Transmission t, Medium.Receiver receiver, int Milliseconds) {
         //Indoor channel model with consideration of movement of people/obstacles
-        //people density -number of people or obstacles over an occupied area- (m-2)
-        double p = densityObstacles(t.origin, receiver);
-        //length of ray over area with moving people(m)
-        double d = distance(t.origin, receiver);
-        //Time sharing between bad and good state
-        double A = Math.pow((1-p),0.2*d);
-        //Log-distance Pathloss model (d0,n)
-        double n = 3;
-        /*Reference pathloss Lo calculated with Free space formula
-        double PathLoss = 20*Math.log10((4*Math.PI*d0*t.f*1E6)/(299792458));*/
-        //Reference pathloss from measurements for d0=1m
-        double PathLoss = 55;
-        if (d > 1) PathLoss = PathLoss + 10*n*Math.log10(d);
+        if (receiver.linkIndex < 0) {
+            // receivers without a position share a single stream
+            synchronized (shared) {
+                return computeReceivedPower(t, getPath(t.origin, receiver), shared, Milliseconds);
+            }
+        }
+        return computeReceivedPower(t, getPath(t.origin, receiver), streams.get(receiver.linkIndex), Milliseconds);
+    }
+
+    private double computeReceivedPower(Medium.Transmission t, Path path, Stream rn, int Milliseconds) {
+        double A = path.A;
         //Rayleigh fading
-        double L_Rayleigh = Rayleigh();
+        double L_Rayleigh = Rayleigh(rn);
         //Ricean fading
         int k = 6;//Rician k factor
         double L_Rician =(L_Rayleigh/(Math.sqrt(k))+1);
         //Shadowing
-        double std = (Math.log10(55*d*p+1)/Math.log10(7)) + 0.5;
-        double mean = Math.pow(3*d*p,0.7);
-        double s = Shadowing(mean,std,Milliseconds);
+        double s = Shadowing(rn,path,Milliseconds);
         //double s = getGaussian(mean,std);
         double Lsf = Math.pow(10,s/20);
         //Fading computation following Lutz's model
         double Fading = 10*Math.log10(A * L_Rician + (1-A) * (Lsf*L_Rayleigh));
-        return (t.Pt - Fading - PathLoss);
+        return (t.Pt - Fading - path.PathLoss);
+    }
+
+    private Path getPath(Medium.Transmitter t, Medium.Receiver r) {
+        if (t.linkIndex >= 0 && r.linkIndex >= 0)
+            return links.get(t.linkIndex, r.linkIndex);
+        return new Path(positions.get(t), positions.get(r), new Shadow());
     }
 }
@@ -34,6 +34,7 @@
 package avrora.sim.radio;
 
 import avrora.sim.clock.Clock;
+import avrora.sim.clock.EventHandle;
 import avrora.sim.clock.Synchronizer;
 import avrora.sim.Simulator;
 import avrora.sim.util.TransactionalList;
@@ -61,6 +62,15 @@ public class Medium {
         public char mergeTransmissions(Receiver receiver, List<Medium.Transmission> trans, long bit, int Milliseconds);
         public double computeReceivedPower(Medium.Transmission t, Medium.Receiver receiver, int Milliseconds);
         public int getNoise(int index);
+
+        /**
+         * The <code>isStationary()</code> method reports whether the received power of a transmission
+         * depends only on the transmission and the receiver, so that a receiver can reuse the power
+         * and bit error rate it computed for a set of overlapping transmissions until that set or
+         * the noise level changes.
+         * @return true if the received power is stationary, false if it varies from call to call
+         */
+        public boolean isStationary();
     }
 
     /**
@@ -129,6 +139,12 @@ public class Medium {
 
         public boolean activated;
 
+        /**
+         * The <code>linkIndex</code> field stores the index of this radio in the link table
+         * of the radio model, or -1 if the radio has no position.
+         */
+        protected int linkIndex = -1;
+
         /**
          * The <code>TXRX</code> constructor method
          *
@@ -177,6 +193,14 @@ public class Medium {
         protected final Transmitter.Ticker ticker;
         protected boolean shutdown;
 
+        /**
+         * The <code>index</code> field orders the transmissions that begin in the same cycle. It
+         * defaults to the number of transmitters created for the medium before this one; a simulation
+         * whose nodes have identifiers sets it to the identifier of the node, so that the order does
+         * not depend on which nodes are simulated in this process.
+         */
+        protected int index;
+
         /**
          * The constructor <code>Transmitter</code> creates an extension of TXRX
          * constructor adding an instance of <code>Ticker</code>
@@ -184,6 +208,20 @@ public class Medium {
         protected Transmitter(Medium m, Clock c) {
             super(m, c);
             ticker = new Ticker();
+            synchronized (m) {
+                index = m.transmitters++;
+            }
+        }
+
+        /**
+         * The <code>setIndex()</code> method sets the index that orders the transmissions of this
+         * transmitter among those that begin in the same cycle. It must be called before the
+         * simulation starts, and no two transmitters of a medium may have the same index.
+         *
+         * @param i the new index of this transmitter
+         */
+        public void setIndex(int i) {
+            index = i;
         }
 
         /**
@@ -219,6 +257,27 @@ public class Medium {
          */
         public abstract byte nextByte();
 
+        /**
+         * The <code>publishAhead()</code> method allows a radio to publish the bytes it will send
+         * after the current one, such as the rest of a frame that is already in its FIFO, when the
+         * medium delivers whole packets. Receivers may then read these bytes without synchronizing
+         * with this transmitter for each of them. This method must be called from within
+         * <code>nextByte()</code>, which must still return the same bytes at their proper times.
+         *
+         * @param bytes the bytes that follow the byte currently being sent
+         * @param len   the number of bytes to publish
+         */
+        protected final void publishAhead(byte[] bytes, int len) {
+            if (medium.packetDelivery && transmission != null) {
+                Transmission t = transmission;
+                int start = t.counter;
+                t.ensureCapacity(start + len);
+                System.arraycopy(bytes, 0, t.data, start, len);
+                // the bytes become visible once the current byte has been written
+                t.ahead = start + len;
+            }
+        }
+
         /**
          * The <code>Ticker</code> class implements a Simulator Event call Ticker
          * that is fired  when a timed event occurs within the simulator in order
@@ -235,15 +294,15 @@ public class Medium {
                     activated = false;
                 } else if (activated) {
                     // otherwise, transmit a single byte and add it to the buffer
-                    int indx = transmission.counter++;
+                    Transmission t = transmission;
+                    int indx = t.counter++;
                     byte val = nextByte();
-                    if (indx >= transmission.data.length) {
-                        // grow the transmission length when necessary
-                        byte[] ndata = new byte[transmission.data.length + 16];
-                        System.arraycopy(transmission.data, 0, ndata, 0, transmission.data.length);
-                        transmission.data = ndata;
-                    }
-                    transmission.data[indx] = val;
+                    // grow the transmission length when necessary
+                    t.ensureCapacity(indx + 1);
+                    t.data[indx] = val;
+                    int prev = t.published;
+                    t.published = Math.max(indx + 1, t.ahead);
+                    if (medium.relay != null && t.published > prev) medium.relay.published(t, prev, t.published);
                     if (probeList != null) probeList.fireBeforeTransmit(Transmitter.this, val);
                     clock.insertEvent(this, cyclesPerByte);
                 }
@@ -262,11 +321,120 @@ public class Medium {
         protected boolean locked;
         protected double frequency;
         public Receiver.Ticker ticker;
+        protected final EventHandle tickerHandle;
+        protected final TransmissionStore.View view;
+        protected final Reception reception;
+
+        /**
+         * The <code>horizon</code> field stores a global time that all neighbors of this receiver
+         * are known to have reached, so that the receiver only synchronizes with them when it needs
+         * to look past that time, rather than for every byte of a frame.
+         */
+        protected long horizon = Long.MIN_VALUE;
 
         //Receiver class constructor
         protected Receiver(Medium m, Clock c) {
             super(m, c);
             ticker = new Ticker();
+            tickerHandle = new EventHandle(ticker);
+            view = m.transmissions.new View(this);
+            reception = new Reception();
+        }
+
+        /**
+         * The <code>getRecomputations()</code> method returns the number of times this receiver
+         * computed the received power and bit error rate for a new set of overlapping transmissions.
+         * @return the number of times the reception outcome was computed
+         */
+        public long getRecomputations() {
+            return reception.recomputations;
+        }
+
+        /**
+         * The <code>getReuses()</code> method returns the number of times this receiver reused the
+         * outcome computed for an unchanged set of overlapping transmissions.
+         * @return the number of times the reception outcome was reused
+         */
+        public long getReuses() {
+            return reception.reuses;
+        }
+
+        /**
+         * The <code>Reception</code> class caches the outcome of receiving a set of overlapping
+         * transmissions: the received power of the first, the RSSI including the interference of the
+         * others, and the resulting bit error rate. The outcome is recomputed only when a transmission
+         * starts or ends, when the noise sample changes, or always if the arbitrator's received
+         * power is not stationary.
+         */
+        protected class Reception {
+            protected Transmission[] set = new Transmission[4];
+            protected int size;
+            protected int noise;
+            protected double freq;
+            protected boolean valid;
+            protected double pr;
+            protected double rssi;
+            protected double BER;
+            protected long recomputations;
+            protected long reuses;
+
+            protected void update(List<Transmission> it, int millis) {
+                int pn = medium.arbitrator.getNoise(millis);
+                if (valid && pn == noise && freq == frequency && sameSet(it) && medium.arbitrator.isStationary()) {
+                    reuses++;
+                } else {
+                    recomputations++;
+                    compute(it, millis, pn);
+                }
+                Pr = pr;
+                Pn = pn;
+            }
+
+            private boolean sameSet(List<Transmission> it) {
+                if (it.size() != size) return false;
+                int i = 0;
+                for (Transmission t : it) {
+                    if (set[i++] != t) return false;
+                }
+                return true;
+            }
+
+            private void compute(List<Transmission> it, int millis, int pn) {
+                boolean one = false;
+                double power = 0.0;
+                double SNR = 0;
+                assert it.size() > 0;
+                if (set.length < it.size()) set = new Transmission[it.size() * 2];
+                size = 0;
+                for (Transmission t : it) {
+                    set[size++] = t;
+                    // transmissions on other frequencies are attenuated by the receiver's filter
+                    double att = medium.leakage.getAttenuation(frequency, t.f);
+                    if (one) {//more than one transmission
+                        double I = medium.arbitrator.computeReceivedPower(t, Receiver.this, millis) - att;
+                        //add interference to received power in linear scale
+                        power += dBToLinear(I);
+                        rssi = linearTodB(power);
+                        SNR = SNR - I;
+                    } else {//only one transmission - no interference -
+                        one = true;
+                        pr = medium.arbitrator.computeReceivedPower(t, Receiver.this, millis) - att;
+                        rssi = pr;
+                        power = dBToLinear(pr);
+                        SNR = pr - pn;
+                    }
+                }
+                double snr = Math.pow(10D, (SNR / 10D));
+                //ebno = snr / spectral efficiency = snr / log(1 + snr)
+                double ebno = snr / Math.log(1 + snr);
+                //BER vs Ebno in AWGN channel
+                double x = Math.sqrt(2 * ebno);
+                double x2 = Math.pow(x, 2);
+                BER = Math.exp(-x2 / 2) / (1.64D * x + Math.sqrt(0.76D * (x2) + 4D));
+                noise = pn;
+                freq = frequency;
+                valid = true;
+            }
         }
 
         //Begin receiving. Insert a event.
@@ -274,7 +442,7 @@ public class Medium {
             frequency = freq;
             if (!activated) {
                 activated = true;
-                clock.insertEvent(ticker, leadCycles + cyclesPerByte);
+                clock.insertEvent(tickerHandle, leadCycles + cyclesPerByte);
             }
         }
 
@@ -287,7 +455,7 @@ public class Medium {
             }
             activated = false;
             locked = false;
-            clock.removeEvent(ticker);
+            clock.removeEvent(tickerHandle);
         }
 
         public abstract byte nextByte(boolean lock, byte b);
@@ -326,7 +494,7 @@ public class Medium {
                 //wait until all neighbors are in time before a possible tx to this thread
                 waitForNeighbors(time - cyclesPerByte);
                 //find the earliest new transmission and store it in tx
-                Transmission tx = earliestNewTransmission(oneBitBeforeNow - BYTE_SIZE);
+                Transmission tx = earliestNewTransmission(oneBitBeforeNow - BYTE_SIZE, time - cyclesPerByte);
                 if (tx != null) {
                     // there is a new transmission; calculate delivery of first byte.
                     long dcycle = getCycleTime(tx.firstBit + BYTE_SIZE + BIT_DELAY);
@@ -335,21 +503,21 @@ public class Medium {
                     if (delta <= 0) {
                         // lock on and deliver the first byte right now.
                         locked = true;
-                        deliverByte(oneBitBeforeNow);
+                        fireLocked(time);
                         return;
                     } else if (delta < leadCycles) {
                         // lock on and insert event at delivery time of first bit.
                         locked = true;
-                        clock.insertEvent(this, delta);
+                        clock.insertEvent(tickerHandle, delta);
                         return;
                     } else if (delta < leadCycles + cyclesPerByte) {
                         // don't lock on yet, but wait for delivery time
-                        clock.insertEvent(this, delta);
+                        clock.insertEvent(tickerHandle, delta);
                         return;
                     }
                 }
                 // there is no transmission. Remain unlocked.
-                clock.insertEvent(this, leadCycles);
+                clock.insertEvent(tickerHandle, leadCycles);
 
             }
 
@@ -361,45 +529,33 @@ public class Medium {
              */
             private void fireLocked(long time) {
                 long oneBitBeforeNow = getBitNum(time) - BIT_DELAY; // there is a one bit delay
-                waitForNeighbors(time - cyclesPerByte);
+                if (!medium.packetDelivery || time - leadCycles - cyclesPerByte > horizon) {
+                    // in packet mode, only transmissions begun a lead time ago can reach this byte
+                    waitForNeighbors(getCycleTime(oneBitBeforeNow));
+                }
                 deliverByte(oneBitBeforeNow);
             }
 
             /**
-             * The <code>deliverByte</code> method delivers bytes to receiver
+             * The <code>deliverByte</code> method delivers bytes to receiver. The byte ends one bit
+             * before now and usually spans two bytes of each transmission; a sender writes the
+             * second of these up to a byte time after its first bit, so the receiver must have
+             * synchronized with its neighbors up to the end of the byte to read it.
              *
              * @param oneBitBeforeNow
              */
             private void deliverByte(long oneBitBeforeNow) {
                 List<Transmission> it = getIntersection(oneBitBeforeNow - BYTE_SIZE);
+                if (it != null && medium.packetDelivery && !isPublished(it, oneBitBeforeNow - BYTE_SIZE)) {
+                    // a sender has not published this byte yet; wait for it as in byte mode
+                    waitForNeighbors(getCycleTime(oneBitBeforeNow));
+                    it = getIntersection(oneBitBeforeNow - BYTE_SIZE);
+                }
                 if (it != null) {//there is a transmission
-                    boolean one = false;
-                    double rssi = 0.0;
-                    double SNR = 0;
-                    assert it.size() > 0;
-                    for (Transmission t : it) {
-                        if (one) {//more than one transmission
-                            double I = medium.arbitrator.computeReceivedPower(t, Receiver.this, (int) clock.cyclesToMillis(clock.getCount()));
-                            //add interference to received power in linear scale
-                            rssi = 10 * Math.log10(Math.pow(10, rssi / 10) + Math.pow(10, I / 10));
-                            SNR = SNR - I;
-                        } else {//only one transmission - no interference -
-                            one = true;
-                            Pr = medium.arbitrator.computeReceivedPower(t, Receiver.this, (int) clock.cyclesToMillis(clock.getCount()));
-                            Pn = medium.arbitrator.getNoise((int) clock.cyclesToMillis(clock.getCount()));
-                            rssi = Pr;
-                            SNR = Pr - Pn;
-                        }
-                    }
-                    double snr = Math.pow(10D, (SNR / 10D));
-                    //ebno = snr / spectral efficiency = snr / log(1 + snr)
-                    double ebno = snr / Math.log(1 + snr);
-                    //BER vs Ebno in AWGN channel
-                    double x = Math.sqrt(2 * ebno);
-                    double x2 = Math.pow(x, 2);
-                    double BER = Math.exp(-x2 / 2) / (1.64D * x + Math.sqrt(0.76D * (x2) + 4D));
-                    setBER(BER);
-                    setRSSI(rssi);
+                    // reuse the outcome unless the overlapping transmissions or noise changed
+                    reception.update(it, (int) clock.cyclesToMillis(clock.getCount()));
+                    setBER(reception.BER);
+                    setRSSI(reception.rssi);
                     // merge transmissions into a single byte and send it to receiver
                     // we return val in order to get rssi and corr value
                     char val = medium.arbitrator.mergeTransmissions(Receiver.this, it, oneBitBeforeNow - BYTE_SIZE, (int) clock.cyclesToMillis(clock.getCount()));
@@ -408,14 +564,14 @@ public class Medium {
                     newval |= (int) (0xff & nextByte(true, (byte) val));
                     val = (char) newval;
                     if (probeList != null) probeList.fireAfterReceive(Receiver.this, val);
-                    clock.insertEvent(this, cyclesPerByte);
+                    clock.insertEvent(tickerHandle, cyclesPerByte);
 
                 } else {//no transmissions intersect
                     // all transmissions are over.
                     locked = false;
                     nextByte(false, (byte) 0);
                     if (probeList != null) probeList.fireAfterReceiveEnd(Receiver.this);
-                    clock.insertEvent(this, leadCycles);
+                    clock.insertEvent(tickerHandle, leadCycles);
                 }
             }
 
@@ -444,21 +600,8 @@ public class Medium {
                     int cca_mode = (MDMCTRL0_reg & 0x00c0) >>> 6;
                     //cca modes 1 and 3 compare threshold with rssi to determine CCA
                     if (cca_mode == 1 || cca_mode == 3) {
-                        boolean one = false;
-                        double rssi = 0.0;
-                        assert it.size() > 0;
-                        for (Transmission t : it) {
-                            if (one) {//more than one transmission
-                                double I = medium.arbitrator.computeReceivedPower(t, Receiver.this, (int) clock.cyclesToMillis(clock.getCount()));
-                                //add interference to received power in linear scale
-                                rssi = 10 * Math.log10(Math.pow(10, rssi / 10) + Math.pow(10, I / 10));
-                            } else {//only one transmission - no interference -
-                                one = true;
-                                Pr = medium.arbitrator.computeReceivedPower(t, Receiver.this, (int) clock.cyclesToMillis(clock.getCount()));
-                                Pn = medium.arbitrator.getNoise((int) clock.cyclesToMillis(clock.getCount()));
-                                rssi = Pr;
-                            }
-                        }
+                        reception.update(it, (int) clock.cyclesToMillis(clock.getCount()));
+                        double rssi = reception.rssi;
                         int cca_hyst = (MDMCTRL0_reg & 0x0700) >>> 8;
                         int cca_thr = (RSSI_reg & 0xff00) >>> 8;
                         if (cca_thr > 127)
@@ -477,24 +620,11 @@ public class Medium {
          * new transmission from the other threads
          *
          * @param bit equal to oneBitBeforeNow - BYTE_SIZE
+         * @param synched the time this receiver has synchronized with its neighbors to
          * @return tx new transmission
          */
-        private Transmission earliestNewTransmission(long bit) {
-            Transmission tx = null;
-            synchronized (medium) {
-                Iterator<Transmission> i = medium.transmissions.iterator();
-                while (i.hasNext()) {
-                    Transmission t = i.next();
-                    if (bit <= t.firstBit && medium.arbitrator.lockTransmission(Receiver.this, t, (int) clock.cyclesToMillis(clock.getCount()))) {
-                        if (tx == null) tx = t;
-                        else if (t.firstBit < tx.firstBit) tx = t;
-                    } else if (bit - 8 - 2 * medium.leadBits > t.lastBit) {
-                        // remove older transmissions
-                        i.remove();
-                    }
-                }
-            }
-            return tx;
+        private Transmission earliestNewTransmission(long bit, long synched) {
+            return view.earliestNewTransmission(bit, synched, (int) clock.cyclesToMillis(clock.getCount()));
         }
 
         /**
@@ -504,32 +634,21 @@ public class Medium {
          * @return it representing the list of transmissions that intersect
          */
         private List<Transmission> getIntersection(long bit) {
-            List<Transmission> it = null;
-            synchronized (medium) {
-                for (Transmission t : medium.transmissions) {
-                    if (intersect(bit, t)) {
-                        if (it == null) it = new LinkedList<Transmission>();
-                        it.add(t);
-                    }
-                }
-            }
-            return it;
+            return view.getIntersection(bit);
         }
 
-        /**
-         * The method <code>intersect</code> calculates if byte to transmit intersect
-         * with another transmission
-         *
-         * @param bit time in which calculate if tx intersect (oneBitBeforeNow - BYTE_SIZE)
-         * @param t   Transmission to find out if intersects
-         * @return true if they intersect, false otherwise
-         */
-        private boolean intersect(long bit, Transmission t) {
-            return bit >= t.firstBit && bit < t.lastBit;
+        private boolean isPublished(List<Transmission> it, long bit) {
+            for (Transmission t : it) {
+                if (!t.isPublished(bit)) return false;
+            }
+            return true;
         }
 
         private void waitForNeighbors(long gtime) {
-            if (medium.synch != null) medium.synch.waitForNeighbors(gtime);
+            // neighbors already known to be past this time need not be waited for
+            if (gtime <= horizon || medium.synch == null) return;
+            medium.synch.waitForNeighbors(gtime);
+            horizon = Math.max(gtime, medium.synch.getHorizon());
         }
     }
 
@@ -559,6 +678,10 @@ public class Medium {
         public int getNoise(int index) {
             return Pn;
         }
+
+        public boolean isStationary() {
+            return true;
+        }
     }
 
     /**
@@ -580,6 +703,13 @@ public class Medium {
         protected int counter;
         protected byte[] data;
 
+        /**
+         * The <code>published</code> field stores the number of bytes of this transmission that
+         * receivers may read, including the bytes its transmitter published ahead of time.
+         */
+        protected volatile int published;
+        protected int ahead;
+
         /**
          * The constructor for the <code> Transmission </code> class creates a new
          * transmission with several properties like start and end times, first
@@ -590,11 +720,25 @@ public class Medium {
          * @param freq the frequency for the transmission
          */
         protected Transmission(Transmitter o, double pow, double freq) {
+            this(o, o.clock.getCount(), pow, freq);
+        }
+
+        /**
+         * This constructor for the <code>Transmission</code> class creates a new transmission
+         * that began at the specified time, which is used for transmissions mirrored from a sender
+         * simulated elsewhere.
+         *
+         * @param o   Transmitter object
+         * @param s   the global time at which the transmission began
+         * @param pow Power for the transmission
+         * @param freq the frequency for the transmission
+         */
+        protected Transmission(Transmitter o, long s, double pow, double freq) {
             origin = o;
             power = pow;
             Pt = pow;
             f = freq;
-            start = o.clock.getCount();
+            start = s;
             end = Long.MAX_VALUE;
             long l = start + o.leadCycles;
             firstBit = origin.getBitNum(l);
@@ -609,6 +753,70 @@ public class Medium {
         public void end() {
             end = origin.clock.getCount();
             lastBit = firstBit + counter * BYTE_SIZE;
+            if (relay != null) relay.ended(this);
+        }
+
+        /**
+         * The <code>mirrorBytes()</code> method stores bytes of a mirrored transmission that were
+         * sent by its transmitter elsewhere, and makes them visible to receivers.
+         *
+         * @param from the index of the first byte
+         * @param b    an array containing the bytes
+         * @param len  the number of bytes
+         */
+        public void mirrorBytes(int from, byte[] b, int len) {
+            ensureCapacity(from + len);
+            System.arraycopy(b, 0, data, from, len);
+            counter = Math.max(counter, from + len);
+            published = Math.max(published, from + len);
+        }
+
+        /**
+         * The <code>mirrorEnd()</code> method ends a mirrored transmission at the time and length
+         * at which its transmitter elsewhere ended it.
+         *
+         * @param e     the global time at which the transmission ended
+         * @param count the number of bytes in the transmission
+         */
+        public void mirrorEnd(long e, int count) {
+            counter = count;
+            end = e;
+            lastBit = firstBit + counter * BYTE_SIZE;
+        }
+
+        /**
+         * The <code>isPublished()</code> method checks whether the byte of this transmission at
+         * the specified bit has been published, so that a receiver can read it without waiting for
+         * the transmitter.
+         *
+         * @param bit time in bits of the byte to be read
+         * @return true if all bits of the byte have been published
+         */
+        protected boolean isPublished(long bit) {
+            int offset = (int) (bit - firstBit);
+            int need = offset / BYTE_SIZE + ((offset & 0x7) > 0 ? 2 : 1);
+            return published >= need;
+        }
+
+        /**
+         * The <code>precedes()</code> method defines the order in which a receiver sees the
+         * transmissions on the air: by the time they began, and then by the index of their
+         * transmitter. Unlike the order in which the threads of the senders created them, this
+         * order does not depend on how the threads interleave.
+         *
+         * @param t the transmission to compare with
+         * @return true if this transmission comes before the specified one
+         */
+        protected boolean precedes(Transmission t) {
+            return start < t.start || start == t.start && origin.index < t.origin.index;
+        }
+
+        protected void ensureCapacity(int size) {
+            if (size > data.length) {
+                byte[] ndata = new byte[Math.max(size, data.length * 2)];
+                System.arraycopy(data, 0, ndata, 0, data.length);
+                data = ndata;
+            }
         }
 
         /**
@@ -640,7 +848,94 @@ public class Medium {
     public final int minLength;
     public final int maxLength;
 
-    protected List<Transmission> transmissions = new LinkedList<Transmission>();
+    protected final TransmissionStore transmissions;
+
+    /**
+     * The <code>Leakage</code> interface models how much of the power of a transmission on one
+     * frequency reaches a receiver tuned to another frequency. The medium keeps the transmissions
+     * on each frequency apart, and a receiver only inspects the frequencies it can hear at all, so
+     * that traffic on one channel does not slow down receivers on another.
+     */
+    public interface Leakage {
+        /**
+         * The <code>getAttenuation()</code> method returns how much weaker a transmission on the
+         * specified frequency appears to a receiver tuned to another frequency.
+         *
+         * @param rxFreq the frequency the receiver is tuned to (MHz)
+         * @param txFreq the frequency of the transmission (MHz)
+         * @return the attenuation in dB, or <code>Double.POSITIVE_INFINITY</code> if the receiver
+         * cannot hear the transmission at all
+         */
+        public double getAttenuation(double rxFreq, double txFreq);
+    }
+
+    /**
+     * The <code>NO_ISOLATION</code> field stores the default leakage, with which every receiver
+     * hears the transmissions on every frequency at full power. Whether a receiver can lock onto
+     * a transmission on another frequency is left to the arbitrator.
+     */
+    public static final Leakage NO_ISOLATION = new Leakage() {
+        public double getAttenuation(double rxFreq, double txFreq) {
+            return 0;
+        }
+    };
+
+    /**
+     * The <code>ChannelRejection</code> class models a receiver that hears transmissions on its
+     * own channel at full power, transmissions on the adjacent channels attenuated by a fixed
+     * rejection, and nothing on channels further away.
+     */
+    public static class ChannelRejection implements Leakage {
+        protected final double spacing;
+        protected final double rejection;
+
+        /**
+         * The constructor for the <code>ChannelRejection</code> class creates a new leakage model
+         * for channels with the specified spacing.
+         *
+         * @param s the spacing between the center frequencies of adjacent channels (MHz)
+         * @param r the attenuation of transmissions on an adjacent channel (dB)
+         */
+        public ChannelRejection(double s, double r) {
+            spacing = s;
+            rejection = r;
+        }
+
+        public double getAttenuation(double rxFreq, double txFreq) {
+            double d = Math.abs(rxFreq - txFreq);
+            if (d < spacing / 2) return 0;
+            if (d < 3 * spacing / 2) return rejection;
+            return Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * The <code>leakage</code> field stores the model of how transmissions on other frequencies
+     * reach a receiver; it must be set before the simulation starts.
+     */
+    protected Leakage leakage = NO_ISOLATION;
+
+    /**
+     * The <code>Relay</code> interface is notified of the progress of every transmission made by a
+     * transmitter of this medium, so that the transmission can be mirrored into the same medium
+     * simulated in another process. It is called from the thread of the transmitter.
+     */
+    public interface Relay {
+        public void started(Transmission t);
+        public void published(Transmission t, int from, int to);
+        public void ended(Transmission t);
+    }
+
+    protected Relay relay;
+
+    /**
+     * The <code>packetDelivery</code> field controls whether receivers synchronize with their
+     * neighbors for every byte of a frame, or only once per lead time while senders publish their
+     * frames ahead of time.
+     */
+    protected boolean packetDelivery;
+
+    protected int transmitters;
 
     /**
      * The constructor for the <code>Medium</code> class creates a new shared transmission
@@ -666,19 +961,84 @@ public class Medium {
             arbitrator = new BasicArbitrator();
         else
             arbitrator = arb;
+        transmissions = new TransmissionStore(this);
+    }
+
+    /**
+     * The <code>setPacketDelivery()</code> method selects packet delivery for this medium. In this
+     * mode, a radio that knows the rest of its frame when it sends the length byte publishes the
+     * whole frame at once, and a receiver locked onto a frame synchronizes with its neighbors only
+     * once per lead time, since no transmission begun later can interfere with the byte it is
+     * receiving. Bytes are still delivered to each receiver at their own times. The results differ
+     * from byte delivery only if the program changes a frame while it is being sent.
+     *
+     * @param on true to deliver whole packets, false to deliver each byte separately
+     */
+    public void setPacketDelivery(boolean on) {
+        packetDelivery = on;
+    }
+
+    /**
+     * The <code>setLeakage()</code> method sets the model of how much of a transmission on one
+     * frequency reaches a receiver tuned to another. Receivers only inspect the transmissions on the
+     * frequencies this model lets them hear.
+     *
+     * @param l the leakage model for this medium
+     */
+    public void setLeakage(Leakage l) {
+        leakage = l;
     }
 
     /**
-     * The synchronized class <code>newTransmission</code> creates a new Transmission
-     * object and adds it to the list of transmissions
+     * The <code>setRelay()</code> method sets the relay that is notified of the transmissions made
+     * by the transmitters of this medium. It must be set before the simulation starts.
+     *
+     * @param r the relay for this medium
+     */
+    public void setRelay(Relay r) {
+        relay = r;
+    }
+
+    /**
+     * The <code>isAudible()</code> method checks whether an attenuation returned by a
+     * <code>Leakage</code> still lets a receiver hear a transmission.
+     *
+     * @param attenuation the attenuation in dB
+     * @return true if a transmission with this attenuation can be heard
+     */
+    public static boolean isAudible(double attenuation) {
+        return attenuation != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * The <code>newTransmission</code> method creates a new Transmission
+     * object and adds it to the store of transmissions
      *
      * @param o Transmitter that creates the new transmission
      * @param p power for the new transmission
      * @return tx new transmission created
      */
-    protected synchronized Transmission newTransmission(Transmitter o, double p, double f) {
+    protected Transmission newTransmission(Transmitter o, double p, double f) {
         Transmission tx = new Transmission(o, p, f);
         transmissions.add(tx);
+        if (relay != null) relay.started(tx);
+        return tx;
+    }
+
+    /**
+     * The <code>mirror()</code> method adds a transmission to this medium on behalf of a
+     * transmitter that is simulated in another process. The bytes and the end of the transmission
+     * are supplied later through <code>mirrorBytes()</code> and <code>mirrorEnd()</code>.
+     *
+     * @param o the local stand-in for the remote transmitter
+     * @param s the global time at which the transmission began
+     * @param p the power of the transmission (dBm)
+     * @param f the frequency of the transmission (MHz)
+     * @return the new transmission
+     */
+    public Transmission mirror(Transmitter o, long s, double p, double f) {
+        Transmission tx = new Transmission(o, s, p, f);
+        transmissions.add(tx);
         return tx;
     }
 
@@ -692,6 +1052,52 @@ public class Medium {
         return (c & 0xff00) != 0;
     }
 
+    private static final int DB_STEPS = 64;
+    private static final int DB_MIN = -200;
+    private static final int DB_MAX = 100;
+    private static final int LOG_BITS = 10;
+    private static final double[] DB_TO_LINEAR = new double[(DB_MAX - DB_MIN) * DB_STEPS + 2];
+    private static final double[] LOG2_MANTISSA = new double[(1 << LOG_BITS) + 2];
+    private static final double DB_PER_OCTAVE = 10 * Math.log10(2);
+
+    static {
+        for (int i = 0; i < DB_TO_LINEAR.length; i++)
+            DB_TO_LINEAR[i] = Math.pow(10, (DB_MIN + (double) i / DB_STEPS) / 10);
+        for (int i = 0; i < LOG2_MANTISSA.length; i++)
+            LOG2_MANTISSA[i] = Math.log(1 + (double) i / (1 << LOG_BITS)) / Math.log(2);
+    }
+
+    /**
+     * The <code>dBToLinear()</code> method converts a power in dBm to milliwatts, interpolating
+     * in a precomputed table. It is used to sum the power of interfering transmissions.
+     *
+     * @param dB the power in dBm
+     * @return the power in milliwatts
+     */
+    public static double dBToLinear(double dB) {
+        double x = (dB - DB_MIN) * DB_STEPS;
+        if (x < 0 || x >= DB_TO_LINEAR.length - 1) return Math.pow(10, dB / 10);
+        int i = (int) x;
+        double lo = DB_TO_LINEAR[i];
+        return lo + (DB_TO_LINEAR[i + 1] - lo) * (x - i);
+    }
+
+    /**
+     * The <code>linearTodB()</code> method converts a power in milliwatts to dBm, interpolating
+     * the logarithm of the mantissa in a precomputed table.
+     *
+     * @param mw the power in milliwatts
+     * @return the power in dBm
+     */
+    public static double linearTodB(double mw) {
+        if (!(mw >= Double.MIN_NORMAL) || Double.isInfinite(mw)) return 10 * Math.log10(mw);
+        int e = Math.getExponent(mw);
+        double x = (Math.scalb(mw, -e) - 1) * (1 << LOG_BITS);
+        int i = (int) x;
+        double lo = LOG2_MANTISSA[i];
+        return DB_PER_OCTAVE * (e + lo + (LOG2_MANTISSA[i + 1] - lo) * (x - i));
+    }
+
     public static byte getCorruptedBits(char c) {
         return (byte) (c >> 8);
     }
@@ -0,0 +1,174 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.radio;
+
+import avrora.sim.clock.Clock;
+import avrora.sim.clock.DistributedSynchronizer;
+import cck.util.Util;
+
+import java.io.*;
+import java.util.IdentityHashMap;
+
+/**
+ * The <code>MediumRelay</code> class connects a medium to the same medium in the other processes
+ * of a distributed simulation. The transmissions made by the nodes in this process are sent to the
+ * peers as they start, as their bytes are published, and as they end; the transmissions made by
+ * nodes in other processes are mirrored into this medium on behalf of a stand-in transmitter for
+ * each remote node. The records travel with the times sent by the <code>DistributedSynchronizer</code>,
+ * so a receiver that has synchronized with its neighbors sees every remote transmission that a
+ * local one would have seen.
+ */
+public class MediumRelay implements Medium.Relay, DistributedSynchronizer.Handler {
+
+    protected static final int START = 0;
+    protected static final int BYTES = 1;
+    protected static final int END = 2;
+
+    protected final DistributedSynchronizer synch;
+    protected final int channel;
+    protected final Medium medium;
+    protected final IdentityHashMap<Medium.Transmitter, Integer> ids;
+    protected final Proxy[] proxies;
+    protected final Medium.Transmission[] current;
+    protected byte[] buffer;
+
+    /**
+     * The <code>Proxy</code> class is the stand-in for the transmitter of a node simulated in
+     * another process. It is never activated.
+     */
+    protected static class Proxy extends Medium.Transmitter {
+        protected Proxy(Medium m, Clock c) {
+            super(m, c);
+        }
+
+        public byte nextByte() {
+            throw Util.failure("remote transmitter cannot send");
+        }
+    }
+
+    /**
+     * The constructor for the <code>MediumRelay</code> class creates a new relay for the specified
+     * medium and registers it with the medium and the synchronizer.
+     * @param s the synchronizer that connects this process to its peers
+     * @param ch the channel number of this medium, which must be the same in every process
+     * @param m the medium to relay
+     * @param nodes the number of nodes in the whole simulation
+     */
+    public MediumRelay(DistributedSynchronizer s, int ch, Medium m, int nodes) {
+        synch = s;
+        channel = ch;
+        medium = m;
+        ids = new IdentityHashMap<Medium.Transmitter, Integer>();
+        proxies = new Proxy[nodes];
+        current = new Medium.Transmission[nodes];
+        buffer = new byte[256];
+        m.setRelay(this);
+        s.addHandler(ch, this);
+    }
+
+    /**
+     * The <code>addLocal()</code> method registers the transmitter of a node in this process.
+     * @param t the transmitter of the node
+     * @param id the identifier of the node
+     */
+    public void addLocal(Medium.Transmitter t, int id) {
+        ids.put(t, id);
+    }
+
+    /**
+     * The <code>addRemote()</code> method creates the stand-in transmitter for a node in another
+     * process. The stand-in must be given the position of the node in the radio model.
+     * @param id the identifier of the remote node
+     * @param c a clock with the frequency of the remote node's clock
+     * @return the stand-in transmitter for the node
+     */
+    public Medium.Transmitter addRemote(int id, Clock c) {
+        Proxy p = new Proxy(medium, c);
+        p.setIndex(id);
+        proxies[id] = p;
+        return p;
+    }
+
+    public void started(Medium.Transmission t) {
+        DataOutputStream out = synch.beginRecord(channel);
+        try {
+            out.writeByte(START);
+            out.writeInt(ids.get(t.origin));
+            out.writeLong(t.start);
+            out.writeDouble(t.power);
+            out.writeDouble(t.f);
+        } catch (IOException e) {
+            throw Util.unexpected(e);
+        } finally {
+            synch.endRecord();
+        }
+    }
+
+    public void published(Medium.Transmission t, int from, int to) {
+        DataOutputStream out = synch.beginRecord(channel);
+        try {
+            out.writeByte(BYTES);
+            out.writeInt(ids.get(t.origin));
+            out.writeInt(from);
+            out.writeInt(to - from);
+            out.write(t.data, from, to - from);
+        } catch (IOException e) {
+            throw Util.unexpected(e);
+        } finally {
+            synch.endRecord();
+        }
+    }
+
+    public void ended(Medium.Transmission t) {
+        DataOutputStream out = synch.beginRecord(channel);
+        try {
+            out.writeByte(END);
+            out.writeInt(ids.get(t.origin));
+            out.writeLong(t.end);
+            out.writeInt(t.counter);
+        } catch (IOException e) {
+            throw Util.unexpected(e);
+        } finally {
+            synch.endRecord();
+        }
+    }
+
+    /**
+     * The <code>receive()</code> method reads a record sent by the relay of this medium in a peer
+     * and applies it to the mirrored transmission of the remote node. It is called from the thread
+     * that reads from that peer.
+     * @param in the stream to read the record from
+     * @throws IOException if the record cannot be read
+     */
+    public synchronized void receive(DataInputStream in) throws IOException {
+        int kind = in.readByte();
+        int id = in.readInt();
+        switch (kind) {
+            case START:
+                long start = in.readLong();
+                double power = in.readDouble();
+                double freq = in.readDouble();
+                current[id] = medium.mirror(proxies[id], start, power, freq);
+                break;
+            case BYTES:
+                int from = in.readInt();
+                int len = in.readInt();
+                if (buffer.length < len) buffer = new byte[len];
+                in.readFully(buffer, 0, len);
+                current[id].mirrorBytes(from, buffer, len);
+                break;
+            case END:
+                long end = in.readLong();
+                int count = in.readInt();
+                // the last byte is published after the end, when the radio ends the transmission
+                // from within nextByte()
+                current[id].mirrorEnd(end, count);
+                break;
+            default:
+                throw Util.failure("invalid medium record " + kind);
+        }
+    }
+}
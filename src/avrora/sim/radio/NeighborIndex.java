@@ -0,0 +1,214 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.radio;
+
+import avrora.sim.radio.Topology.Position;
+
+import java.util.*;
+
+/**
+ * The <code>NeighborIndex</code> class maintains which pairs of radios can reach each other as nodes
+ * move. Radios are kept in a uniform grid of cells as large as the radio range; when the topology reports
+ * that a position has changed, only the radios in the cells around it are checked, and listeners are
+ * notified only for the pairs whose reachability actually changed. Radio models can then answer whether
+ * two radios are in range with a lookup rather than a distance computation.
+ *
+ * <p>
+ * Updates are made under the lock of the index, typically from the thread of the node that moved, while
+ * lookups read an immutable bit set per radio that is replaced whenever it changes, so they take no locks.
+ */
+public class NeighborIndex implements Topology.Observer {
+
+    /**
+     * The <code>Reach</code> interface decides whether a radio at one position can reach a radio
+     * at another position. It must not return true for positions more than a cell apart.
+     */
+    public interface Reach {
+        public boolean isReachable(Position a, Position b);
+    }
+
+    /**
+     * The <code>Listener</code> interface is notified when two radios come into or go out of range
+     * of each other. It is called under the lock of the index, from the thread of the node that moved.
+     */
+    public interface Listener {
+        public void reachabilityChanged(int a, int b, boolean reachable);
+    }
+
+    protected class Entry {
+        protected final int index;
+        protected final Position pos;
+        protected long cell;
+        protected volatile long[] bits;
+
+        protected Entry(int i, Position p) {
+            index = i;
+            pos = p;
+            bits = new long[1];
+        }
+
+        protected boolean get(int b) {
+            long[] r = bits;
+            int w = b >>> 6;
+            return w < r.length && (r[w] & (1L << b)) != 0;
+        }
+
+        protected void set(int b, boolean v) {
+            long[] r = bits;
+            int w = b >>> 6;
+            long[] n = Arrays.copyOf(r, Math.max(r.length, w + 1));
+            if (v) n[w] |= 1L << b;
+            else n[w] &= ~(1L << b);
+            bits = n;
+        }
+    }
+
+    protected final double cellSize;
+    protected final Reach reach;
+    protected final ArrayList<Entry> entries;
+    protected final IdentityHashMap<Position, ArrayList<Entry>> byPosition;
+    protected final HashMap<Long, ArrayList<Entry>> cells;
+    protected final ArrayList<Listener> listeners;
+    protected long changes;
+
+    /**
+     * The constructor for the <code>NeighborIndex</code> class creates a new, empty index.
+     * @param size the size of each cell, which must be at least the maximum radio range
+     * @param r the function that decides whether two positions are in range
+     */
+    public NeighborIndex(double size, Reach r) {
+        cellSize = size;
+        reach = r;
+        entries = new ArrayList<Entry>();
+        byPosition = new IdentityHashMap<Position, ArrayList<Entry>>();
+        cells = new HashMap<Long, ArrayList<Entry>>();
+        listeners = new ArrayList<Listener>();
+    }
+
+    /**
+     * The <code>register()</code> method adds a radio at the specified position to this index and
+     * computes its initial neighbors. Listeners are not notified of the initial neighbors.
+     * @param pos the position of the radio
+     * @return the index of the radio
+     */
+    public synchronized int register(Position pos) {
+        Entry e = new Entry(entries.size(), pos);
+        entries.add(e);
+        ArrayList<Entry> l = byPosition.get(pos);
+        if (l == null) {
+            l = new ArrayList<Entry>(1);
+            byPosition.put(pos, l);
+        }
+        l.add(e);
+        e.cell = cellOf(pos);
+        getCell(e.cell).add(e);
+        for (Entry o : candidates(e)) {
+            if (o != e && reach.isReachable(pos, o.pos)) {
+                e.set(o.index, true);
+                o.set(e.index, true);
+            }
+        }
+        return e.index;
+    }
+
+    /**
+     * The <code>addListener()</code> method adds a listener that will be notified whenever two
+     * radios come into or go out of range of each other.
+     * @param l the listener to add
+     */
+    public synchronized void addListener(Listener l) {
+        listeners.add(l);
+    }
+
+    /**
+     * The <code>isReachable()</code> method checks whether the two specified radios are in range
+     * of each other. This method takes no locks.
+     * @param a the index of the first radio
+     * @param b the index of the second radio
+     * @return true if the radios are in range of each other
+     */
+    public boolean isReachable(int a, int b) {
+        return entries.get(a).get(b);
+    }
+
+    /**
+     * The <code>getChanges()</code> method returns the number of times two radios have come into
+     * or gone out of range of each other since they were registered.
+     * @return the number of reachability changes
+     */
+    public synchronized long getChanges() {
+        return changes;
+    }
+
+    /**
+     * The <code>positionChanged()</code> method is called by the topology when a position has
+     * changed. It moves the radios at that position to their new cell and checks them against the
+     * radios in the cells around it and against their previous neighbors.
+     * @param pos the position that has changed
+     */
+    public synchronized void positionChanged(Position pos) {
+        ArrayList<Entry> l = byPosition.get(pos);
+        if (l == null) return;
+        for (Entry e : l) {
+            long cell = cellOf(pos);
+            if (cell != e.cell) {
+                // the radio crossed into another cell
+                ArrayList<Entry> old = cells.get(e.cell);
+                old.remove(e);
+                if (old.isEmpty()) cells.remove(e.cell);
+                e.cell = cell;
+                getCell(cell).add(e);
+            }
+            // previous neighbors that are no longer nearby are out of range
+            long[] r = e.bits;
+            for (int w = 0; w < r.length; w++) {
+                for (long b = r[w]; b != 0; b &= b - 1) {
+                    Entry o = entries.get(w * 64 + Long.numberOfTrailingZeros(b));
+                    if (!reach.isReachable(pos, o.pos)) update(e, o, false);
+                }
+            }
+            for (Entry o : candidates(e)) {
+                if (o != e && !e.get(o.index) && reach.isReachable(pos, o.pos)) update(e, o, true);
+            }
+        }
+    }
+
+    private void update(Entry e, Entry o, boolean reachable) {
+        e.set(o.index, reachable);
+        o.set(e.index, reachable);
+        changes++;
+        for (Listener l : listeners) l.reachabilityChanged(e.index, o.index, reachable);
+    }
+
+    private ArrayList<Entry> candidates(Entry e) {
+        ArrayList<Entry> result = new ArrayList<Entry>();
+        int x = coord(e.pos.x), y = coord(e.pos.y), z = coord(e.pos.z);
+        for (int dx = -1; dx <= 1; dx++)
+            for (int dy = -1; dy <= 1; dy++)
+                for (int dz = -1; dz <= 1; dz++) {
+                    ArrayList<Entry> c = cells.get(TransmissionStore.cellKey(x + dx, y + dy, z + dz));
+                    if (c != null) result.addAll(c);
+                }
+        return result;
+    }
+
+    private ArrayList<Entry> getCell(long key) {
+        ArrayList<Entry> c = cells.get(key);
+        if (c == null) {
+            c = new ArrayList<Entry>();
+            cells.put(key, c);
+        }
+        return c;
+    }
+
+    private long cellOf(Position pos) {
+        return TransmissionStore.cellKey(coord(pos.x), coord(pos.y), coord(pos.z));
+    }
+
+    private int coord(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+}
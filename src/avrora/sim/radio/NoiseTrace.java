@@ -0,0 +1,264 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.radio;
+
+import cck.util.Util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * The <code>NoiseTrace</code> class represents a trace of noise samples in dBm, one per millisecond,
+ * that a radio model uses to compute the noise floor at a receiver. The trace repeats itself when the
+ * simulation runs longer than the trace. Each radio model has its own trace, so that simulations running
+ * at the same time can use different traces.
+ *
+ * <p>
+ * A trace can be loaded from the text format, which contains one sample per line, with lines starting
+ * with <code>#</code> being comments, or from a binary format, which starts with a small header followed
+ * by the samples as big-endian 16-bit integers. Text traces are parsed into an array, while binary traces
+ * are mapped into memory, so that traces larger than the heap can be used. The <code>writeBinary()</code>
+ * method converts any trace into the binary format.
+ */
+public abstract class NoiseTrace {
+
+    /**
+     * The <code>MAGIC</code> field stores the first four bytes of a binary noise trace, which are
+     * <code>"NOIS"</code> in ASCII.
+     */
+    public static final int MAGIC = 0x4e4f4953;
+    public static final int VERSION = 1;
+    protected static final int HEADER_SIZE = 8;
+
+    /**
+     * The <code>DEFAULT_NOISE</code> field stores the noise level in dBm used when no trace is given.
+     */
+    public static final int DEFAULT_NOISE = -95;
+
+    /**
+     * The <code>getSample()</code> method returns the sample at the specified index in this trace.
+     * @param index the index of the sample, which must be between zero and the size of the trace
+     * @return the noise sample in dBm
+     */
+    public abstract int getSample(int index);
+
+    /**
+     * The <code>size()</code> method returns the number of samples in this trace.
+     * @return the number of samples in this trace
+     */
+    public abstract int size();
+
+    /**
+     * The <code>getNoise()</code> method returns the noise at the specified time, wrapping around
+     * to the beginning of the trace if the time is past its end.
+     * @param millis the time in milliseconds
+     * @return the noise in dBm at the specified time
+     */
+    public int getNoise(int millis) {
+        int size = size();
+        if (size == 1) return getSample(0);
+        return getSample(millis % size);
+    }
+
+    /**
+     * The <code>Array</code> class implements a noise trace whose samples are stored in an array
+     * in memory.
+     */
+    public static class Array extends NoiseTrace {
+        protected final short[] samples;
+        protected final int size;
+
+        /**
+         * The constructor for the <code>Array</code> class creates a new trace from the first samples
+         * of the specified array. The array is not copied.
+         * @param s the array containing the samples
+         * @param sz the number of samples in the trace
+         */
+        public Array(short[] s, int sz) {
+            if (sz < 1) Util.userError("Noise trace is empty");
+            samples = s;
+            size = sz;
+        }
+
+        public int getSample(int index) {
+            return samples[index];
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The <code>Mapped</code> class implements a noise trace whose samples are read directly from a
+     * binary trace file mapped into memory. Since a single mapping is limited to two gigabytes, large
+     * files are mapped in several chunks.
+     */
+    public static class Mapped extends NoiseTrace {
+        protected static final int CHUNK_BITS = 30;
+        protected static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+        protected final MappedByteBuffer[] chunks;
+        protected final int size;
+
+        /**
+         * The constructor for the <code>Mapped</code> class maps the specified binary trace file into
+         * memory.
+         * @param fname the name of the binary trace file
+         * @throws IOException if the file cannot be read
+         */
+        public Mapped(String fname) throws IOException {
+            RandomAccessFile file = new RandomAccessFile(fname, "r");
+            try {
+                FileChannel channel = file.getChannel();
+                long length = channel.size();
+                long count = (length - HEADER_SIZE) / 2;
+                if (length < HEADER_SIZE || file.readInt() != MAGIC)
+                    Util.userError("Invalid noise trace", fname);
+                if (file.readInt() != VERSION)
+                    Util.userError("Unsupported noise trace version", fname);
+                if (count < 1 || count > Integer.MAX_VALUE)
+                    Util.userError("Invalid noise trace size", fname);
+                size = (int) count;
+                int nchunks = (int) ((length - 1) >>> CHUNK_BITS) + 1;
+                chunks = new MappedByteBuffer[nchunks];
+                for (int i = 0; i < nchunks; i++) {
+                    long pos = (long) i << CHUNK_BITS;
+                    long len = Math.min(length - pos, 1L << CHUNK_BITS);
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                }
+            } finally {
+                // the mappings remain valid after the file is closed
+                file.close();
+            }
+        }
+
+        public int getSample(int index) {
+            // chunks are an even number of bytes long, so no sample spans two chunks
+            long pos = HEADER_SIZE + 2L * index;
+            return chunks[(int) (pos >>> CHUNK_BITS)].getShort((int) (pos & CHUNK_MASK));
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * The <code>constant()</code> method creates a trace that contains a single noise sample.
+     * @param noise the noise level in dBm
+     * @return a trace that always returns the specified noise level
+     */
+    public static NoiseTrace constant(int noise) {
+        return new Array(new short[] { toSample(noise) }, 1);
+    }
+
+    /**
+     * The <code>load()</code> method loads a noise trace from the specified file. If the file starts
+     * with the magic number of the binary format, it is mapped into memory; otherwise, it is parsed
+     * as a text trace.
+     * @param fname the name of the file containing the trace
+     * @return a new noise trace containing the samples in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static NoiseTrace load(String fname) throws IOException {
+        if (isBinary(fname)) return new Mapped(fname);
+        return parseText(fname);
+    }
+
+    private static boolean isBinary(String fname) throws IOException {
+        DataInputStream is = new DataInputStream(new FileInputStream(fname));
+        try {
+            return is.readInt() == MAGIC;
+        } catch (EOFException e) {
+            return false;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * The <code>parseText()</code> method parses a noise trace in the text format, where each line
+     * that is not a comment and contains a single integer is a sample.
+     * @param fname the name of the text file
+     * @return a new trace containing the samples in the file
+     * @throws IOException if the file cannot be read
+     */
+    public static NoiseTrace parseText(String fname) throws IOException {
+        BufferedReader r = new BufferedReader(new FileReader(fname));
+        short[] samples = new short[4096];
+        int size = 0;
+        try {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (line.startsWith("#")) continue;
+                String tok = singleToken(line);
+                if (tok == null) continue;
+                if (size == samples.length) {
+                    short[] nsamples = new short[samples.length * 2];
+                    System.arraycopy(samples, 0, nsamples, 0, size);
+                    samples = nsamples;
+                }
+                try {
+                    samples[size++] = toSample(Integer.parseInt(tok));
+                } catch (NumberFormatException e) {
+                    Util.userError("Error reading noise file", fname);
+                }
+            }
+        } finally {
+            r.close();
+        }
+        return new Array(samples, size);
+    }
+
+    private static String singleToken(String line) {
+        // tokens are separated by spaces; lines with more than one token are ignored
+        int start = 0, end = line.length();
+        while (start < end && line.charAt(start) == ' ') start++;
+        while (end > start && line.charAt(end - 1) == ' ') end--;
+        if (start == end) return null;
+        String tok = line.substring(start, end);
+        return tok.indexOf(' ') < 0 ? tok : null;
+    }
+
+    private static short toSample(int noise) {
+        if (noise < Short.MIN_VALUE || noise > Short.MAX_VALUE)
+            Util.userError("Noise sample out of range", Integer.toString(noise));
+        return (short) noise;
+    }
+
+    /**
+     * The <code>writeBinary()</code> method writes the specified trace to a file in the binary format,
+     * which can be mapped into memory when it is loaded.
+     * @param trace the trace to write
+     * @param fname the name of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeBinary(NoiseTrace trace, String fname) throws IOException {
+        FileOutputStream fos = new FileOutputStream(fname);
+        try {
+            FileChannel channel = fos.getChannel();
+            ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+            buf.putInt(MAGIC);
+            buf.putInt(VERSION);
+            int size = trace.size();
+            for (int i = 0; i < size; i++) {
+                if (buf.remaining() < 2) {
+                    buf.flip();
+                    while (buf.hasRemaining()) channel.write(buf);
+                    buf.clear();
+                }
+                buf.putShort((short) trace.getSample(i));
+            }
+            buf.flip();
+            while (buf.hasRemaining()) channel.write(buf);
+        } finally {
+            fos.close();
+        }
+    }
+}
@@ -24,6 +24,7 @@ public class RadiusModel implements Medium.Arbitrator {
     protected final double maximumDistance;
     protected final double maximumDistanceSq;
     protected final Map<TXRX, Position> positions;
+    protected final NeighborIndex index;
 
     public RadiusModel(double minDist, double maxDist) {
         maximumDistance = maxDist;
@@ -31,8 +32,26 @@ public class RadiusModel implements Medium.Arbitrator {
         minimumDistance = minDist;
         minimumDistanceSq = minDist * minDist;
         positions = new HashMap<TXRX, Position>();
+        index = new NeighborIndex(maxDist > 0 ? maxDist : 1.0, new NeighborIndex.Reach() {
+            public boolean isReachable(Position a, Position b) {
+                return distanceSq(a, b) <= maximumDistanceSq;
+            }
+        });
+    }
+
+    /**
+     * The <code>getNeighborIndex()</code> method returns the index that tracks which radios are in
+     * range of each other. It must be added as an observer of the topology if nodes can move.
+     * @return the neighbor index of this model
+     */
+    public NeighborIndex getNeighborIndex() {
+        return index;
     }
     
+    public boolean isStationary() {
+        return true;
+    }
+
     public int getNoise(int index){   
         return (-90);   
         
@@ -43,7 +62,10 @@ public class RadiusModel implements Medium.Arbitrator {
     }
 
     public boolean lockTransmission(Medium.Receiver receiver, Medium.Transmission trans,int Milliseconds) {
-        return distanceSq(trans.origin, receiver) <= maximumDistanceSq;
+        Medium.Transmitter origin = trans.origin;
+        if (origin.linkIndex >= 0 && receiver.linkIndex >= 0)
+            return index.isReachable(origin.linkIndex, receiver.linkIndex);
+        return distanceSq(origin, receiver) <= maximumDistanceSq;
     }
 
     public char mergeTransmissions(Medium.Receiver receiver, List<Medium.Transmission> it, long bit,int Milliseconds) {
@@ -70,12 +92,28 @@ public class RadiusModel implements Medium.Arbitrator {
     public void setPosition(Radio radio, Topology.Position pos) {
         positions.put(radio.getTransmitter(), pos);
         positions.put(radio.getReceiver(), pos);
+        int link = index.register(pos);
+        radio.getTransmitter().linkIndex = link;
+        radio.getReceiver().linkIndex = link;
+    }
+
+    /**
+     * The <code>setPosition()</code> method sets the position of a transmitter that has no
+     * receiver, such as the stand-in for a node simulated in another process.
+     * @param t the transmitter
+     * @param pos the position of the transmitter
+     */
+    public void setPosition(Medium.Transmitter t, Topology.Position pos) {
+        positions.put(t, pos);
+        t.linkIndex = index.register(pos);
     }
 
     protected double distanceSq(Medium.Transmitter t, Medium.Receiver r) {
+        return distanceSq(positions.get(t), positions.get(r));
+    }
+
+    protected double distanceSq(Topology.Position a, Topology.Position b) {
         double distSq = 0;
-        Topology.Position a = (Topology.Position)positions.get(t);
-        Topology.Position b = (Topology.Position)positions.get(r);
         if ( a != null && b != null) {
             double dx = a.x - b.x;
             double dy = a.y - b.y;
@@ -55,6 +55,12 @@ public abstract class Topology extends HelpCategory {
     public static class Position {
         public double x,y,z,rho;
 
+        /**
+         * The <code>moves</code> field counts how many times the position has been changed
+         * during the simulation, so that quantities computed from it can be invalidated.
+         */
+        public volatile int moves;
+
         public Position(double x, double y, double z) {
             this.x = x;
             this.y = y;
@@ -70,9 +76,18 @@ public abstract class Topology extends HelpCategory {
         }
     }
 
+    /**
+     * The <code>Observer</code> interface is notified whenever the position of a node changes
+     * during the simulation. It is called from the thread of the node that moved.
+     */
+    public interface Observer {
+        public void positionChanged(Position p);
+    }
+
     //structure of the node positions
     protected final ArrayList<Position> positions;
     protected final ArrayList<Simulation.Node> nodes;
+    protected final ArrayList<Observer> observers;
 
     /**
      * new topology
@@ -87,6 +102,7 @@ public abstract class Topology extends HelpCategory {
       
         positions = new ArrayList<Position>();
         nodes = new ArrayList<Simulation.Node>();
+        observers = new ArrayList<Observer>();
     }
 
     public Position getPosition(int id) {
@@ -97,6 +113,25 @@ public abstract class Topology extends HelpCategory {
         nodes.add(node);
     }
     
+    /**
+     * The <code>addObserver()</code> method adds an observer that will be notified when the position
+     * of a node changes. Observers must be added before the simulation is started.
+     * @param o the observer to add
+     */
+    public void addObserver(Observer o) {
+        observers.add(o);
+    }
+
+    /**
+     * The <code>positionChanged()</code> method is called by topologies that move nodes after the
+     * position of a node has been updated. It records the move in the position and notifies each observer.
+     * @param p the position that has changed
+     */
+    protected void positionChanged(Position p) {
+        p.moves++;
+        for (Observer o : observers) o.positionChanged(p);
+    }
+
     public void processOptions(Options o) {
         options.process(o);
     }
@@ -150,6 +150,7 @@ public class TopologyRWP extends TopologyStatic {
                 nodepos.x = newX;
                 nodepos.y = newY;
                 nodepos.z = newZ;
+                positionChanged(nodepos);
                 // set new position
                 setNewPosition();
                 // check if we may wait
@@ -169,6 +170,7 @@ public class TopologyRWP extends TopologyStatic {
                 nodepos.x += dirX;
                 nodepos.y += dirY;
                 nodepos.z += dirZ;
+                positionChanged(nodepos);
                 if (allCycles < eventCycles) {
                     eventCycles = allCycles;
                 }
@@ -0,0 +1,395 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+package avrora.sim.radio;
+
+import avrora.sim.radio.Medium.Transmission;
+import avrora.sim.radio.Topology.Position;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The <code>TransmissionStore</code> class stores the live transmissions of a medium. Transmissions
+ * are partitioned by frequency, and a receiver only inspects the partitions of the frequencies that
+ * the medium's <code>Leakage</code> lets it hear. Within a partition, when the
+ * medium uses a <code>RadiusModel</code>, transmissions are grouped into cubic cells of space as
+ * large as the radio range, according to the position of the sender when the transmission began,
+ * and a receiver only inspects the cells surrounding its own position. Each cell is guarded by its
+ * own lock, so senders in different cells never contend with each other.
+ *
+ * <p>
+ * Within a cell, transmissions are kept in the order they were added. The transmissions seen by a
+ * receiver are always presented in the order defined by <code>Transmission.precedes()</code>, which
+ * does not depend on how the threads of the nodes interleave, so that a radio model that draws random
+ * numbers for each transmission draws them in the same order in every run. Transmissions are dropped
+ * by the receivers that scan them once they have ended long enough ago that no receiver can ask for
+ * them again. Since a cell may not be scanned by any receiver, the store also sweeps all of its cells
+ * every <code>SWEEP_INTERVAL</code> transmissions.
+ */
+public class TransmissionStore {
+
+    protected static final int COORD_BITS = 21;
+    protected static final long COORD_MASK = (1L << COORD_BITS) - 1;
+    protected static final int SWEEP_INTERVAL = 256;
+
+    /**
+     * The <code>Cell</code> class stores the transmissions that began in one region of space, in
+     * order of creation.
+     */
+    protected static class Cell {
+        protected final ArrayList<Transmission> list = new ArrayList<Transmission>();
+    }
+
+    /**
+     * The <code>Partition</code> class stores the cells of the transmissions on a single frequency.
+     */
+    protected static class Partition {
+        protected final double frequency;
+
+        /**
+         * The <code>global</code> field stores the cell for transmissions whose sender has no
+         * position; every receiver that hears this frequency inspects this cell. When the store is
+         * not spatially indexed, it holds all transmissions on this frequency.
+         */
+        protected final Cell global;
+        protected final ConcurrentHashMap<Long, Cell> cells;
+
+        protected Partition(double f) {
+            frequency = f;
+            global = new Cell();
+            cells = new ConcurrentHashMap<Long, Cell>();
+        }
+    }
+
+    protected final Medium medium;
+    protected final RadiusModel spatial;
+    protected final double cellSize;
+    protected volatile Partition[] partitions;
+    protected final AtomicInteger version;
+    protected volatile Medium.Receiver[] receivers;
+    protected final AtomicInteger added;
+
+    /**
+     * The constructor for the <code>TransmissionStore</code> class creates a new, empty store for
+     * the specified medium.
+     * @param m the medium whose transmissions will be stored
+     */
+    protected TransmissionStore(Medium m) {
+        medium = m;
+        if (m.arbitrator instanceof RadiusModel && ((RadiusModel)m.arbitrator).maximumDistance > 0) {
+            spatial = (RadiusModel)m.arbitrator;
+            cellSize = spatial.maximumDistance;
+        } else {
+            spatial = null;
+            cellSize = 0;
+        }
+        partitions = new Partition[0];
+        version = new AtomicInteger();
+        receivers = new Medium.Receiver[0];
+        added = new AtomicInteger();
+    }
+
+    /**
+     * The <code>add()</code> method adds a new transmission to the store, in the partition of its
+     * frequency and the cell of its sender's current position.
+     * @param tx the transmission to add
+     */
+    protected void add(Transmission tx) {
+        Partition p = getPartition(tx.f);
+        Cell cell = p.global;
+        if (spatial != null) {
+            Position pos = spatial.positions.get(tx.origin);
+            if (pos != null) cell = getCell(p, cellKey(coord(pos.x), coord(pos.y), coord(pos.z)));
+        }
+        synchronized (cell) {
+            cell.list.add(tx);
+        }
+        if (added.incrementAndGet() % SWEEP_INTERVAL == 0) sweep();
+    }
+
+    /**
+     * The <code>sweep()</code> method drops the transmissions in every cell that ended so long before
+     * the earliest time of any receiver that no receiver can ask for them again. Receivers only drop
+     * transmissions from the cells they scan, so without this, a cell near no listening receiver, such
+     * as that of a sender whose neighbors have turned their radios off, would keep every transmission
+     * ever begun in it.
+     */
+    protected void sweep() {
+        long min = Long.MAX_VALUE;
+        for (Medium.Receiver r : receivers) {
+            // a stale count is an earlier time, which only keeps more transmissions
+            min = Math.min(min, r.getBitNum(r.clock.getCount()));
+        }
+        // the earliest last bit earliestNewTransmission() keeps, for any receiver
+        long old = min - 1 - 16 - 2 * medium.leadBits;
+        for (Partition p : partitions) {
+            prune(p.global, old);
+            for (Cell cell : p.cells.values()) prune(cell, old);
+        }
+    }
+
+    private void prune(Cell cell, long old) {
+        synchronized (cell) {
+            Iterator<Transmission> i = cell.list.iterator();
+            while (i.hasNext()) {
+                if (old > i.next().lastBit) i.remove();
+            }
+        }
+    }
+
+    private synchronized void addReceiver(Medium.Receiver r) {
+        Medium.Receiver[] nrecv = Arrays.copyOf(receivers, receivers.length + 1);
+        nrecv[receivers.length] = r;
+        receivers = nrecv;
+    }
+
+    /**
+     * The <code>getVisibleRange()</code> method returns the maximum distance between a receiver and
+     * a sender whose transmissions the receiver can see, when the store is indexed with the specified
+     * radio range. A receiver sees the transmissions begun in its own cell and the cells around it,
+     * even those of senders out of radio range, so this is the distance across two cells.
+     * @param range the maximum radio range of the radio model
+     * @return the maximum distance at which transmissions are visible
+     */
+    public static double getVisibleRange(double range) {
+        return 2 * Math.sqrt(3) * range;
+    }
+
+    private Partition getPartition(double f) {
+        // there are few frequencies, so a linear search avoids boxing the frequency
+        for (Partition p : partitions) {
+            if (p.frequency == f) return p;
+        }
+        synchronized (this) {
+            for (Partition p : partitions) {
+                if (p.frequency == f) return p;
+            }
+            Partition p = new Partition(f);
+            Partition[] nparts = Arrays.copyOf(partitions, partitions.length + 1);
+            nparts[partitions.length] = p;
+            partitions = nparts;
+            version.incrementAndGet();
+            return p;
+        }
+    }
+
+    private Cell getCell(Partition p, long key) {
+        Cell cell = p.cells.get(key);
+        if (cell == null) {
+            Cell ncell = new Cell();
+            cell = p.cells.putIfAbsent(key, ncell);
+            if (cell == null) {
+                cell = ncell;
+                version.incrementAndGet();
+            }
+        }
+        return cell;
+    }
+
+    private int coord(double v) {
+        return (int)Math.floor(v / cellSize);
+    }
+
+    static long cellKey(int x, int y, int z) {
+        return ((x & COORD_MASK) << (2 * COORD_BITS)) | ((y & COORD_MASK) << COORD_BITS) | (z & COORD_MASK);
+    }
+
+    /**
+     * The <code>View</code> class represents the part of the store visible to a single receiver.
+     * It caches the cells surrounding the receiver and the lists that are reused to collect
+     * transmissions; a view must only be used by the thread of its receiver.
+     */
+    protected class View {
+        protected final Medium.Receiver receiver;
+        protected final Intersection result;
+        protected final Intersection candidates;
+        protected Cell[] near;
+        protected int nearVersion = -1;
+        protected long nearKey;
+        protected Position nearPos;
+        protected double nearFrequency;
+
+        protected View(Medium.Receiver r) {
+            receiver = r;
+            result = new Intersection();
+            candidates = new Intersection();
+            addReceiver(r);
+        }
+
+        private Cell[] getNear() {
+            Position pos = spatial == null ? null : spatial.positions.get(receiver);
+            double f = receiver.frequency;
+            int v = version.get();
+            int x = 0, y = 0, z = 0;
+            long key = 0;
+            if (pos != null) {
+                x = coord(pos.x);
+                y = coord(pos.y);
+                z = coord(pos.z);
+                key = cellKey(x, y, z);
+            }
+            if (near == null || v != nearVersion || nearPos != pos || key != nearKey || f != nearFrequency) {
+                ArrayList<Cell> l = new ArrayList<Cell>();
+                for (Partition p : partitions) {
+                    // skip the frequencies this receiver cannot hear at all
+                    if (!Medium.isAudible(medium.leakage.getAttenuation(f, p.frequency))) continue;
+                    l.add(p.global);
+                    if (pos == null) {
+                        // a receiver without a position can hear every sender
+                        l.addAll(p.cells.values());
+                        continue;
+                    }
+                    for (int dx = -1; dx <= 1; dx++)
+                        for (int dy = -1; dy <= 1; dy++)
+                            for (int dz = -1; dz <= 1; dz++) {
+                                Cell c = p.cells.get(cellKey(x + dx, y + dy, z + dz));
+                                if (c != null) l.add(c);
+                            }
+                }
+                near = l.toArray(new Cell[l.size()]);
+                nearVersion = v;
+                nearPos = pos;
+                nearKey = key;
+                nearFrequency = f;
+            }
+            return near;
+        }
+
+        /**
+         * The <code>earliestNewTransmission()</code> method finds the transmission that the receiver
+         * can lock onto with the earliest first bit at or after the specified bit, and drops
+         * transmissions that ended long before it. Only transmissions that began before the time
+         * the receiver has synchronized to are considered, since whether a later one is visible
+         * depends on how far its sender has run ahead. The arbitrator is asked about the candidates
+         * in the order of <code>Transmission.precedes()</code>.
+         * @param bit the earliest first bit of interest
+         * @param synched the global time that all senders are known to have reached
+         * @param millis the current time in milliseconds, passed to the arbitrator
+         * @return the earliest new transmission, or null if there is none
+         */
+        protected Transmission earliestNewTransmission(long bit, long synched, int millis) {
+            Intersection c = candidates;
+            long old = bit - 8 - 2 * medium.leadBits;
+            for (Cell cell : getNear()) {
+                synchronized (cell) {
+                    Iterator<Transmission> i = cell.list.iterator();
+                    while (i.hasNext()) {
+                        Transmission t = i.next();
+                        if (bit <= t.firstBit && t.start < synched) {
+                            c.append(t);
+                        } else if (old > t.lastBit) {
+                            // remove older transmissions
+                            i.remove();
+                        }
+                    }
+                }
+            }
+            c.sortByStart();
+            Transmission tx = null;
+            for (int i = 0; i < c.size; i++) {
+                Transmission t = c.array[i];
+                if (medium.arbitrator.lockTransmission(receiver, t, millis) && (tx == null || t.firstBit < tx.firstBit)) tx = t;
+            }
+            c.clear();
+            return tx;
+        }
+
+        /**
+         * The <code>getIntersection()</code> method collects the transmissions that are on the air
+         * at the specified bit, in the order of <code>Transmission.precedes()</code>. The returned
+         * list is reused by the next call.
+         * @param bit the bit at which to intersect transmissions
+         * @return a list of the intersecting transmissions, or null if there are none
+         */
+        protected List<Transmission> getIntersection(long bit) {
+            Intersection it = result;
+            it.clear();
+            for (Cell cell : getNear()) {
+                synchronized (cell) {
+                    ArrayList<Transmission> list = cell.list;
+                    for (int i = 0; i < list.size(); i++) {
+                        Transmission t = list.get(i);
+                        if (bit >= t.firstBit && bit < t.lastBit) it.append(t);
+                    }
+                }
+            }
+            if (it.size == 0) return null;
+            it.sortByStart();
+            return it;
+        }
+    }
+
+    /**
+     * The <code>Intersection</code> class is the list of transmissions returned by
+     * <code>getIntersection()</code>, and also collects the candidates of
+     * <code>earliestNewTransmission()</code>. A view reuses the same lists for every call, and a
+     * list reuses its iterator unless a previous loop over it was left unfinished, so that
+     * delivering a byte does not allocate.
+     */
+    protected static class Intersection extends AbstractList<Transmission> {
+        protected Transmission[] array = new Transmission[4];
+        protected int size;
+        protected final Iter iter = new Iter();
+
+        protected class Iter implements Iterator<Transmission> {
+            protected int pos;
+            protected boolean busy;
+
+            public boolean hasNext() {
+                if (pos < size) return true;
+                busy = false;
+                return false;
+            }
+
+            public Transmission next() {
+                if (pos >= size) throw new NoSuchElementException();
+                return array[pos++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+
+        public Transmission get(int i) {
+            if (i >= size) throw new IndexOutOfBoundsException();
+            return array[i];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public Iterator<Transmission> iterator() {
+            if (iter.busy) return super.iterator();
+            iter.busy = true;
+            iter.pos = 0;
+            return iter;
+        }
+
+        public void clear() {
+            Arrays.fill(array, 0, size, null);
+            size = 0;
+            iter.busy = false;
+        }
+
+        protected void append(Transmission t) {
+            if (size == array.length) array = Arrays.copyOf(array, size * 2);
+            array[size++] = t;
+        }
+
+        protected void sortByStart() {
+            // the lists are short and nearly sorted, so insertion sort is sufficient
+            for (int i = 1; i < size; i++) {
+                Transmission t = array[i];
+                int j = i - 1;
+                for (; j >= 0 && t.precedes(array[j]); j--) array[j + 1] = array[j];
+                array[j + 1] = t;
+            }
+        }
+    }
+}
@@ -36,7 +36,11 @@ import avrora.Defaults;
 import avrora.Main;
 import avrora.core.*;
 import avrora.sim.*;
+import avrora.sim.clock.DistributedSynchronizer;
+import avrora.sim.clock.NeighborSynchronizer;
+import avrora.sim.clock.PooledSynchronizer;
 import avrora.sim.clock.RippleSynchronizer;
+import avrora.sim.clock.Synchronizer;
 import avrora.sim.platform.Platform;
 import avrora.sim.platform.PlatformFactory;
 import avrora.sim.platform.sensors.*;
@@ -78,7 +82,9 @@ public class SensorSimulation extends Simulation {
     public final Option.Str NOISE = newOption("Noise", "",
             "This option can be used to specify the name of " +
             "a file that contains a Noise time trace. When this option is specified" +
-            "the indoor radio model will be used to model radio propagation.");
+            "the indoor radio model will be used to model radio propagation. The trace can be " +
+            "a text file with one sample per line, or a binary trace produced by the \"noise-convert\" " +
+            "action, which is mapped into memory rather than read.");
     public final Option.Double RANGE = newOption("radio-range", 15.0,
             "This option, when used in conjunction with the -topology option, specifies " +
             "the maximum range for radio communication between nodes. This simple " +
@@ -114,6 +120,42 @@ public class SensorSimulation extends Simulation {
             "called \"node_address\". When loading a program onto " +
             "a node, the simulator will search for these labels, and if found, will update the word " +
             "in flash with the node's ID number.");
+    public final Option.Str SYNCHRONIZER = newOption("synchronizer", "ripple",
+            "This option selects how the threads simulating each node are synchronized. The default, " +
+            "\"ripple\", runs every node in its own thread and lets the operating system schedule them. " +
+            "The \"pooled\" synchronizer allows only a fixed number of nodes to execute at once, " +
+            "running each node up to its next horizon before handing its slot to the node that is " +
+            "furthest behind in simulation time, which avoids oversubscribing the processors when " +
+            "simulating large networks. The \"neighbor\" synchronizer lets each node wait only for " +
+            "the nodes within radio range of it, as given by the topology and the radio range.");
+    public final Option.Long SYNC_SLOTS = newOption("sync-slots", 0,
+            "This option, when used in conjunction with the \"pooled\" synchronizer, specifies the " +
+            "number of nodes that may execute concurrently. When set to zero, the number of available " +
+            "processors is used.");
+    public final Option.Bool PACKET_DELIVERY = newOption("packet-delivery", false,
+            "When this option is set, the radio medium delivers whole packets: a radio publishes " +
+            "each frame in its FIFO when it sends the length byte, and a receiver synchronizes with " +
+            "its neighbors only once per radio lead time instead of once per byte. Bytes are still " +
+            "received at their proper times, but changes a program makes to a frame while it is being " +
+            "sent are not seen by the receivers.");
+    public final Option.Bool PARTITION_CHANNELS = newOption("partition-channels", false,
+            "When this option is set, a CC2420 receiver only hears transmissions on its own channel and " +
+            "on the adjacent channels, which are attenuated by the adjacent channel rejection. The " +
+            "transmissions on each channel are stored separately, so that traffic on one channel does " +
+            "not slow down receivers on other channels. By default, every receiver hears every channel " +
+            "at full power and the radio model decides which transmissions it can lock onto.");
+    public final Option.Double CHANNEL_REJECTION = newOption("adjacent-channel-rejection", 30.0,
+            "This option, when used in conjunction with the \"partition-channels\" option, specifies " +
+            "the attenuation in dB of transmissions on an adjacent channel.");
+    public final Option.List DISTRIBUTED_PORTS = newOptionList("distributed-ports", "",
+            "This option partitions the simulation across several processes on the same machine. It " +
+            "lists one loopback port for each process, and every process must be started with the same " +
+            "options and programs, differing only in the \"distributed-rank\" option. Each process " +
+            "simulates a contiguous block of the nodes, and the radio transmissions of its nodes are " +
+            "mirrored into the other processes. Mobile topologies are not supported.");
+    public final Option.Long DISTRIBUTED_RANK = newOption("distributed-rank", 0,
+            "This option, when used in conjunction with the \"distributed-ports\" option, specifies " +
+            "the index of this process in the list of ports.");
 
     class SensorDataInput {
         String sensor;
@@ -187,11 +229,15 @@ public class SensorSimulation extends Simulation {
                 CC2420Radio radio = (CC2420Radio)dev;
                 this.radio = radio;
                 radio.setMedium(createCC2420Medium());
+                radio.getTransmitter().setIndex(id);
+                if (cc2420_relay != null) cc2420_relay.addLocal(radio.getTransmitter(), id);
             } else if (dev instanceof CC1000Radio) {
                 // connect to the cc1000 medium
                 CC1000Radio radio = (CC1000Radio)dev;
                 this.radio = radio;
                 radio.setMedium(createCC1000Medium());
+                radio.getTransmitter().setIndex(id);
+                if (cc1000_relay != null) cc1000_relay.addLocal(radio.getTransmitter(), id);
             }
             simulator.delay(startup);
             if (topology != null) {
@@ -204,10 +250,14 @@ public class SensorSimulation extends Simulation {
             if (cc2420_medium == null) {
                 createRadioModel();
                 if (LOSSY_MODEL.get()){
-                    return cc2420_medium = CC2420Radio.createMedium(synchronizer, lossyModel);
+                    cc2420_medium = CC2420Radio.createMedium(synchronizer, lossyModel);
                 }else{
-                    return cc2420_medium = CC2420Radio.createMedium(synchronizer, radiusModel);
+                    cc2420_medium = CC2420Radio.createMedium(synchronizer, radiusModel);
                 }
+                cc2420_medium.setPacketDelivery(PACKET_DELIVERY.get());
+                cc2420_relay = createRelay(cc2420_medium, CC2420_CHANNEL);
+                if (PARTITION_CHANNELS.get())
+                    cc2420_medium.setLeakage(new Medium.ChannelRejection(CC2420Radio.CHANNEL_SPACING, CHANNEL_REJECTION.get()));
             }
             return cc2420_medium;
         }
@@ -216,21 +266,39 @@ public class SensorSimulation extends Simulation {
             if (cc1000_medium == null) {
                 createRadioModel();
                 if (LOSSY_MODEL.get()){
-                    return cc1000_medium = CC1000Radio.createMedium(synchronizer, lossyModel);
+                    cc1000_medium = CC1000Radio.createMedium(synchronizer, lossyModel);
                 }else{
-                    return cc1000_medium = CC1000Radio.createMedium(synchronizer, radiusModel);
+                    cc1000_medium = CC1000Radio.createMedium(synchronizer, radiusModel);
                 }
+                cc1000_medium.setPacketDelivery(PACKET_DELIVERY.get());
+                cc1000_relay = createRelay(cc1000_medium, CC1000_CHANNEL);
             }
             return cc1000_medium;
         }
         
+        private MediumRelay createRelay(Medium m, int channel) {
+            if (!(synchronizer instanceof DistributedSynchronizer)) return null;
+            MediumRelay relay = new MediumRelay((DistributedSynchronizer)synchronizer, channel, m, remote.length);
+            // the nodes in other processes transmit through stand-ins with their positions
+            for (int i = 0; i < remote.length; i++) {
+                if (!remote[i]) continue;
+                Medium.Transmitter t = relay.addRemote(i, simulator.getClock());
+                Topology.Position p = topology == null ? null : topology.getPosition(i);
+                if (p == null) continue;
+                if (LOSSY_MODEL.get()) lossyModel.setPosition(t, p);
+                else radiusModel.setPosition(t, p);
+            }
+            return relay;
+        }
+
         private void createRadioModel() {
            if (topology != null) {
                 if (LOSSY_MODEL.get()){
-                    lossyModel = new LossyModel();
+                    lossyModel = new LossyModel(noise, RANDOMSEED.get());
                 }
                 else {
                     radiusModel = new RadiusModel(1.0, RANGE.get());
+                    topology.addObserver(radiusModel.getNeighborIndex());
                 }
             }
         }
@@ -281,11 +349,23 @@ public class SensorSimulation extends Simulation {
     }
 
     Topology topology;
-    noise noise;
+    NoiseTrace noise;
     LossyModel lossyModel;
     RadiusModel radiusModel;
     Medium cc2420_medium;
     Medium cc1000_medium;
+    MediumRelay cc2420_relay;
+    MediumRelay cc1000_relay;
+
+    /**
+     * The <code>remote</code> field stores, for each node identifier, whether the node is simulated
+     * in another process of a distributed simulation.
+     */
+    boolean[] remote = new boolean[0];
+
+    static final int CC2420_CHANNEL = 0;
+    static final int CC1000_CHANNEL = 1;
+    static final long DISTRIBUTED_PERIOD = 1000;
     long stagger;
 
     public SensorSimulation() {
@@ -332,20 +412,66 @@ public class SensorSimulation extends Simulation {
         Main.checkFilesExist(args);
         PlatformFactory pf = getPlatform();
 
-        // build the synchronizer
-        synchronizer = new RippleSynchronizer(100000, null);
-
         // create the topology
         processTopology();
+
+        // build the synchronizer
+        synchronizer = newSynchronizer();
+        if (!DISTRIBUTED_PORTS.get().isEmpty()) {
+            if (topology instanceof TopologyRWP)
+                Util.userError("Distributed simulation does not support mobile topologies");
+            synchronizer = new DistributedSynchronizer(synchronizer, (int)DISTRIBUTED_RANK.get(), getPorts(), DISTRIBUTED_PERIOD);
+        }
         
+        //create Noise time trace
+        createNoise();
+
         // create the nodes based on arguments
         createNodes(args, pf);
+        if (synchronizer instanceof DistributedSynchronizer) removeRemoteNodes();
 
         // process the sensor data input option
         processSensorInput();
+    }
 
-        //create Noise time trace
-        createNoise();
+    private Synchronizer newSynchronizer() {
+        String sync = SYNCHRONIZER.get();
+        if ( "ripple".equals(sync) )
+            return new RippleSynchronizer(100000, null);
+        if ( "pooled".equals(sync) )
+            return new PooledSynchronizer(100000, (int)SYNC_SLOTS.get());
+        if ( "neighbor".equals(sync) ) {
+            // the lossy model does not have a fixed radio range
+            if ( LOSSY_MODEL.get() )
+                return new NeighborSynchronizer(100000, null, 0);
+            // receivers also see transmissions of senders just out of radio range
+            return new NeighborSynchronizer(100000, topology, TransmissionStore.getVisibleRange(RANGE.get()));
+        }
+        Util.userError("Unknown synchronizer", sync);
+        return null;
+    }
+
+    private int[] getPorts() {
+        List<String> l = DISTRIBUTED_PORTS.get();
+        int[] ports = new int[l.size()];
+        int cnt = 0;
+        for (String port : l) ports[cnt++] = StringUtil.evaluateIntegerLiteral(port.trim());
+        return ports;
+    }
+
+    private void removeRemoteNodes() {
+        // each process simulates a contiguous block of nodes, which keeps neighbors together
+        int total = num_nodes;
+        int processes = DISTRIBUTED_PORTS.get().size();
+        int block = (total + processes - 1) / processes;
+        long rank = DISTRIBUTED_RANK.get();
+        remote = new boolean[total];
+        for (int i = 0; i < total; i++) {
+            if (i / block == rank) continue;
+            remote[i] = true;
+            nodes[i] = null;
+            num_nodes--;
+        }
     }
 
     private void createNodes(String[] args, PlatformFactory pf) throws Exception {
@@ -366,9 +492,10 @@ public class SensorSimulation extends Simulation {
     }
         private void createNoise() throws Exception {
             if (noise == null && !NOISE.isBlank()) {
-                    noise = new noise(NOISE.get());
+                    Main.checkFileExists(NOISE.get());
+                    noise = NoiseTrace.load(NOISE.get());
             }else if (noise == null && NOISE.isBlank()){
-                    noise = new noise();
+                    noise = NoiseTrace.constant(NoiseTrace.DEFAULT_NOISE);
             }
     }
 
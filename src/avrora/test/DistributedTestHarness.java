@@ -0,0 +1,150 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.test;
+
+import avrora.Main;
+import cck.test.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.*;
+
+/**
+ * The <code>DistributedTestHarness</code> implements a test harness that runs a sensor network
+ * simulation once in a single process and once split across several processes, and checks that
+ * both send and receive exactly the same packets. The simulations are started as separate Java
+ * processes with the same class path, with the options given by the <code>Options</code> property
+ * of the test case and the program given by its <code>Program</code> property.
+ */
+public class DistributedTestHarness implements TestEngine.Harness {
+
+    class DistributedTestCase extends TestCase {
+
+        String program;
+        String options;
+        int processes;
+        List<String> expected;
+        List<String> result;
+
+        DistributedTestCase(String fname, Properties props) throws Exception {
+            super(fname, props);
+            program = expectProperty("Program");
+            options = expectProperty("Options");
+            processes = Integer.parseInt(expectProperty("Processes"));
+        }
+
+        public void run() throws Exception {
+            expected = simulate(new String[][] { {} });
+
+            String[] ports = getFreePorts(processes);
+            StringBuilder list = new StringBuilder();
+            for (String port : ports) {
+                if (list.length() > 0) list.append(',');
+                list.append(port);
+            }
+            String[][] args = new String[processes][];
+            for (int i = 0; i < processes; i++) {
+                args[i] = new String[] { "-distributed-ports=" + list, "-distributed-rank=" + i };
+            }
+            result = simulate(args);
+        }
+
+        private List<String> simulate(String[][] args) throws Exception {
+            int count = args.length;
+            Process[] procs = new Process[count];
+            File[] outputs = new File[count];
+            List<String> packets = new ArrayList<String>();
+            try {
+                // all processes must run at the same time, so their output goes to files
+                for (int i = 0; i < count; i++) {
+                    outputs[i] = File.createTempFile("avrora", ".out");
+                    ProcessBuilder b = new ProcessBuilder(command(args[i]));
+                    b.redirectErrorStream(true);
+                    b.redirectOutput(outputs[i]);
+                    procs[i] = b.start();
+                }
+                for (int i = 0; i < count; i++) {
+                    int code = procs[i].waitFor();
+                    if (code != 0) throw new IOException("simulation process exited with code " + code);
+                    readPackets(outputs[i], packets);
+                }
+            } finally {
+                for (int i = 0; i < count; i++) {
+                    if (procs[i] != null) procs[i].destroy();
+                    if (outputs[i] != null) outputs[i].delete();
+                }
+            }
+            Collections.sort(packets);
+            return packets;
+        }
+
+        private List<String> command(String[] extra) {
+            List<String> cmd = new ArrayList<String>();
+            cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(Main.class.getName());
+            cmd.add("-colors=false");
+            cmd.add("-banner=false");
+            cmd.add("-simulation=sensor-network");
+            cmd.add("-monitors=packet");
+            cmd.addAll(Arrays.asList(options.split("\\s+")));
+            cmd.addAll(Arrays.asList(extra));
+            cmd.add(program);
+            return cmd;
+        }
+
+        private void readPackets(File f, List<String> packets) throws IOException {
+            BufferedReader r = new BufferedReader(new FileReader(f));
+            try {
+                // the lines of the packet monitor that report a packet sent or received by a node
+                for (String line = r.readLine(); line != null; line = r.readLine()) {
+                    if (line.contains("---->") || line.contains("<====")) packets.add(line.trim());
+                }
+            } finally {
+                r.close();
+            }
+        }
+
+        private String[] getFreePorts(int count) throws IOException {
+            ServerSocket[] sockets = new ServerSocket[count];
+            String[] ports = new String[count];
+            try {
+                for (int i = 0; i < count; i++) {
+                    sockets[i] = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+                    ports[i] = Integer.toString(sockets[i].getLocalPort());
+                }
+            } finally {
+                for (ServerSocket s : sockets) {
+                    if (s != null) s.close();
+                }
+            }
+            return ports;
+        }
+
+        public TestResult match(Throwable t) {
+            if (t != null) return super.match(t);
+            if (expected.isEmpty()) return new TestResult.TestFailure("no packets were sent in the simulation");
+            for (int i = 0; i < expected.size() && i < result.size(); i++) {
+                if (!expected.get(i).equals(result.get(i))) {
+                    return new TestResult.TestFailure("expected packet \"" + expected.get(i) + "\", but found \""
+                            + result.get(i) + '"');
+                }
+            }
+            if (expected.size() != result.size()) {
+                return new TestResult.TestFailure("expected " + expected.size() + " packets, but found "
+                        + result.size());
+            }
+            return new TestResult.TestSuccess();
+        }
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new DistributedTestCase(fname, props);
+    }
+
+}
@@ -0,0 +1,106 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.test;
+
+import avrora.sim.Simulator;
+import avrora.sim.clock.EventQueue;
+import avrora.sim.clock.MainClock;
+import cck.text.StringUtil;
+import cck.text.Terminal;
+import java.util.Random;
+
+/**
+ * The <code>EventQueueBenchmark</code> class measures the cost of the event queues that a
+ * <code>MainClock</code> can use. Each run fills a queue with a number of events; whenever an event
+ * fires, it inserts itself again with a uniformly random delay, so the number of pending events stays
+ * the same. After the queue has reached a steady state, the clock is advanced by a fixed step until the
+ * given number of cycles has elapsed. The result is the best time per simulated cycle of three runs,
+ * measured after each queue has been run with every mix of delays so that the virtual machine has
+ * compiled it.
+ * <p/>
+ * The benchmark is run from the command line:
+ * <pre>
+ * java -cp build avrora.test.EventQueueBenchmark [cycles]
+ * </pre>
+ * It prints, for each depth of the queue and each mix of delays and steps, the nanoseconds per cycle of
+ * the delta queue and of the timing wheel.
+ */
+public class EventQueueBenchmark {
+
+    static final int[] DEPTHS = { 4, 16, 64, 256, 1024 };
+    static final int[][] MIXES = { { 2000, 1 }, { 20000, 1 }, { 2000, 4 } };
+    static final String[] QUEUES = { "delta", "wheel" };
+    static final int RUNS = 3;
+
+    static class Reinserter implements Simulator.Event {
+        final EventQueue queue;
+        final Random random;
+        final int maxDelay;
+
+        Reinserter(EventQueue q, Random r, int d) {
+            queue = q;
+            random = r;
+            maxDelay = d;
+        }
+
+        public void fire() {
+            queue.insertEvent(this, 1 + random.nextInt(maxDelay));
+        }
+    }
+
+    public static void main(String[] args) {
+        long cycles = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+        // compile the queues before anything is measured
+        for (int[] mix : MIXES) {
+            for (String q : QUEUES) {
+                run(q, DEPTHS[0], mix[0], mix[1], cycles);
+                run(q, 256, mix[0], mix[1], cycles);
+            }
+        }
+        StringBuilder b = new StringBuilder(StringUtil.rightJustify("depth", 7));
+        for (int[] mix : MIXES) b.append(StringUtil.rightJustify("delay<=" + mix[0] + " step " + mix[1], 24));
+        Terminal.println(b.toString());
+        for (int depth : DEPTHS) {
+            b = new StringBuilder(StringUtil.rightJustify(depth, 7));
+            for (int[] mix : MIXES) {
+                StringBuilder r = new StringBuilder();
+                for (String q : QUEUES) {
+                    if (r.length() > 0) r.append(" / ");
+                    r.append(format(best(q, depth, mix[0], mix[1], cycles)));
+                }
+                b.append(StringUtil.rightJustify(r.toString(), 24));
+            }
+            Terminal.println(b.toString());
+        }
+    }
+
+    static double best(String type, int depth, int maxDelay, int step, long cycles) {
+        double best = Double.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) best = Math.min(best, run(type, depth, maxDelay, step, cycles));
+        return best;
+    }
+
+    static double run(String type, int depth, int maxDelay, int step, long cycles) {
+        EventQueue queue = MainClock.newEventQueue(type);
+        // every queue gets the same sequence of delays
+        Random random = new Random(depth * 31 + maxDelay);
+        for (int i = 0; i < depth; i++) {
+            Reinserter e = new Reinserter(queue, random, maxDelay);
+            queue.insertEvent(e, 1 + random.nextInt(maxDelay));
+        }
+        // let every event fire at least once before measuring
+        for (long c = 0; c < maxDelay; c += step) queue.advance(step);
+        long start = System.nanoTime();
+        for (long c = 0; c < cycles; c += step) queue.advance(step);
+        return (double)(System.nanoTime() - start) / cycles;
+    }
+
+    static String format(double ns) {
+        if (ns >= 100) return Long.toString(Math.round(ns));
+        return StringUtil.toFixedFloat((float)ns, 1);
+    }
+}
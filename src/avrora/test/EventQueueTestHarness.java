@@ -0,0 +1,59 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+
+package avrora.test;
+
+import avrora.sim.clock.MainClock;
+import avrora.test.probes.ProbeParser;
+import avrora.test.probes.ProbeTest;
+import cck.test.*;
+import java.io.FileInputStream;
+import java.util.Properties;
+
+/**
+ * The <code>EventQueueTestHarness</code> implements a test harness that runs event tests directly against
+ * the event queue implementations, without a program or a simulator. Each test case is run against every
+ * event queue implementation, which must all produce the same sequence of events.
+ */
+public class EventQueueTestHarness implements TestEngine.Harness {
+
+    static final String[] QUEUES = { "delta", "wheel" };
+
+    class EventQueueTestCase extends TestCase {
+
+        ProbeTest probeTest;
+        String queue;
+
+        EventQueueTestCase(String fname, Properties props) throws Exception {
+            super(fname, props);
+
+            ProbeParser p = new ProbeParser(new FileInputStream(fname));
+            probeTest = p.ProbeTest();
+        }
+
+        public void run() throws Exception {
+            for (String q : QUEUES) {
+                queue = q;
+                probeTest.run(MainClock.newEventQueue(q));
+            }
+        }
+
+        public TestResult match(Throwable t) {
+            if (t instanceof ProbeTest.Failure ) {
+                return new TestResult.TestFailure(queue + ": " + ((ProbeTest.Failure)t).reason);
+            }
+
+            return super.match(t);
+        }
+
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new EventQueueTestCase(fname, props);
+    }
+
+}
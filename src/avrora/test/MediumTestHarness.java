@@ -0,0 +1,162 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.test;
+
+import avrora.sim.Simulation;
+import avrora.sim.Simulator;
+import avrora.sim.clock.Clock;
+import avrora.sim.clock.MainClock;
+import avrora.sim.clock.Synchronizer;
+import avrora.sim.radio.Medium;
+import cck.test.*;
+import cck.text.StringUtil;
+import java.util.*;
+
+/**
+ * The <code>MediumTestHarness</code> implements a test harness that runs a radio medium directly, with
+ * test transmitters and a single receiver, without a program or a simulator. The transmitters begin
+ * at the times given by the <code>Senders</code> property of the test case and each send
+ * <code>Length</code> bytes. The test is run twice: once with the transmitters run to the end before
+ * the receiver reads anything, and once with the transmitters advanced only as far as the receiver
+ * waits for them. The receiver must receive the same bytes in both runs.
+ */
+public class MediumTestHarness implements TestEngine.Harness {
+
+    static final int HZ = 2000000;
+    static final int BPS = 250000;
+    static final int LEAD_BITS = 48;
+
+    class MediumTestCase extends TestCase {
+
+        long[] starts;
+        int length;
+        List<String> expected;
+        List<String> result;
+
+        MediumTestCase(String fname, Properties props) throws Exception {
+            super(fname, props);
+            String[] s = expectProperty("Senders").split(",");
+            starts = new long[s.length];
+            for (int i = 0; i < s.length; i++) starts[i] = StringUtil.evaluateIntegerLiteral(s[i].trim());
+            length = StringUtil.evaluateIntegerLiteral(expectProperty("Length"));
+        }
+
+        public void run() throws Exception {
+            expected = simulate(false);
+            result = simulate(true);
+        }
+
+        private List<String> simulate(boolean exact) {
+            long last = 0;
+            for (long s : starts) last = Math.max(last, s);
+            long end = last + (LEAD_BITS * 3 + (length + 4) * 8) * (HZ / BPS);
+
+            MainClock tx = new MainClock("tx", HZ);
+            final MainClock rx = new MainClock("rx", HZ);
+            Medium m = new Medium(new TestSynchronizer(tx, exact ? 0 : end), null, BPS, LEAD_BITS, 8, 8 * 128);
+            for (int i = 0; i < starts.length; i++) {
+                final TestTransmitter t = new TestTransmitter(m, tx, i, length);
+                tx.insertEvent(new Simulator.Event() {
+                    public void fire() {
+                        t.beginTransmit(0.0, 2.4);
+                    }
+                }, starts[i]);
+            }
+
+            final List<String> bytes = new ArrayList<String>();
+            TestReceiver r = new TestReceiver(m, rx);
+            r.insertProbe(new Medium.Probe.Empty() {
+                public void fireAfterReceive(Medium.Receiver rec, char val) {
+                    bytes.add(rx.getCount() + " " + StringUtil.toHex(val, 4));
+                }
+            });
+            r.beginReceive(2.4);
+            while (rx.getCount() < end) rx.advance(1);
+            return bytes;
+        }
+
+        public TestResult match(Throwable t) {
+            if (t != null) return super.match(t);
+            if (expected.isEmpty()) return new TestResult.TestFailure("no bytes were received");
+            for (int i = 0; i < expected.size() && i < result.size(); i++) {
+                if (!expected.get(i).equals(result.get(i))) {
+                    return new TestResult.TestFailure("expected byte \"" + expected.get(i) + "\", but found \""
+                            + result.get(i) + '"');
+                }
+            }
+            if (expected.size() != result.size()) {
+                return new TestResult.TestFailure("expected " + expected.size() + " bytes, but found "
+                        + result.size());
+            }
+            return new TestResult.TestSuccess();
+        }
+    }
+
+    /**
+     * The <code>TestSynchronizer</code> class runs the clock of the transmitters when the receiver
+     * waits for its neighbors: either exactly to the time it waits for, or, if a limit is given, to
+     * that limit the first time it waits.
+     */
+    static class TestSynchronizer extends Synchronizer {
+        final MainClock clock;
+        final long limit;
+
+        TestSynchronizer(MainClock c, long l) {
+            clock = c;
+            limit = l;
+        }
+
+        public void waitForNeighbors(long time) {
+            long target = Math.max(time, limit);
+            while (clock.getCount() < target) clock.advance(1);
+        }
+
+        public void addNode(Simulation.Node n) { }
+        public void removeNode(Simulation.Node n) { }
+        public void start() { }
+        public void join() { }
+        public void pause() { }
+        public void stop() { }
+        public void synch(long globalTime) { }
+    }
+
+    static class TestTransmitter extends Medium.Transmitter {
+        final int number;
+        final int length;
+        int counter;
+
+        TestTransmitter(Medium m, Clock c, int n, int l) {
+            super(m, c);
+            number = n;
+            length = l;
+        }
+
+        public byte nextByte() {
+            byte val = (byte) (number * 0x40 + counter * 0x0b + 1);
+            if (++counter == length) endTransmit();
+            return val;
+        }
+    }
+
+    static class TestReceiver extends Medium.Receiver {
+        TestReceiver(Medium m, Clock c) {
+            super(m, c);
+        }
+
+        public byte nextByte(boolean lock, byte b) {
+            return b;
+        }
+
+        public void setRSSI(double rssi) { }
+        public void setBER(double BER) { }
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new MediumTestCase(fname, props);
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.test;
+
+import avrora.Defaults;
+import avrora.core.LoadableProgram;
+import avrora.sim.Simulation;
+import avrora.sim.Simulator;
+import avrora.sim.SimulatorThread;
+import avrora.sim.clock.NeighborSynchronizer;
+import avrora.sim.platform.PlatformFactory;
+import avrora.sim.radio.Topology;
+import cck.test.*;
+import cck.util.Options;
+import java.util.*;
+
+/**
+ * The <code>NeighborTestHarness</code> implements a test harness that runs nodes under the
+ * <code>NeighborSynchronizer</code> while some of them move. The nodes start at the positions given by
+ * the <code>Positions</code> property of the test case and run the program given by its
+ * <code>Program</code> property. Every node waits for its neighbors periodically, as a radio medium
+ * would. The <code>Moves</code> property lists the moves as the cycle, the node and its new position;
+ * after each move, the pairs of nodes that wait for each other must be those given for that move by
+ * the <code>Neighbors</code> property, and all nodes must run to the end of the simulation within the
+ * time limit of the test.
+ */
+public class NeighborTestHarness implements TestEngine.Harness {
+
+    static final long PERIOD = 500;
+    static final long LOOKAHEAD = 1000;
+
+    class NeighborTestCase extends TestCase {
+
+        String program;
+        String platform;
+        double range;
+        List<Topology.Position> positions;
+        List<Move> moves;
+        List<String> expected;
+        List<String> result;
+
+        ScriptedTopology topology;
+        NeighborSynchronizer sync;
+        TestSimulation sim;
+        Simulation.Node[] created;
+
+        NeighborTestCase(String fname, Properties props) throws Exception {
+            super(fname, props);
+            program = expectProperty("Program");
+            platform = expectProperty("Platform");
+            range = Double.parseDouble(expectProperty("Range"));
+            positions = new ArrayList<Topology.Position>();
+            for (String p : expectProperty("Positions").split(","))
+                positions.add(parsePosition(p.trim().split("\\s+"), 0));
+            moves = new ArrayList<Move>();
+            for (String m : expectProperty("Moves").split(",")) moves.add(new Move(m.trim().split("\\s+")));
+            expected = new ArrayList<String>();
+            for (String n : expectProperty("Neighbors").split(",")) expected.add(n.trim());
+        }
+
+        public void run() throws Exception {
+            LoadableProgram p = new LoadableProgram(program);
+            p.load();
+            topology = new ScriptedTopology(positions);
+            sync = new NeighborSynchronizer(PERIOD, topology, range);
+            sim = new TestSimulation();
+            sim.SECONDS.set(expectProperty("Seconds"));
+            PlatformFactory pf = Defaults.getPlatform(platform);
+            created = new Simulation.Node[positions.size()];
+            for (int i = 0; i < created.length; i++) created[i] = sim.createNode(pf, p);
+            result = new ArrayList<String>();
+            sim.start();
+            sim.join();
+        }
+
+        private void recordNeighbors() {
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < created.length; i++) {
+                for (int j = i + 1; j < created.length; j++) {
+                    boolean ij = sync.isNeighbor(created[i], created[j]);
+                    boolean ji = sync.isNeighbor(created[j], created[i]);
+                    if (ij != ji) b.append(' ').append(i).append(ij ? ">" : "<").append(j);
+                    else if (ij) b.append(' ').append(i).append('-').append(j);
+                }
+            }
+            synchronized (result) {
+                result.add(b.length() == 0 ? "none" : b.substring(1));
+            }
+        }
+
+        public TestResult match(Throwable t) {
+            if (t != null) return super.match(t);
+            for (int i = 0; i < expected.size() && i < result.size(); i++) {
+                if (!expected.get(i).equals(result.get(i))) {
+                    return new TestResult.TestFailure("expected neighbors \"" + expected.get(i) + "\" after move "
+                            + (i + 1) + ", but found \"" + result.get(i) + '"');
+                }
+            }
+            if (expected.size() != result.size()) {
+                return new TestResult.TestFailure("expected " + expected.size() + " moves, but found "
+                        + result.size());
+            }
+            return new TestResult.TestSuccess();
+        }
+
+        /**
+         * The <code>Move</code> class is the event that moves a node to a new position at the given
+         * cycle of its clock and then records which nodes wait for each other.
+         */
+        class Move implements Simulator.Event {
+            final long time;
+            final int node;
+            final Topology.Position to;
+
+            Move(String[] f) {
+                time = Long.parseLong(f[0]);
+                node = Integer.parseInt(f[1]);
+                to = parsePosition(f, 2);
+            }
+
+            public void fire() {
+                topology.move(node, to);
+                recordNeighbors();
+            }
+        }
+
+        /**
+         * The <code>TestSimulation</code> class creates a thread for each node and, before the nodes
+         * are started, inserts the moves of the test and an event into each node that periodically
+         * waits for its neighbors.
+         */
+        class TestSimulation extends Simulation {
+
+            TestSimulation() {
+                super("neighbor-test", "The neighbor test simulation runs nodes that move.", sync);
+            }
+
+            protected Node newNode(int id, PlatformFactory pf, LoadableProgram pp) {
+                return new Node(id, pf, pp) {
+                    protected void instantiate() {
+                        thread = new SimulatorThread(this);
+                        super.instantiate();
+                    }
+                };
+            }
+
+            protected void instantiateNodes() {
+                super.instantiateNodes();
+                for (Node n : created) {
+                    final Simulator s = n.getSimulator();
+                    s.insertEvent(new Simulator.Event() {
+                        public void fire() {
+                            long now = s.getClock().getCount();
+                            if (now >= LOOKAHEAD) sync.waitForNeighbors(now - LOOKAHEAD);
+                            s.insertEvent(this, PERIOD);
+                        }
+                    }, PERIOD);
+                }
+                for (Move m : moves) created[m.node].getSimulator().insertEvent(m, m.time);
+            }
+
+            public void process(Options o, String[] args) {
+                // the nodes are created by the test case
+            }
+        }
+    }
+
+    private static Topology.Position parsePosition(String[] f, int start) {
+        return new Topology.Position(Double.parseDouble(f[start]), Double.parseDouble(f[start + 1]),
+                Double.parseDouble(f[start + 2]));
+    }
+
+    /**
+     * The <code>ScriptedTopology</code> class stores fixed positions for the nodes and moves them only
+     * when the test case tells it to.
+     */
+    static class ScriptedTopology extends Topology {
+        ScriptedTopology(List<Topology.Position> p) {
+            super("The scripted topology moves nodes at the times given by a test case.");
+            positions.addAll(p);
+        }
+
+        void move(int id, Topology.Position to) {
+            Position p = positions.get(id);
+            p.x = to.x;
+            p.y = to.y;
+            p.z = to.z;
+            positionChanged(p);
+        }
+
+        public void start() { }
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new NeighborTestCase(fname, props);
+    }
+
+}
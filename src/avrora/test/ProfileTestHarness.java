@@ -0,0 +1,76 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package avrora.test;
+
+import avrora.Defaults;
+import avrora.core.Program;
+import avrora.core.ProgramReader;
+import avrora.monitors.ProfileMonitor;
+import avrora.sim.Simulator;
+import cck.test.*;
+import cck.text.StringUtil;
+import java.util.Properties;
+
+/**
+ * The <code>ProfileTestHarness</code> implements a test harness that runs a program twice with the
+ * profile monitor, once with a probe on every instruction and once with a probe at the start of each
+ * basic block, and checks that both give the same count and cycles for every instruction. The program
+ * is read from the test case itself, in the format given by its <code>Format</code> property.
+ */
+public class ProfileTestHarness implements TestEngine.Harness {
+
+    class ProfileTestCase extends TestCase {
+
+        ProfileMonitor.Mon expected;
+        ProfileMonitor.Mon result;
+
+        ProfileTestCase(String fname, Properties props) throws Exception {
+            super(fname, props);
+        }
+
+        public void run() throws Exception {
+            expected = profile(false);
+            result = profile(true);
+        }
+
+        private ProfileMonitor.Mon profile(boolean blocks) throws Exception {
+            ProgramReader r = Defaults.getProgramReader(expectProperty("Format"));
+            r.ARCH.set(expectProperty("Arch"));
+            Program p = r.read(new String[] { filename });
+            Simulator s = Defaults.newSimulator(0, p);
+            ProfileMonitor f = new ProfileMonitor();
+            f.BLOCKS.set(Boolean.toString(blocks));
+            ProfileMonitor.Mon m = (ProfileMonitor.Mon)f.newMonitor(s);
+            s.start();
+            m.computeProfile();
+            return m;
+        }
+
+        public TestResult match(Throwable t) {
+            if (t != null) return super.match(t);
+            long total = 0;
+            for (int pc = 0; pc < expected.icount.length; pc++) {
+                total += expected.icount[pc];
+                if (expected.icount[pc] != result.icount[pc]) {
+                    return new TestResult.TestFailure("expected count " + expected.icount[pc] + " at "
+                            + StringUtil.addrToString(pc) + ", but found " + result.icount[pc]);
+                }
+                if (expected.itime[pc] != result.itime[pc]) {
+                    return new TestResult.TestFailure("expected cycles " + expected.itime[pc] + " at "
+                            + StringUtil.addrToString(pc) + ", but found " + result.itime[pc]);
+                }
+            }
+            if (total == 0) return new TestResult.TestFailure("no instructions were executed");
+            return new TestResult.TestSuccess();
+        }
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new ProfileTestCase(fname, props);
+    }
+
+}
@@ -33,7 +33,7 @@ package avrora.test.probes;
 
 import avrora.sim.Simulator;
 import avrora.sim.State;
-import avrora.sim.clock.DeltaQueue;
+import avrora.sim.clock.EventQueue;
 import avrora.sim.output.SimPrinter;
 import cck.text.StringUtil;
 import java.util.*;
@@ -47,7 +47,7 @@ public class ProbeTest {
 
     Simulator simulator;
     SimPrinter printer;
-    DeltaQueue eventqueue;
+    EventQueue eventqueue;
 
     List<Stmt> mainCode;
     final List<Event> expectedEvents;
@@ -303,7 +303,7 @@ public class ProbeTest {
         match();
     }
 
-    public void run(DeltaQueue q) throws Exception {
+    public void run(EventQueue q) throws Exception {
         eventqueue = q;
         simulator = null;
         recordedEvents = new LinkedList<Event>();
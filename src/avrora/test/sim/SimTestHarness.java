@@ -37,6 +37,7 @@ import avrora.core.Program;
 import avrora.core.ProgramReader;
 import avrora.sim.Simulator;
 import avrora.sim.State;
+import avrora.sim.types.SingleSimulation;
 import avrora.syntax.Module;
 import avrora.test.sim.legacy.LegacyTester;
 import avrora.test.sim.msp430.MSP430Tester;
@@ -97,7 +98,10 @@ public class SimTestHarness implements TestEngine.Harness {
         }
 
         private Simulator initSimulator(Program program) {
-            Simulator sim = tester.newSimulator(program);
+            SingleSimulation s = new SingleSimulation();
+            String interpreter = properties.getProperty("Interpreter");
+            if (interpreter != null) s.INTERPRETER.set(interpreter);
+            Simulator sim = tester.newSimulator(s, program);
             access = tester.getAccessor(sim);
             if ( inits != null ) access.init(inits);
             return sim;
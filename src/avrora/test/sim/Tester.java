@@ -36,6 +36,7 @@ package avrora.test.sim;
 
 import avrora.arch.AbstractArchitecture;
 import avrora.core.Program;
+import avrora.sim.Simulation;
 import avrora.sim.Simulator;
 
 /**
@@ -43,7 +44,7 @@ import avrora.sim.Simulator;
  */
 public abstract class Tester {
 
-    public abstract Simulator newSimulator(Program p);
+    public abstract Simulator newSimulator(Simulation sim, Program p);
     public abstract AbstractArchitecture getArchitecture();
     public abstract StateAccessor getAccessor(Simulator sim);
 }
@@ -38,6 +38,7 @@ import avrora.Defaults;
 import avrora.arch.AbstractArchitecture;
 import avrora.arch.legacy.LegacyArchitecture;
 import avrora.core.Program;
+import avrora.sim.Simulation;
 import avrora.sim.Simulator;
 import avrora.test.sim.StateAccessor;
 import avrora.test.sim.Tester;
@@ -47,8 +48,8 @@ import avrora.test.sim.Tester;
  */
 public class LegacyTester extends Tester {
 
-    public Simulator newSimulator(Program p) {
-        return Defaults.newSimulator(0, p);
+    public Simulator newSimulator(Simulation sim, Program p) {
+        return Defaults.newSimulator(0, sim, p);
     }
 
     public AbstractArchitecture getArchitecture() {
@@ -38,8 +38,8 @@ import avrora.Defaults;
 import avrora.arch.AbstractArchitecture;
 import avrora.arch.msp430.MSP430Architecture;
 import avrora.core.Program;
+import avrora.sim.Simulation;
 import avrora.sim.Simulator;
-import avrora.sim.types.SingleSimulation;
 import avrora.sim.platform.Platform;
 import avrora.test.sim.StateAccessor;
 import avrora.test.sim.Tester;
@@ -48,8 +48,8 @@ import avrora.test.sim.Tester;
  * @author Ben L. Titzer
  */
 public class MSP430Tester extends Tester {
-    public Simulator newSimulator(Program p) {
-        Platform platform = Defaults.getPlatform("telos").newPlatform(0, new SingleSimulation(), p);
+    public Simulator newSimulator(Simulation sim, Program p) {
+        Platform platform = Defaults.getPlatform("telos").newPlatform(0, sim, p);
         return platform.getMicrocontroller().getSimulator();
     }
     public AbstractArchitecture getArchitecture() {
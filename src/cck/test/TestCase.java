@@ -104,6 +104,19 @@ public abstract class TestCase {
         return new TestResult.UnexpectedException(t);
     }
 
+    /**
+     * The <code>getTimeLimit()</code> method returns the number of milliseconds that this test case
+     * may run before the framework stops it. A test case can raise the default limit with a
+     * <code>Timeout</code> property.
+     *
+     * @return the maximum running time of this test case in milliseconds
+     */
+    public long getTimeLimit() {
+        String limit = properties == null ? null : properties.getProperty("Timeout");
+        if (limit == null) return TestEngine.MAXIMUM_TEST_MS;
+        return Long.parseLong(trimString(limit));
+    }
+
     protected String expectProperty(String prop) {
         String value = properties.getProperty(prop);
         if (value == null) Util.userError("Property " + StringUtil.quote(prop) + " not found in testcase");
@@ -93,6 +93,7 @@ public class TestEngine {
     private int finishedTests;
 
     private final ClassMap harnessMap;
+    private final Properties defaults;
 
     /**
      * The constructor for the <code>TestEngine</code> class creates a new test engine
@@ -101,7 +102,19 @@ public class TestEngine {
      * @param hm the class map that maps string names to harnesses
      */
     public TestEngine(ClassMap hm) {
+        this(hm, new Properties());
+    }
+
+    /**
+     * This constructor for the <code>TestEngine</code> class creates a new test engine
+     * with the specified class map and default properties. Each test case starts with the
+     * default properties, which the properties in the test file override.
+     * @param hm the class map that maps string names to harnesses
+     * @param defs the default properties of every test case
+     */
+    public TestEngine(ClassMap hm, Properties defs) {
         harnessMap = hm;
+        defaults = defs;
     }
 
     /**
@@ -189,7 +202,7 @@ public class TestEngine {
                 long now = System.currentTimeMillis();
                 for ( int cntr = 0; cntr < THREADS; cntr++ ) {
                     WorkThread thread = threads[cntr];
-                    if ( thread.intest && (now - thread.test_began) > MAXIMUM_TEST_MS) {
+                    if ( thread.intest && (now - thread.test_began) > thread.test_limit) {
                         thread.interrupt();
                         thread.stop(new NonTermination(now - thread.test_began));
                     }
@@ -268,6 +281,8 @@ public class TestEngine {
     private TestCase runTest(String fname) throws IOException {
         TestCase tc = readTestCase(fname);
         Throwable exception = null;
+        Thread thread = Thread.currentThread();
+        if (thread instanceof WorkThread) ((WorkThread)thread).test_limit = tc.getTimeLimit();
 
         try {
             beginVerbose(fname);
@@ -315,7 +330,7 @@ public class TestEngine {
 
     private TestCase readTestCase(String fname) throws IOException {
         BufferedReader r = new BufferedReader(new FileReader(fname));
-        Properties vars = new Properties();
+        Properties vars = new Properties(defaults);
 
         while (true) {
             String buffer = r.readLine();
@@ -362,9 +377,11 @@ public class TestEngine {
     protected class WorkThread extends Thread {
         volatile boolean intest;
         volatile long test_began;
+        volatile long test_limit;
 
         public void run() {
             for ( int num = nextTest(); num >= 0; num = nextTest() ) {
+                test_limit = MAXIMUM_TEST_MS;
                 test_began = System.currentTimeMillis();
                 intest = true;
                 runTest(num);
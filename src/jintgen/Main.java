@@ -109,6 +109,7 @@ public class Main {
             if ( TEST.get() ) {
                 ClassMap harnessMap = new ClassMap("Test Harness", TestEngine.Harness.class);
                 harnessMap.addClass("verifier", VerifierTestHarness.class);
+                harnessMap.addClass("interpreter", InterpreterTestHarness.class);
                 new TestEngine(harnessMap).runTests(mainOptions.getArguments());
             } else if (args.length == 0 || HELP.get()) {
                 // print the help if there are no arguments or -help is specified
@@ -41,6 +41,8 @@ import jintgen.types.TypeRef;
 import java.io.IOException;
 import java.util.*;
 import cck.text.Printer;
+import cck.util.Option;
+import cck.util.Util;
 
 /**
  * The <code>InterpreterGenerator</code> class is a visitor over the code of an instruction declaration or
@@ -50,9 +52,21 @@ import cck.text.Printer;
  */
 public class InterpreterGenerator extends Generator {
 
+    public final Option.List LAZY_FLAGS = options.newOptionList("lazy-flags", "",
+            "This option specifies a list of global flags that the generated interpreter computes lazily. " +
+            "An instruction that assigns all of these flags without otherwise accessing them records " +
+            "the values needed to compute them instead of computing them, and every other instruction " +
+            "or subroutine that accesses them first calls the generated materializeFlags() method. " +
+            "The state class must also call materializeFlags() before it accesses the flags. " +
+            "For example: -lazy-flags=H,C,N,Z,V,S");
+
     protected JavaCodePrinter javaCodePrinter;
     CodeSimplifier ncg;
 
+    protected HashSet<String> lazyFlags;
+    protected List<LazyGroup> lazyGroups;
+    protected int lazySlots;
+
     public void generate() throws IOException {
         initStatics();
         List<String> impl = new LinkedList<String>();
@@ -73,6 +87,7 @@ public class InterpreterGenerator extends Generator {
         generatePolyMethods();
         for (SubroutineDecl d : arch.subroutines) visit(d);
         for (InstrDecl d : arch.instructions) visit(d);
+        if ( !lazyFlags.isEmpty() ) generateMaterialize();
         endblock();
         close();
     }
@@ -89,6 +104,13 @@ public class InterpreterGenerator extends Generator {
         properties.setProperty("state", className("State"));
         ncg = new CodeSimplifier(arch);
         ncg.genAccessMethods();
+        lazyFlags = new HashSet<String>();
+        for ( String f : LAZY_FLAGS.get() ) {
+            if ( arch.globals.get(f) == null ) throw Util.failure("unknown global in lazy flags: "+f);
+            lazyFlags.add(f);
+        }
+        lazyGroups = new LinkedList<LazyGroup>();
+        lazySlots = 0;
     }
 
     void generateUtilities() {
@@ -179,7 +201,9 @@ public class InterpreterGenerator extends Generator {
             javaCodePrinter.variableMap.put(o.name.image, "i." + o.name.image);
         }
         // emit the code of the body
-        generateCode(d.code.getStmts());
+        List<Stmt> stmts = simplify(d.code.getStmts());
+        if ( usesLazyFlags(stmts) ) generateLazyCode(d, stmts);
+        else javaCodePrinter.visitStmtList(stmts);
         endblock();
         println("");
     }
@@ -208,15 +232,228 @@ public class InterpreterGenerator extends Generator {
             String image = p.name.image;
             javaCodePrinter.variableMap.put(image, image);
         }
-        generateCode(d.code.getStmts());
+        List<Stmt> stmts = simplify(d.code.getStmts());
+        if ( usesLazyFlags(stmts) ) println("materializeFlags();");
+        javaCodePrinter.visitStmtList(stmts);
         endblock();
         println("");
     }
 
-    void generateCode(List<Stmt> stmts) {
+    List<Stmt> simplify(List<Stmt> stmts) {
         CodeSimplifier ncg = new CodeSimplifier(arch);
-        stmts = ncg.visitStmtList(stmts, new CGEnv(null, 0));
-        javaCodePrinter.visitStmtList(stmts);
+        return ncg.visitStmtList(stmts, new CGEnv(null, 0));
+    }
+
+    boolean usesLazyFlags(List<Stmt> stmts) {
+        if ( lazyFlags.isEmpty() ) return false;
+        VarUses u = new VarUses();
+        u.visitStmts(stmts);
+        return !Collections.disjoint(u.names, lazyFlags);
+    }
+
+    /**
+     * The <code>generateLazyCode()</code> method generates the body of an instruction that accesses
+     * the lazy flags. If the instruction assigns all of the lazy flags in a sequence of assignments
+     * that can be deferred, the generated code records the local variables needed by the assignments
+     * instead of executing them. Otherwise, the generated code materializes the flags first.
+     *
+     * @param d the instruction declaration
+     * @param stmts the simplified code of the instruction
+     */
+    void generateLazyCode(InstrDecl d, List<Stmt> stmts) {
+        LazyGroup g = findLazyGroup(d, stmts);
+        if ( g == null ) {
+            println("materializeFlags();");
+            javaCodePrinter.visitStmtList(stmts);
+            return;
+        }
+        javaCodePrinter.visitStmtList(stmts.subList(0, g.start));
+        println("lazy_op = $1;", g.number);
+        int slot = 0;
+        for ( DeclStmt l : g.captured ) {
+            String name = l.name.image;
+            if ( isBoolean(l) ) println("lazy_$1 = b2i($2, 1);", slot++, name);
+            else println("lazy_$1 = $2;", slot++, name);
+        }
+        javaCodePrinter.visitStmtList(stmts.subList(g.end, stmts.size()));
+        lazyGroups.add(g);
+    }
+
+    LazyGroup findLazyGroup(InstrDecl d, List<Stmt> stmts) {
+        // find the contiguous sequence of assignments to the lazy flags
+        int start = -1;
+        int end = -1;
+        for ( int cntr = 0; cntr < stmts.size(); cntr++ ) {
+            if ( !isLazyAssign(stmts.get(cntr)) ) continue;
+            if ( start < 0 ) start = cntr;
+            else if ( end != cntr ) return null;
+            end = cntr + 1;
+        }
+        if ( start < 0 ) return null;
+
+        // the rest of the code must not access the flags
+        VarUses rest = new VarUses();
+        rest.visitStmts(stmts.subList(0, start));
+        rest.visitStmts(stmts.subList(end, stmts.size()));
+        if ( !Collections.disjoint(rest.names, lazyFlags) ) return null;
+
+        // the assignments may only use flags assigned before and locals that can be recorded
+        HashMap<String, DeclStmt> locals = new HashMap<String, DeclStmt>();
+        for ( Stmt s : stmts.subList(0, start) ) {
+            if ( s instanceof DeclStmt ) locals.put(((DeclStmt)s).name.image, (DeclStmt)s);
+        }
+        LinkedHashSet<DeclStmt> captured = new LinkedHashSet<DeclStmt>();
+        HashSet<String> assigned = new HashSet<String>();
+        for ( Stmt s : stmts.subList(start, end) ) {
+            AssignStmt.Var a = (AssignStmt.Var)s;
+            VarUses u = new VarUses();
+            a.expr.accept(u);
+            if ( u.calls ) return null;
+            for ( String n : u.names ) {
+                if ( lazyFlags.contains(n) ) {
+                    if ( !assigned.contains(n) ) return null;
+                } else {
+                    DeclStmt l = locals.get(n);
+                    if ( l == null || !isBoolean(l) && !isInt(l) ) return null;
+                    captured.add(l);
+                }
+            }
+            assigned.add(a.dest.variable.image);
+        }
+        if ( !assigned.containsAll(lazyFlags) ) return null;
+
+        LazyGroup g = new LazyGroup();
+        g.number = lazyGroups.size() + 1;
+        g.start = start;
+        g.end = end;
+        g.captured = new ArrayList<DeclStmt>(captured);
+        g.stmts = stmts.subList(start, end);
+        g.variableMap = javaCodePrinter.variableMap;
+        lazySlots = Math.max(lazySlots, captured.size());
+        return g;
+    }
+
+    boolean isLazyAssign(Stmt s) {
+        return s instanceof AssignStmt.Var && lazyFlags.contains(((AssignStmt.Var)s).dest.variable.image);
+    }
+
+    boolean isBoolean(DeclStmt l) {
+        return "boolean".equals(renderType(l.typeRef));
+    }
+
+    boolean isInt(DeclStmt l) {
+        return "int".equals(renderType(l.typeRef));
+    }
+
+    /**
+     * The <code>generateMaterialize()</code> method generates the fields that record the last operation
+     * whose flags have not been computed, and the <code>materializeFlags()</code> method that computes
+     * the flags from the recorded values.
+     */
+    void generateMaterialize() {
+        println("protected int lazy_op;");
+        for ( int cntr = 0; cntr < lazySlots; cntr++ ) println("protected int lazy_$1;", cntr);
+        println("");
+        startblock("protected void materializeFlags()");
+        startblock("switch ( lazy_op )");
+        for ( LazyGroup g : lazyGroups ) {
+            startblock("case $1:", g.number);
+            int slot = 0;
+            for ( DeclStmt l : g.captured ) {
+                String name = l.name.image;
+                if ( isBoolean(l) ) println("boolean $1 = lazy_$2 != 0;", name, slot++);
+                else println("int $1 = lazy_$2;", name, slot++);
+            }
+            javaCodePrinter.variableMap = g.variableMap;
+            javaCodePrinter.visitStmtList(g.stmts);
+            println("break;");
+            endblock();
+        }
+        endblock();
+        println("lazy_op = 0;");
+        endblock();
+        println("");
+    }
+
+    /**
+     * The <code>LazyGroup</code> class represents the assignments to the lazy flags in the code of
+     * an instruction, together with the local variables that must be recorded to perform them later.
+     */
+    protected static class LazyGroup {
+        int number;
+        int start;
+        int end;
+        List<DeclStmt> captured;
+        List<Stmt> stmts;
+        HashMap<String, String> variableMap;
+    }
+
+    /**
+     * The <code>VarUses</code> class collects the names of the variables used or assigned in code and
+     * whether the code contains calls or operand accesses.
+     */
+    protected static class VarUses extends CodeVisitor.DepthFirst {
+        protected final LinkedHashSet<String> names = new LinkedHashSet<String>();
+        protected boolean calls;
+
+        public void visit(VarExpr e) {
+            names.add(e.variable.image);
+        }
+
+        public void visit(CallExpr e) {
+            calls = true;
+            super.visit(e);
+        }
+
+        public void visit(ReadExpr e) {
+            calls = true;
+        }
+
+        protected void visitStmts(List<Stmt> l) {
+            StmtVisitor v = new StmtVisitor.DepthFirst() {
+                public void visit(CallStmt s) {
+                    calls = true;
+                    for ( Expr a : s.args ) a.accept(VarUses.this);
+                }
+                public void visit(WriteStmt s) {
+                    calls = true;
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(DeclStmt s) {
+                    if ( s.init != null ) s.init.accept(VarUses.this);
+                }
+                public void visit(IfStmt s) {
+                    s.cond.accept(VarUses.this);
+                    super.visit(s);
+                }
+                public void visit(AssignStmt s) {
+                    s.dest.accept(VarUses.this);
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(AssignStmt.Var s) {
+                    s.dest.accept(VarUses.this);
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(AssignStmt.Map s) {
+                    s.map.accept(VarUses.this);
+                    s.index.accept(VarUses.this);
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(AssignStmt.Bit s) {
+                    s.dest.accept(VarUses.this);
+                    s.bit.accept(VarUses.this);
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(AssignStmt.FixedRange s) {
+                    s.dest.accept(VarUses.this);
+                    s.expr.accept(VarUses.this);
+                }
+                public void visit(ReturnStmt s) {
+                    if ( s.expr != null ) s.expr.accept(VarUses.this);
+                }
+            };
+            for ( Stmt s : l ) s.accept(v);
+        }
     }
 
     protected class JavaCodePrinter extends PrettyPrinter {
@@ -0,0 +1,155 @@
+/**
+ * See the file "license.txt" for details.
+ *
+ * Created Oct 18, 2026
+ */
+
+package jintgen.gen;
+
+import cck.test.*;
+import jintgen.isdl.ArchDecl;
+import jintgen.isdl.GlobalDecl;
+import jintgen.isdl.parser.ISDLParser;
+import jintgen.isdl.verifier.Verifier;
+import java.io.*;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * The <code>InterpreterTestHarness</code> implements a test harness that generates the instruction
+ * classes and the interpreter for an architecture description, with the generator options given by
+ * the <code>Options</code> property of the test case, and checks that the generated code compiles
+ * against a state class that declares a field for each global of the architecture. If the test case
+ * has an <code>Expect</code> property, the generated interpreter must also contain that text.
+ * The generators write their classes to the current directory, so they are run in a separate Java
+ * process with the same class path, in a temporary directory.
+ */
+public class InterpreterTestHarness implements TestEngine.Harness {
+
+    class InterpreterTest extends TestCase.ExpectSourceError {
+
+        String options;
+        String expect;
+        String failure;
+
+        InterpreterTest(String fname, Properties props) {
+            super(fname, props);
+            options = props.getProperty("Options", "");
+            String e = props.getProperty("Expect");
+            if (e != null) expect = trimString(e);
+        }
+
+        public void run() throws Exception {
+            File archfile = new File(filename);
+            FileInputStream fis = new FileInputStream(archfile);
+            ISDLParser parser = new ISDLParser(fis);
+            ArchDecl a = parser.ArchDecl();
+            new Verifier(a).verify();
+
+            File dir = createTempDir();
+            try {
+                failure = generate(archfile, dir);
+                if (failure != null) return;
+                InterpreterGenerator g = new InterpreterGenerator();
+                g.setArchitecture(a);
+                String interpreter = read(new File(dir, g.className("InstrInterpreter") + ".java"));
+                if (expect != null && !interpreter.contains(expect)) {
+                    failure = "generated interpreter does not contain \"" + expect + '"';
+                    return;
+                }
+                writeState(g, new File(dir, g.className("State") + ".java"));
+                failure = compile(dir);
+            } finally {
+                delete(dir);
+            }
+        }
+
+        private String generate(File archfile, File dir) throws Exception {
+            List<String> cmd = new ArrayList<String>();
+            cmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+            cmd.add("-cp");
+            cmd.add(System.getProperty("java.class.path"));
+            cmd.add(jintgen.Main.class.getName());
+            cmd.add("-colors=false");
+            cmd.add("-banner=false");
+            cmd.add("-generate=ir,interpreter");
+            if (options.trim().length() > 0) cmd.addAll(Arrays.asList(trimString(options).split("\\s+")));
+            cmd.add(archfile.getAbsolutePath());
+            ProcessBuilder b = new ProcessBuilder(cmd);
+            b.directory(dir);
+            b.redirectErrorStream(true);
+            File output = new File(dir, "jintgen.out");
+            b.redirectOutput(output);
+            int code = b.start().waitFor();
+            String out = read(output);
+            output.delete();
+            // jintgen reports errors without setting the exit code
+            if (code != 0 || out.contains("ERROR") || out.contains("Exception"))
+                return "generator failed:\n" + out;
+            return null;
+        }
+
+        private void writeState(InterpreterGenerator g, File f) throws IOException {
+            PrintStream p = new PrintStream(f);
+            try {
+                p.println("public abstract class " + g.className("State") + " {");
+                for (GlobalDecl d : g.arch.globals)
+                    p.println("    protected " + g.renderType(d.typeRef) + ' ' + d.name.image + ';');
+                p.println("    public " + g.className("State") + "(avrora.sim.Simulator sim) { }");
+                p.println("}");
+            } finally {
+                p.close();
+            }
+        }
+
+        private String compile(File dir) {
+            JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+            if (javac == null) return "no Java compiler is available";
+            List<String> args = new ArrayList<String>();
+            args.add("-nowarn");
+            args.add("-cp");
+            args.add(System.getProperty("java.class.path"));
+            args.add("-d");
+            args.add(dir.getPath());
+            for (File f : dir.listFiles()) {
+                if (f.getName().endsWith(".java")) args.add(f.getPath());
+            }
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int code = javac.run(null, null, err, args.toArray(new String[args.size()]));
+            return code == 0 ? null : "generated code does not compile:\n" + err;
+        }
+
+        protected TestResult checkPass() {
+            if (failure != null) return new TestResult.TestFailure(failure);
+            return new TestResult.TestSuccess();
+        }
+    }
+
+    private static File createTempDir() throws IOException {
+        File dir = File.createTempFile("jintgen", "");
+        if (!dir.delete() || !dir.mkdir()) throw new IOException("cannot create directory " + dir);
+        return dir;
+    }
+
+    private static String read(File f) throws IOException {
+        StringBuilder b = new StringBuilder();
+        BufferedReader r = new BufferedReader(new FileReader(f));
+        try {
+            for (String line = r.readLine(); line != null; line = r.readLine()) b.append(line).append('\n');
+        } finally {
+            r.close();
+        }
+        return b.toString();
+    }
+
+    private static void delete(File f) {
+        File[] files = f.listFiles();
+        if (files != null) for (File c : files) delete(c);
+        f.delete();
+    }
+
+    public TestCase newTestCase(String fname, Properties props) throws Exception {
+        return new InterpreterTest(fname, props);
+    }
+}
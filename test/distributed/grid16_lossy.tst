@@ -0,0 +1,7 @@
+# @Harness: distributed
+# @Result: 
+# @Program: ../tinyos/RadioSenseToLeds_micaz.elf
+# @Options: -platform=micaz -topology=static -topology-file=../topology/grid4x4_18m.top -lossy-model -random-seed=1 -nodecount=16 -seconds=2
+# @Processes: 2
+# @Timeout: 60000
+# @Purpose: Tests that a 16-node network with the lossy radio model split across two processes sends and receives the same packets as in one process
@@ -1,12 +1,19 @@
 # @Harness: eventqueue
-# @Result: 5 A B; 10 A; 20 B
-# @Purpose: this tests the operation of the delta queue using simple events
+# @Result: 
+# @Purpose: this tests the operation of the event queue using simple events
 
 event A { insert B 10; }
-event B { insert A 5; remove B; }
+event B { insert A 5; remove B 0; }
 
 main {
   insert A 5;
   insert B 5;
   advance 25;
 }
+
+result {
+  5 B A;
+  10 A;
+  15 B;
+  20 A;
+}
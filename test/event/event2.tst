@@ -1,6 +1,6 @@
 # @Harness: eventqueue
-# @Result: 5 A; 10 A; 15 A; 20 A; 25 A
-# @Purpose: this tests the operation of the delta queue using simple events
+# @Result: 
+# @Purpose: this tests the operation of the event queue using a periodic event
 
 event A { insert A 5; }
 
@@ -8,3 +8,11 @@ main {
   insert A 5;
   advance 25;
 }
+
+result {
+  5 A;
+  10 A;
+  15 A;
+  20 A;
+  25 A;
+}
@@ -0,0 +1,24 @@
+# @Harness: eventqueue
+# @Result: 
+# @Purpose: this tests events that are scheduled far in the future and events in the same cycle
+
+event A { }
+event B { }
+event C { insert A 2000; insert B 2000; }
+
+main {
+  insert A 5000;
+  insert B 3000;
+  insert C 5000;
+  insert A 5000;
+  advance 2999;
+  advance 1;
+  advance 1000;
+  advance 5000;
+}
+
+result {
+  3000 B;
+  5000 A C A;
+  7000 B A;
+}
@@ -0,0 +1,25 @@
+# @Harness: eventqueue
+# @Result: 
+# @Purpose: this tests events inserted with no delay while other events are firing
+
+event A { insert B 0; insert C 0; }
+event B { remove C 0; }
+event C { }
+event D { insert E 0; }
+event E { }
+
+main {
+  insert A 10;
+  insert D 20;
+  advance 10;
+  advance 5;
+  advance 5;
+  advance 1;
+}
+
+result {
+  10 A;
+  10 C B;
+  20 D;
+  20 E;
+}
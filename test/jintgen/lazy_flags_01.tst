@@ -0,0 +1,68 @@
+// @Harness: interpreter
+// @Purpose: "Test that the interpreter with lazy flags records the operands of an instruction that assigns all of the flags and compiles"
+// @Options: -inline=false -lazy-flags=C,Z,N
+// @Expect: lazy_op = 1;
+// @Result: PASS
+
+architecture lazy_01 {
+    global C: boolean;
+    global Z: boolean;
+    global N: boolean;
+    global nextpc: int;
+
+    external subroutine getReg(r: int): int.8;
+    external subroutine setReg(r: int, v: int.8): void;
+
+    enum GPR {
+        r0 = 0, r1 = 1, r2 = 2, r3 = 3
+    }
+
+    operand-type op_GPR[2]: GPR {
+        read: int.8 { return getReg(this:int); }
+        write: int.8 { setReg(this:int, value); }
+    }
+
+    operand-type IMM4[4]: int [0, 15];
+
+    addr-mode RR rd: op_GPR, rr: op_GPR {
+        encoding = { opcode[7:0], rd[1:0], rr[1:0], 0b0000 }
+    }
+
+    addr-mode REL target: IMM4 {
+        encoding = { opcode[7:0], target[3:0], 0b0000 }
+    }
+
+    addr-mode NONE {
+        encoding = { opcode[7:0], 0b00000000 }
+    }
+
+    // assigns all of the flags in one block, so they are recorded
+    instruction "add": RR {
+        property opcode: int = 0b0001;
+        execute {
+            local a: int.8 = read(rd);
+            local b: int.8 = read(rr);
+            local result: int = a + b;
+            C = result > 127;
+            Z = result == 0;
+            N = result < 0;
+            write(rd, result:int.8);
+        }
+    }
+
+    // reads a flag, so the flags are computed first
+    instruction "brne": REL {
+        property opcode: int = 0b0010;
+        execute {
+            if ( !Z ) nextpc = target:int;
+        }
+    }
+
+    // assigns only some of the flags, so the flags are computed first
+    instruction "clc": NONE {
+        property opcode: int = 0b0011;
+        execute {
+            C = false;
+        }
+    }
+}
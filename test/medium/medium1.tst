@@ -0,0 +1,5 @@
+# @Harness: medium
+# @Result: 
+# @Senders: 1000, 1216
+# @Length: 12
+# @Purpose: Tests that a receiver reads the bytes of a transmission that overlaps the one it is locked onto three bits out of phase only after their sender has written them
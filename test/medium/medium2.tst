@@ -0,0 +1,5 @@
+# @Harness: medium
+# @Result: 
+# @Senders: 1000, 1080, 1512
+# @Length: 16
+# @Purpose: Tests that a receiver reads the bytes of two transmissions that overlap the one it is locked onto out of phase only after their senders have written them
@@ -0,0 +1,10 @@
+# @Harness: neighbor
+# @Result: PASS
+# @Program: ../tinyos/Blink_mica2.elf
+# @Platform: mica2
+# @Seconds: 0.02
+# @Range: 30
+# @Positions: 0 0 0, 100 0 0, 20 0 0
+# @Moves: 20000 1 40 0 0, 40000 1 10 0 0, 60000 1 100 0 0
+# @Neighbors: 0-2 1-2, 0-1 0-2 1-2, 0-2
+# @Purpose: Tests that a node that moves into range of two nodes and out again is added to and removed from the neighbors of both while all nodes keep waiting for their neighbors
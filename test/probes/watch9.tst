@@ -0,0 +1,24 @@
+# @Harness: probes
+# @Result: 
+# @Program: array.asm
+# @Purpose: Tests that removing a watch leaves the other watches in the same page of memory
+
+watch A { | | | }
+event C {
+  remove A 0x105;
+}
+
+main {
+  insert A 0x101;
+  insert A 0x105;
+  insert A 0x109;
+  insert C 20;
+}
+
+result {
+  11 A.beforeRead;
+  11 A.afterRead;
+  20 C;
+  67 A.beforeRead;
+  67 A.afterRead;
+}
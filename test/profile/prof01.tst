@@ -0,0 +1,104 @@
+; @Harness: profile
+; @Format: atmel
+; @Arch: avr
+; @Purpose: "Test that profiling by basic blocks gives the same profile as a probe on every instruction, for code entered in the middle of a block by icall and ijmp and interrupted by the timer"
+; @Result: PASS
+
+; Interrupt Jump Table
+L000:	jmp    MAIN             ; reset #1
+L004:	jmp    INT_FAILURE      ; interrupt #2
+L008:	jmp    INT_FAILURE      ; interrupt #3
+L00C:	jmp    INT_FAILURE      ; interrupt #4
+L010:	jmp    INT_FAILURE      ; interrupt #5
+L014:	jmp    INT_FAILURE      ; interrupt #6
+L018:	jmp    INT_FAILURE      ; interrupt #7
+L01C:	jmp    INT_FAILURE      ; interrupt #8
+L020:	jmp    INT_FAILURE      ; interrupt #9
+L024:	jmp    INT_FAILURE      ; interrupt #10
+L028:	jmp    INT_FAILURE      ; interrupt #11
+L02C:	jmp    INT_FAILURE      ; interrupt #12
+L030:	jmp    INT_FAILURE      ; interrupt #13
+L034:	jmp    INT_FAILURE      ; interrupt #14
+L038:	jmp    INT_FAILURE      ; interrupt #15
+L03C:	jmp    INT_FAILURE      ; interrupt #16
+L040:	jmp    TIMER_OVF        ; timer 0 overflow
+L044:	jmp    INT_FAILURE      ; interrupt #18
+L048:	jmp    INT_FAILURE      ; interrupt #19
+L04C:	jmp    INT_FAILURE      ; interrupt #20
+L050:	jmp    INT_FAILURE      ; interrupt #21
+L054:	jmp    INT_FAILURE      ; interrupt #22
+L058:	jmp    INT_FAILURE      ; interrupt #23
+L05C:	jmp    INT_FAILURE      ; interrupt #24
+L060:	jmp    INT_FAILURE      ; interrupt #25
+L064:	jmp    INT_FAILURE      ; interrupt #26
+L068:	jmp    INT_FAILURE      ; interrupt #27
+L06C:	jmp    INT_FAILURE      ; interrupt #28
+L070:	jmp    INT_FAILURE      ; interrupt #29
+L074:	jmp    INT_FAILURE      ; interrupt #30
+L078:	jmp    INT_FAILURE      ; interrupt #31
+L07C:	jmp    INT_FAILURE      ; interrupt #32
+L080:	jmp    INT_FAILURE      ; interrupt #33
+L084:	jmp    INT_FAILURE      ; interrupt #34
+L088:	jmp    INT_FAILURE      ; interrupt #35
+
+INT_FAILURE:
+	break
+
+; the handler has a conditional branch of its own, and interrupts the
+; main loop in the middle of its blocks
+TIMER_OVF:
+	push r16
+	in r16, SREG
+	inc r22
+	cpi r22, 7
+	brne TIMER_END
+	clr r22
+TIMER_END:
+	out SREG, r16
+	pop r16
+	reti
+
+MAIN:
+	ldi r16, 0x10
+	out SPH, r16
+	ldi r16, 0xff
+	out SPL, r16
+	ldi r16, 0b00000001
+	out TIMSK, r16
+	out TCCR0, r16		; overflow every 256 cycles
+	sei
+	ldi r24, low(500)
+	ldi r25, high(500)
+
+LOOP:
+	ldi r30, low(FUNC_MID)	; call into the middle of FUNC
+	ldi r31, high(FUNC_MID)
+	icall
+	ldi r30, low(FUNC)
+	ldi r31, high(FUNC)
+	icall
+	sbrc r24, 0
+	rjmp ODD
+	ldi r30, low(JMID)	; jump into the middle of the block after ODD
+	ldi r31, high(JMID)
+	ijmp
+ODD:
+	nop
+	inc r20
+JMID:
+	inc r21
+	nop
+	sbiw r24, 1
+	brne LOOP
+	break
+
+FUNC:
+	inc r18
+	nop
+FUNC_MID:
+	inc r19
+	cpi r19, 3
+	breq SKIP
+	nop
+SKIP:
+	ret
@@ -0,0 +1,51 @@
+; @Harness: simulator
+; @Format: atmel
+; @Arch: avr
+; @Purpose: "Test the value of TCNT0 and the compare flag in CTC mode"
+; @Result: "r16 = 1, r17 = 3, r18 = 4, r19 = 2, r20 = 1, r21 = 0"
+
+;  this reads the counter while it runs in CTC mode with a prescaler of 8
+;  and after it has been written, and checks the compare match flag
+
+MAIN:
+	ldi r18, 0b00001010
+	out TCCR0, r18		;  CTC mode, clock / 8
+	ldi r18, 5
+	out OCR0, r18		;  set output compare register
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	in r16, TCNT0		;  read counter after the first ticks
+	in r21, TIFR
+	out TIFR, r21		;  clear the flags
+	ldi r18, 20
+LOOP1:
+	dec r18
+	brne LOOP1
+	in r17, TCNT0		;  read counter after it has been cleared
+	in r19, TIFR
+	ldi r18, 2
+	out TCNT0, r18		;  write the counter
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	in r18, TCNT0		;  read counter after the write
+	ldi r20, 40
+LOOP2:
+	dec r20
+	brne LOOP2
+	in r20, TCNT0
+	break
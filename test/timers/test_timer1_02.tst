@@ -0,0 +1,45 @@
+; @Harness: simulator
+; @Format: atmel
+; @Arch: avr
+; @Purpose: "Test the value of TCNT1 and the compare flags in normal mode"
+; @Result: "r16 = 1, r17 = 16, r18 = 9, r19 = 24, r20 = 2, r21 = 8"
+
+;  this reads the 16-bit counter while it runs in normal mode with a prescaler
+;  of 8, before and after a compare match and after it has been written
+
+MAIN:
+	ldi r18, 0
+	out OCR1AH, r18
+	ldi r18, 12
+	out OCR1AL, r18		;  set output compare register A
+	ldi r18, 0b00000010
+	out TCCR1B, r18		;  normal mode, clock / 8
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	nop
+	in r16, TCNT1L		;  read counter after the first ticks
+	in r21, TIFR		;  no compare match yet
+	ldi r18, 40
+LOOP1:
+	dec r18
+	brne LOOP1
+	in r17, TCNT1L		;  read counter after the compare match
+	in r19, TIFR
+	ldi r18, 1
+	out TCNT1H, r18
+	ldi r18, 250
+	out TCNT1L, r18		;  write the counter
+	ldi r20, 40
+LOOP2:
+	dec r20
+	brne LOOP2
+	in r18, TCNT1L		;  read counter after the write
+	in r20, TCNT1H
+	break